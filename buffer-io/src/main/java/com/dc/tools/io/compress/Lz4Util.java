@@ -22,6 +22,7 @@ import org.slf4j.LoggerFactory;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * the Lz4 Util
@@ -31,6 +32,7 @@ import java.io.IOException;
 public class Lz4Util {
     private static final Logger LOGGER = LoggerFactory.getLogger(Lz4Util.class);
     private static final int ARRAY_SIZE = 1024;
+    private static final LZ4Factory FACTORY = LZ4Factory.fastestInstance();
 
     public static byte[] compress(byte[] bytes) {
         if (bytes == null) {
@@ -47,6 +49,37 @@ public class Lz4Util {
         return outputStream.toByteArray();
     }
 
+    /**
+     * 使用 fast compressor 将数据压缩为一个LZ4 block, 适合对延迟敏感的场景
+     *
+     * @param bytes        需要压缩的数据
+     * @param headerLength 在返回的数组头部预留的字节数，由调用方写入原始长度等信息
+     * @return 头部预留 headerLength 个字节的压缩数据
+     */
+    public static byte[] fastCompress(byte[] bytes, int headerLength) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        LZ4Compressor compressor = FACTORY.fastCompressor();
+        byte[] dest = new byte[headerLength + compressor.maxCompressedLength(bytes.length)];
+        int compressedLength = compressor.compress(bytes, 0, bytes.length, dest, headerLength);
+        return Arrays.copyOf(dest, headerLength + compressedLength);
+    }
+
+    /**
+     * 解压 {@link #fastCompress(byte[], int)} 压缩的数据
+     *
+     * @param bytes          压缩的数据
+     * @param offset         压缩数据在数组中的起始位置
+     * @param originalLength 原始数据的长度
+     */
+    public static byte[] fastDecompress(byte[] bytes, int offset, int originalLength) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        return FACTORY.fastDecompressor().decompress(bytes, offset, originalLength);
+    }
+
     public static byte[] decompress(byte[] bytes) {
         if (bytes == null) {
             throw new NullPointerException("bytes is null");
@@ -78,10 +78,9 @@ public class ProtoStuffUtils {
         try {
             byteBuf.markReaderIndex();
             int classLength = byteBuf.readInt();
-            ByteBuf classBuf = byteBuf.readBytes(classLength);
-            byte[] classBytes = new byte[classLength];
-            classBuf.readBytes(classBytes);
-            Class<?> deserializeClass = Class.forName(new String(classBytes, Charset.defaultCharset()));
+            //readBytes(length) 会重新分配ByteBuf并且没有释放，这里直接读取类名
+            CharSequence className = byteBuf.readCharSequence(classLength, Charset.defaultCharset());
+            Class<?> deserializeClass = Class.forName(className.toString());
             byte[] deserializeBytes = new byte[byteBuf.readableBytes()];
             byteBuf.readBytes(deserializeBytes);
             Schema<T> schema = (Schema<T>) getSchema(deserializeClass);
@@ -102,7 +101,7 @@ public class ProtoStuffUtils {
             //这个schema通过RuntimeSchema进行懒创建并缓存
             //所以可以一直调用RuntimeSchema.getSchema(),这个方法是线程安全的
             schema = RuntimeSchema.getSchema(clazz);
-            if (schema == null) {
+            if (schema != null) {
                 schemaCache.put(clazz, schema);
             }
         }
@@ -13,6 +13,7 @@ import java.util.concurrent.TimeUnit;
  * @author zhangyang
  * @see NettyBufferPool
  * @see NettyLockedBufferPool
+ * @see NettySizeClassBufferPool
  */
 public interface BufferPool<BUF extends PoolBuffer> {
 
@@ -20,12 +20,15 @@ public class BufferPoolBenchMark {
 
     private BufferPool<NettyPoolBuf> lockBufferPool;
 
+    private BufferPool<NettyPoolBuf> sizeClassBufferPool;
+
     private final PooledByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
 
     @Setup
     public void initialize() {
         bufferPool = new NettyBufferPool("1111", allocator,1 << 14);
         lockBufferPool = new NettyBufferPool("2222", allocator,1 << 14);
+        sizeClassBufferPool = new NettySizeClassBufferPool("3333", allocator, 1 << 14);
     }
 
     @Benchmark
@@ -61,6 +64,22 @@ public class BufferPoolBenchMark {
         }
     }
 
+    @Benchmark
+    @Threads(64)
+    @OperationsPerInvocation(10)
+    public void sizeClassBufferPool() {
+        PoolBuffer poolBuffer = null;
+        try {
+            poolBuffer = sizeClassBufferPool.allocate(1 << 10, 1, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (poolBuffer != null) {
+                poolBuffer.close();
+            }
+        }
+    }
+
     public static void main(String[] args) throws RunnerException {
         Options opts = new OptionsBuilder()
                 // 表示包含的测试类
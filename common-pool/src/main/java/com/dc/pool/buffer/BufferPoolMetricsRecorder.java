@@ -86,7 +86,7 @@ public class BufferPoolMetricsRecorder {
     private final Counter requestFail;
 
 
-    public BufferPoolMetricsRecorder(String poolName, NettyBufferPool bufferPool) {
+    public BufferPoolMetricsRecorder(String poolName, BufferPool<?> bufferPool) {
         this.waitTimer = Timer.builder(REQUEST_TIME)
                 .tag(POOL_TAG_NAME, poolName)
                 .description("buffer pool request wait timer")
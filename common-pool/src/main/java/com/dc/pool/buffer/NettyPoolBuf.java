@@ -12,6 +12,7 @@ import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * NettyPoolBuf 用于表示从内存池中分配的内存
@@ -21,6 +22,9 @@ import java.nio.charset.Charset;
 @SuppressWarnings({"LombokGetterMayBeUsed"})
 public class NettyPoolBuf implements PoolBuffer{
 
+    private static final AtomicIntegerFieldUpdater<NettyPoolBuf> RELEASED_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(NettyPoolBuf.class, "released");
+
     /**
      * 分配的内存
      */
@@ -36,6 +40,11 @@ public class NettyPoolBuf implements PoolBuffer{
      */
     private final BufferPool<NettyPoolBuf> bufferPool;
 
+    /**
+     * 是否已经归还给内存池，被内存池复用的对象重新分配时会重置
+     */
+    private volatile int released;
+
     public NettyPoolBuf(ByteBuf byteBuf, int size, BufferPool<NettyPoolBuf> bufferPool) {
         this.byteBuf = byteBuf;
         this.size = size;
@@ -98,6 +107,22 @@ public class NettyPoolBuf implements PoolBuffer{
     }
 
 
+    /**
+     * 标记已经归还给内存池
+     *
+     * @return 已经归还过时返回false
+     */
+    boolean markReleased() {
+        return RELEASED_UPDATER.compareAndSet(this, 0, 1);
+    }
+
+    /**
+     * 内存池复用对象时重置归还的标记
+     */
+    void markAllocated() {
+        released = 0;
+    }
+
     public int size() {
         return size;
     }
@@ -0,0 +1,625 @@
+package com.dc.pool.buffer;
+
+import cn.hutool.core.date.SystemClock;
+import com.dc.tools.common.utils.Assert;
+import com.google.common.base.Throwables;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 按照 size class 缓存内存的内存池，避免所有线程在分配与归还时竞争 {@link NettyBufferPool} 中同一个自旋锁
+ * <p>
+ * 申请的内存会按照2的幂次对齐到对应的 size class, 归还的内存优先缓存在当前线程的 magazine 中，magazine 满了之后
+ * 将一半移动到全局的空闲队列，magazine 为空时再从全局的空闲队列批量获取; 超过 {@code maxCachedSize} 的内存直接通过
+ * allocator 分配，不会缓存
+ * <p>
+ * 内存的计数也是批量更新的，每个线程会从全局预留一部分内存，分配与归还时优先修改当前线程预留的内存，
+ * 全局内存不足时会收回其他线程预留的内存，然后释放所有缓存的内存，仍然不足时才会阻塞等待
+ *
+ * @author zy
+ * @apiNote 缓存中空闲的内存同样计算在 {@code maxMemory} 内，线程空闲之后缓存的内存在其他线程内存不足时被释放;
+ * 重复归还同一个 {@link NettyPoolBuf} 会被忽略
+ * @see NettyBufferPool
+ */
+public class NettySizeClassBufferPool implements BufferPool<NettyPoolBuf> {
+
+    /**
+     * default memory pool size
+     */
+    private static final long DEFAULT_MAX_MEMORY = 16 << 20;
+
+    /**
+     * 默认缓存的最大 size class
+     */
+    private static final int DEFAULT_MAX_CACHED_SIZE = 64 << 10;
+
+    /**
+     * 最小的 size class 为 64B
+     */
+    private static final int MIN_CLASS_SHIFT = 6;
+
+    /**
+     * 每个线程每个 size class 最多缓存的buf数量
+     */
+    private static final int MAGAZINE_CAPACITY = 32;
+
+    /**
+     * 每个线程每个 size class 最多缓存的内存
+     */
+    private static final int MAGAZINE_BYTES = 256 << 10;
+
+    /**
+     * 每次从全局预留的内存
+     */
+    private static final long DEFAULT_BATCH_BYTES = 64 << 10;
+
+    /**
+     * 等待内存时每次最多休眠的时间，其他线程归还的内存可能被预留在该线程中而没有唤醒等待的线程，需要定期收回预留的内存
+     */
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * 可使用的最大内存
+     */
+    private final long maxMemory;
+
+    /**
+     * 已经使用、线程预留以及缓存的内存
+     */
+    private final AtomicLong usedMemory = new AtomicLong();
+
+    /**
+     * 每次从全局预留的内存
+     */
+    private final long batchBytes;
+
+    /**
+     * 每个线程最多预留的内存，超过之后归还到全局
+     */
+    private final long maxThreadCredit;
+
+    /**
+     * size class 的数量
+     */
+    private final int numClasses;
+
+    /**
+     * 每个 size class 的 magazine 容量
+     */
+    private final int[] magazineCapacity;
+
+    /**
+     * 每个 size class 全局的空闲队列
+     */
+    private final Queue<NettyPoolBuf>[] globalFree;
+
+    /**
+     * magazine 以及全局空闲队列中缓存的内存
+     */
+    private final AtomicLong cachedMemory = new AtomicLong();
+
+    private final ThreadLocal<ThreadCache> threadCache = ThreadLocal.withInitial(this::registerThreadCache);
+
+    /**
+     * 所有线程的缓存，用于收回预留的内存以及关闭时释放缓存的内存
+     */
+    private final List<ThreadCache> threadCaches = new CopyOnWriteArrayList<>();
+
+    /**
+     * memory allocator
+     */
+    private final ByteBufAllocator allocator;
+
+    /**
+     * 线程等待队列
+     */
+    private final Deque<Thread> waitQueue = new ConcurrentLinkedDeque<>();
+
+    /**
+     * memory pool state
+     */
+    private final AtomicBoolean closeState = new AtomicBoolean();
+
+    /**
+     * 内存池名称
+     */
+    private final String poolName;
+
+    /**
+     * memory stats recorder
+     */
+    private final BufferPoolMetricsRecorder recorder;
+
+    public NettySizeClassBufferPool(String poolName, ByteBufAllocator allocator) {
+        this(poolName, allocator, DEFAULT_MAX_MEMORY);
+    }
+
+    public NettySizeClassBufferPool(String poolName, ByteBufAllocator allocator, long maxMemory) {
+        this(poolName, allocator, maxMemory, DEFAULT_MAX_CACHED_SIZE);
+    }
+
+    /**
+     * @param maxCachedSize 最大的 size class, 超过之后直接通过allocator分配并且不会缓存
+     */
+    @SuppressWarnings("unchecked")
+    public NettySizeClassBufferPool(String poolName, ByteBufAllocator allocator, long maxMemory, int maxCachedSize) {
+        Assert.isTrue(maxMemory > 0, "maxMemory must be non-negative");
+        Assert.isTrue(maxCachedSize > 0, "maxCachedSize must be non-negative");
+        this.poolName = poolName;
+        this.allocator = allocator;
+        this.maxMemory = maxMemory;
+        this.batchBytes = Math.min(DEFAULT_BATCH_BYTES, maxMemory >> 6);
+        this.maxThreadCredit = batchBytes << 1;
+
+        //size class 不能超过最大内存，否则对齐之后永远无法分配
+        int maxClassShift = Math.min(log2(maxCachedSize), 63 - Long.numberOfLeadingZeros(maxMemory));
+        this.numClasses = Math.max(0, maxClassShift - MIN_CLASS_SHIFT + 1);
+        this.magazineCapacity = new int[numClasses];
+        this.globalFree = new Queue[numClasses];
+        for (int i = 0; i < numClasses; i++) {
+            magazineCapacity[i] = Math.max(1, Math.min(MAGAZINE_CAPACITY, MAGAZINE_BYTES / classSize(i)));
+            globalFree[i] = new ConcurrentLinkedQueue<>();
+        }
+
+        this.recorder = new BufferPoolMetricsRecorder(poolName, this);
+    }
+
+    /**
+     * 从内存池中获取内存，当获取不到内存时会等待 maxTimeToBlock，如果还是无法获取则抛出异常
+     *
+     * @param size           开辟的内存大小
+     * @param maxTimeToBlock 当内存池没有足够的内存时需要等待的时间
+     * @param timeUnit       time unit
+     * @return 返回开辟的内存, {@link NettyPoolBuf#size()} 为对齐之后的大小
+     * @throws InterruptedException 支持线程中断
+     */
+    @Override
+    public NettyPoolBuf allocate(int size, long maxTimeToBlock, TimeUnit timeUnit) throws InterruptedException {
+        recorder.requestInc();
+        long startTime = SystemClock.now();
+
+        try {
+            //如果内存池已经是关闭状态则直接抛出异常
+            if (closeState.get()) {
+                throw new BufferPoolException("memory pool is closed, please create new pool");
+            }
+
+            if (size > maxMemory) {
+                throw new BufferPoolException("allocated size is overflow max size");
+            }
+
+            int sizeClass = sizeClass(size);
+            int chargeSize = sizeClass < 0 ? size : classSize(sizeClass);
+            ThreadCache cache = threadCache.get();
+            synchronized (cache) {
+                //缓存的内存已经计算在使用的内存中，不需要再预留
+                NettyPoolBuf buffer = takeCached(cache, sizeClass);
+                if (buffer != null) {
+                    return buffer;
+                }
+
+                //优先使用当前线程预留的内存
+                if (cache.credit >= chargeSize) {
+                    cache.credit -= chargeSize;
+                    try {
+                        return newBuffer(chargeSize);
+                    } catch (Throwable e) {
+                        cache.credit += chargeSize;
+                        throw e;
+                    }
+                }
+            }
+
+            //如果等待的时间<0则表示无限等待直到有可以使用
+            long waitNanos = maxTimeToBlock < 0 ? Long.MAX_VALUE : timeUnit.toNanos(maxTimeToBlock);
+            reserve(cache, chargeSize, waitNanos);
+            try {
+                return newBuffer(chargeSize);
+            } catch (Throwable e) {
+                usedMemory.addAndGet(-chargeSize);
+                throw e;
+            }
+        } catch (Exception e) {
+            recorder.failInc();
+            //如果是中断异常则直接抛出
+            Throwables.throwIfInstanceOf(e, InterruptedException.class);
+            //如果是内存池异常则直接抛出
+            Throwables.throwIfInstanceOf(e, BufferPoolException.class);
+            //否则将异常包装为
+            throw new BufferPoolException(e, "Allocate size {} from memory pool error", size);
+        } finally {
+            long executeTime = SystemClock.now() - startTime;
+            recorder.recordWait(executeTime);
+        }
+    }
+
+    /**
+     * 向内存池归还内存，内存会缓存在当前线程中，重复归还时直接忽略
+     *
+     * @param buffer 从内存池中获取的内存
+     */
+    @Override
+    public void deallocate(NettyPoolBuf buffer) {
+        if (!buffer.markReleased()) {
+            return;
+        }
+
+        int size = buffer.size();
+        ThreadCache cache = threadCache.get();
+        //有等待的线程时不缓存并且归还所有预留的内存，保证等待的线程可以被及时唤醒
+        boolean hasWaiters = !waitQueue.isEmpty();
+        long releaseBytes = 0;
+        synchronized (cache) {
+            if (hasWaiters || !recycle(cache, buffer)) {
+                ReferenceCountUtil.safeRelease(buffer.getByteBuf());
+                cache.credit += size;
+            }
+
+            if (hasWaiters || closeState.get()) {
+                releaseBytes = cache.credit;
+                cache.credit = 0;
+            } else if (cache.credit > maxThreadCredit) {
+                releaseBytes = cache.credit - batchBytes;
+                cache.credit = batchBytes;
+            }
+        }
+
+        if (releaseBytes > 0) {
+            usedMemory.addAndGet(-releaseBytes);
+        }
+
+        if (hasWaiters) {
+            notifyFirstThread();
+        }
+    }
+
+    @Override
+    public long unallocatedMemory() {
+        long credits = 0;
+        for (ThreadCache cache : threadCaches) {
+            credits += cache.credit;
+        }
+
+        return Math.min(maxMemory, maxMemory - usedMemory.get() + credits + cachedMemory.get());
+    }
+
+    @Override
+    public long totalMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * 关闭内存池，唤醒所有等待的线程并释放缓存的内存
+     */
+    @Override
+    public void close() {
+        if (closeState.compareAndSet(false, true)) {
+            notifyThread(true);
+            releaseCached();
+        }
+    }
+
+    @Override
+    public String name() {
+        return poolName;
+    }
+
+    @Override
+    public int waitThreads() {
+        return waitQueue.size();
+    }
+
+    /**
+     * 如果队列中存在阻塞的线程，则唤醒队列中的第一个线程
+     */
+    public void notifyFirstThread() {
+        notifyThread(false);
+    }
+
+    /**
+     * 从全局预留内存，会尽量多预留 {@code batchBytes} 供当前线程后续使用
+     */
+    private void reserve(ThreadCache cache, int chargeSize, long waitNanos) throws InterruptedException {
+        //已经等待的时间
+        long currentWait = 0;
+        for (; ; ) {
+            //当被唤醒的线程从新请求内存时需要判断内存池是否已经关闭
+            if (closeState.get()) {
+                throw new BufferPoolException("memory pool is closed");
+            }
+
+            if (batchBytes > 0 && tryReserve(chargeSize + batchBytes)) {
+                synchronized (cache) {
+                    cache.credit += batchBytes;
+                }
+
+                return;
+            }
+
+            if (tryReserve(chargeSize)) {
+                return;
+            }
+
+            //全局内存不足时收回所有线程预留的内存，仍然不足时释放所有缓存的内存
+            if (reclaimCredits() > 0 || releaseCached() > 0) {
+                continue;
+            }
+
+            //如果当前的等待时间已经大于最大等待时间
+            if (currentWait >= waitNanos) {
+                throw new AllocateBufferTimeoutException("allocate buffer is time out, time is: {}, waitTime is: {}", currentWait / 1000000, waitNanos / 1000000);
+            }
+
+            long nowTime = System.nanoTime();
+            Thread currentThread = Thread.currentThread();
+            waitQueue.offer(currentThread);
+            //加入队列之后再检查一次，避免错过加入队列之前归还的内存
+            if (usedMemory.get() + chargeSize > maxMemory) {
+                LockSupport.parkNanos(this, Math.min(MAX_PARK_NANOS, waitNanos - currentWait));
+            }
+
+            waitQueue.remove(currentThread);
+            //支持线程中断，由线程中断引起的唤醒则会抛出异常，不会再进行等待
+            if (currentThread.isInterrupted()) {
+                throw new InterruptedException("Memory pool wait thread is interrupt");
+            }
+
+            //计算已经等待的时间
+            currentWait += System.nanoTime() - nowTime;
+        }
+    }
+
+    private boolean tryReserve(long bytes) {
+        for (; ; ) {
+            long used = usedMemory.get();
+            if (used + bytes > maxMemory) {
+                return false;
+            }
+
+            if (usedMemory.compareAndSet(used, used + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 收回所有线程预留的内存，同时释放已经结束的线程缓存的内存
+     *
+     * @return 收回的内存大小
+     */
+    private long reclaimCredits() {
+        long reclaimed = 0;
+        long released = 0;
+        for (ThreadCache cache : threadCaches) {
+            synchronized (cache) {
+                reclaimed += cache.credit;
+                cache.credit = 0;
+                if (!cache.owner.isAlive()) {
+                    released += cache.releaseAll();
+                    threadCaches.remove(cache);
+                }
+            }
+        }
+
+        if (released > 0) {
+            cachedMemory.addAndGet(-released);
+            reclaimed += released;
+        }
+
+        if (reclaimed > 0) {
+            usedMemory.addAndGet(-reclaimed);
+        }
+
+        return reclaimed;
+    }
+
+    /**
+     * 释放所有线程以及全局空闲队列中缓存的内存
+     *
+     * @return 释放的内存大小
+     */
+    private long releaseCached() {
+        long released = 0;
+        for (ThreadCache cache : threadCaches) {
+            synchronized (cache) {
+                released += cache.releaseAll();
+            }
+        }
+
+        for (Queue<NettyPoolBuf> queue : globalFree) {
+            NettyPoolBuf buffer;
+            while ((buffer = queue.poll()) != null) {
+                ReferenceCountUtil.safeRelease(buffer.getByteBuf());
+                released += buffer.size();
+            }
+        }
+
+        if (released > 0) {
+            cachedMemory.addAndGet(-released);
+            usedMemory.addAndGet(-released);
+        }
+
+        return released;
+    }
+
+    /**
+     * 获取缓存的对应 size class 的内存，需要持有 cache 的锁
+     *
+     * @return 没有缓存的内存时返回null
+     */
+    private NettyPoolBuf takeCached(ThreadCache cache, int sizeClass) {
+        if (sizeClass < 0) {
+            return null;
+        }
+
+        NettyPoolBuf buffer = cache.magazines[sizeClass].pollLast();
+        if (buffer == null) {
+            buffer = refill(cache, sizeClass);
+        }
+
+        if (buffer == null) {
+            return null;
+        }
+
+        cachedMemory.addAndGet(-buffer.size());
+        buffer.getByteBuf().clear();
+        buffer.markAllocated();
+        return buffer;
+    }
+
+    private NettyPoolBuf newBuffer(int chargeSize) {
+        return NettyPoolBuf.create(allocator.buffer(chargeSize), chargeSize, this);
+    }
+
+    /**
+     * 从全局空闲队列中批量获取内存，返回其中一个，其余的放到 magazine 中
+     */
+    private NettyPoolBuf refill(ThreadCache cache, int sizeClass) {
+        Queue<NettyPoolBuf> queue = globalFree[sizeClass];
+        ArrayDeque<NettyPoolBuf> magazine = cache.magazines[sizeClass];
+        int batch = Math.max(1, magazineCapacity[sizeClass] >> 1);
+        NettyPoolBuf result = null;
+        for (int count = 0; count < batch; count++) {
+            NettyPoolBuf buffer = queue.poll();
+            if (buffer == null) {
+                break;
+            }
+
+            if (result == null) {
+                result = buffer;
+            } else {
+                magazine.addLast(buffer);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * 将归还的内存缓存到当前线程，缓存的内存仍然计算在使用的内存中，需要持有 cache 的锁
+     *
+     * @return 不能缓存时返回false, 由调用方释放
+     */
+    private boolean recycle(ThreadCache cache, NettyPoolBuf buffer) {
+        ByteBuf byteBuf = buffer.getByteBuf();
+        int sizeClass = sizeClass(buffer.size());
+        //扩容之后的内存以及已经被释放的内存不会缓存
+        if (closeState.get() || sizeClass < 0 || buffer.size() != classSize(sizeClass)
+                || byteBuf.capacity() != buffer.size() || byteBuf.refCnt() != 1) {
+            return false;
+        }
+
+        ArrayDeque<NettyPoolBuf> magazine = cache.magazines[sizeClass];
+        if (magazine.size() >= magazineCapacity[sizeClass]) {
+            flush(magazine, sizeClass);
+        }
+
+        magazine.addLast(buffer);
+        cachedMemory.addAndGet(buffer.size());
+        return true;
+    }
+
+    /**
+     * 将 magazine 中较早缓存的一半移动到全局空闲队列
+     */
+    private void flush(ArrayDeque<NettyPoolBuf> magazine, int sizeClass) {
+        int count = Math.max(1, magazine.size() >> 1);
+        for (int i = 0; i < count; i++) {
+            globalFree[sizeClass].offer(magazine.pollFirst());
+        }
+    }
+
+    /**
+     * @return 对应的 size class, 超过最大 size class 时返回 -1
+     */
+    private int sizeClass(int size) {
+        int sizeClass = log2(Math.max(size, 1 << MIN_CLASS_SHIFT)) - MIN_CLASS_SHIFT;
+        return sizeClass < numClasses ? sizeClass : -1;
+    }
+
+    private static int classSize(int sizeClass) {
+        return 1 << (sizeClass + MIN_CLASS_SHIFT);
+    }
+
+    /**
+     * 向上取整的 log2
+     */
+    private static int log2(int value) {
+        return 32 - Integer.numberOfLeadingZeros(value - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ThreadCache registerThreadCache() {
+        ArrayDeque<NettyPoolBuf>[] magazines = new ArrayDeque[numClasses];
+        for (int i = 0; i < numClasses; i++) {
+            magazines[i] = new ArrayDeque<>(magazineCapacity[i]);
+        }
+
+        ThreadCache cache = new ThreadCache(Thread.currentThread(), magazines);
+        threadCaches.add(cache);
+        return cache;
+    }
+
+    /**
+     * 唤醒队列中的线程
+     */
+    private void notifyThread(boolean notifyAll) {
+        Thread waitThread;
+        while ((waitThread = waitQueue.poll()) != null) {
+            LockSupport.unpark(waitThread);
+            if (!notifyAll) {
+                break;
+            }
+        }
+    }
+
+
+    /**
+     * 线程缓存的内存以及预留的内存，只有在收回预留内存与关闭内存池时才会被其他线程访问，所以锁基本没有竞争
+     */
+    private static final class ThreadCache {
+
+        private final Thread owner;
+
+        private final ArrayDeque<NettyPoolBuf>[] magazines;
+
+        /**
+         * 当前线程预留的内存
+         */
+        private long credit;
+
+        ThreadCache(Thread owner, ArrayDeque<NettyPoolBuf>[] magazines) {
+            this.owner = owner;
+            this.magazines = magazines;
+        }
+
+        /**
+         * @return 释放的内存大小
+         */
+        long releaseAll() {
+            long released = 0;
+            for (ArrayDeque<NettyPoolBuf> magazine : magazines) {
+                NettyPoolBuf buffer;
+                while ((buffer = magazine.pollFirst()) != null) {
+                    ReferenceCountUtil.safeRelease(buffer.getByteBuf());
+                    released += buffer.size();
+                }
+            }
+
+            return released;
+        }
+    }
+}
@@ -49,7 +49,7 @@ public abstract class ServiceThread implements Runnable {
      * 停止当前线程
      */
     public void stop() {
-        if (started.compareAndSet(false, true)) {
+        if (started.compareAndSet(true, false)) {
             threadRef.clear();
             wakeup();
         }
@@ -1,8 +1,11 @@
 package com.dc.cache;
 
-import org.checkerframework.checker.units.qual.C;
-
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
@@ -56,6 +59,55 @@ public interface Cache<K, V> extends Map<K, V> {
     V getAndRefresh(K key, long ttl, TimeUnit ttlUnit);
 
 
+    /**
+     * 批量获取数据，不存在的数据会通过一次 {@param bulkLoader} 调用进行加载，并且为加载的数据设置相应的缓存时间，
+     * 与 {@link #get(Object, Function, long, TimeUnit)} 一致，已经存在的数据会直接刷新缓存时间
+     *
+     * @param keys       需要获取的缓存key
+     * @param bulkLoader 加载所有不存在的key, 返回的结果中不包含的key表示不存在
+     * @param ttl        缓存的过期时间
+     * @param ttlUnit    时间单位
+     * @return 返回存在的数据，不包含不存在的key
+     */
+    default Map<K, V> getAll(Collection<? extends K> keys, Function<Set<K>, Map<K, V>> bulkLoader, long ttl, TimeUnit ttlUnit) {
+        Map<K, V> result = new LinkedHashMap<>(keys.size());
+        Set<K> missKeys = new LinkedHashSet<>();
+        for (K key : keys) {
+            V value = getAndRefresh(key, ttl, ttlUnit);
+            if (value != null) {
+                result.put(key, value);
+            } else {
+                missKeys.add(key);
+            }
+        }
+
+        if (!missKeys.isEmpty()) {
+            Map<K, V> loaded = bulkLoader.apply(Collections.unmodifiableSet(missKeys));
+            if (loaded != null && !loaded.isEmpty()) {
+                putAll(loaded, ttl, ttlUnit);
+                loaded.forEach((key, value) -> {
+                    if (missKeys.contains(key) && value != null) {
+                        result.put(key, value);
+                    }
+                });
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * 批量添加数据到缓存，所有的数据使用相同的缓存时间
+     *
+     * @param map     需要添加的数据
+     * @param ttl     cache max ttl
+     * @param ttlUnit ttl unit
+     */
+    default void putAll(Map<? extends K, ? extends V> map, long ttl, TimeUnit ttlUnit) {
+        map.forEach((key, value) -> put(key, value, ttl, ttlUnit));
+    }
+
+
     default V put(K key, V value) {
         return put(key, value, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
     }
@@ -2,14 +2,12 @@ package com.dc.cache;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.util.ReferenceCountUtil;
+import jodd.util.Bits;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.Serializable;
-import java.nio.ByteBuffer;
-import java.util.Arrays;
-import java.util.zip.CRC32;
 
 /**
  * Cache key for hashing
@@ -22,10 +20,14 @@ public class CacheKey implements Serializable {
     private static final long serialVersionUID = 5790732187795028243L;
 
     /**
-     * 这里是用的hash 是为了减少hash冲突的概率，尽量使用hash来解决hash冲突
+     * 这里是用的128位hash 是为了减少hash冲突的概率，尽量使用hash来解决hash冲突
      * 如果hash一样才会使用 byteBuf来进行比较，如果byteBuf缓存的数据比较多会比较浪费性能
      */
-    private final byte[] keyHash;
+    @Getter
+    private final long hash0;
+
+    @Getter
+    private final long hash1;
 
     /**
      * 添加store load 屏障，保证 byteBuf 可见性
@@ -35,41 +37,25 @@ public class CacheKey implements Serializable {
     @Getter
     private final ByteBuf byteBuf;
 
-    /**
-     * 这里对于数据在使用crc校验，但是在一些情况下还是会出现冲突的情况，这里是避免直接通过byteBuf来比较
-     */
-    private final long crc32;
-
     public CacheKey(ByteBuf byteBuf) {
         super();
-        this.keyHash = Hash.hash128toArray(byteBuf);
+        //直接读取byteBuf中的数据，不会产生拷贝
+        long[] hash = Hash.hash128(byteBuf);
+        this.hash0 = hash[0];
+        this.hash1 = hash[1];
         this.byteBuf = byteBuf;
-        this.crc32 = initCrc32(byteBuf);
-
-    }
-
-    /**
-     * 计算ByteBuf的CRC32位校验和
-     *
-     * @param byteBuf 缓存的key串
-     */
-    private long initCrc32(ByteBuf byteBuf) {
-        CRC32 crc32 = new CRC32();
-        ByteBuffer buffer = byteBuf.nioBuffer(0, byteBuf.writerIndex());
-        crc32.update(buffer);
-        return crc32.getValue();
     }
 
     public byte[] getKeyHash() {
+        byte[] keyHash = new byte[16];
+        Bits.putLong(keyHash, 0, hash0);
+        Bits.putLong(keyHash, 8, hash1);
         return keyHash;
     }
 
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + Arrays.hashCode(keyHash);
-        return result;
+        return Long.hashCode(hash0);
     }
 
     @Override
@@ -92,14 +78,9 @@ public class CacheKey implements Serializable {
         }
 
         //优先使用hash比较
-        if (!Arrays.equals(keyHash, other.keyHash))
+        if (hash0 != other.hash0 || hash1 != other.hash1)
             return false;
 
-        if (!(crc32 == other.crc32))
-            return false;
-
-
-
         if (byteBuf.refCnt() == 0) {
             log.error("other buf refCount is 0");
         }
@@ -113,7 +94,7 @@ public class CacheKey implements Serializable {
      */
     @Override
     public String toString() {
-        return "CacheKey [keyHash=" + Arrays.toString(keyHash) + "]";
+        return "CacheKey [keyHash=" + Long.toHexString(hash0) + Long.toHexString(hash1) + "]";
     }
 
     /**
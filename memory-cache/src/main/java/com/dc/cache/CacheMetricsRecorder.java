@@ -0,0 +1,338 @@
+package com.dc.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 将caffeine的统计数据记录到 {@link MeterRegistry}, 替代定时打印 {@code cache.stats()} 的日志
+ *
+ * <p>
+ * 记录的指标包括: 命中/未命中的次数、加载成功/失败的次数以及耗时分布、按照原因区分的淘汰次数、淘汰的权重，
+ * 以及通过 {@link #bindTo(Cache)} 注册的缓存数量与权重
+ * </p>
+ *
+ * <p>
+ * 同一个registry中同名的缓存共享同一组指标，缓存数量与权重只反映第一个注册的缓存
+ * </p>
+ *
+ * @author zy
+ */
+public class CacheMetricsRecorder implements StatsCounter {
+
+    /**
+     * base name
+     */
+    private static final String BASE_NAME = "cache";
+
+    /**
+     * 查询的次数
+     */
+    private static final String GETS = BASE_NAME + ".gets";
+
+    /**
+     * 加载的耗时
+     */
+    private static final String LOADS = BASE_NAME + ".loads";
+
+    /**
+     * 淘汰的次数
+     */
+    private static final String EVICTIONS = BASE_NAME + ".evictions";
+
+    /**
+     * 淘汰的权重
+     */
+    private static final String EVICTION_WEIGHT = BASE_NAME + ".eviction.weight";
+
+    /**
+     * 缓存的数量
+     */
+    private static final String SIZE = BASE_NAME + ".size";
+
+    /**
+     * 缓存的权重
+     */
+    private static final String WEIGHT = BASE_NAME + ".weight";
+
+    /**
+     * 提前刷新的延迟, 即数据达到提前刷新时间到新数据写入缓存之间的时间
+     */
+    private static final String REFRESH_LAG = BASE_NAME + ".refresh.lag";
+
+    /**
+     * 提前刷新的次数
+     */
+    private static final String REFRESHES = BASE_NAME + ".refreshes";
+
+    /**
+     * cache tag name
+     */
+    private static final String CACHE_TAG_NAME = "cache";
+
+    /**
+     * 同名的缓存在同一个registry中共享同一组指标，记录每个registry中每个指标被引用的次数, 最后一个引用关闭时才从registry中删除;
+     * registry 为弱引用，不再使用的registry可以被回收
+     */
+    private static final Map<MeterRegistry, Map<Meter.Id, Integer>> references = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final MeterRegistry registry;
+
+    /**
+     * 当前registry中指标的引用次数，同时作为注册、删除指标的锁，不同registry之间互不影响
+     */
+    private final Map<Meter.Id, Integer> referenceCounts;
+
+    private final String cacheName;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    private final Timer loadSuccess;
+
+    private final Timer loadFailure;
+
+    private final Map<RemovalCause, Counter> evictions = new EnumMap<>(RemovalCause.class);
+
+    private final Counter evictionWeight;
+
+    private final List<Meter> meters = new ArrayList<>();
+
+    /**
+     * 以下指标在 {@link #bindRefreshAhead()} 之后才会注册
+     */
+    private volatile Timer refreshLag;
+
+    private volatile Counter refreshFailure;
+
+    private volatile Counter refreshRejected;
+
+
+    public CacheMetricsRecorder(MeterRegistry registry, String cacheName) {
+        this.registry = registry;
+        this.cacheName = cacheName;
+        this.referenceCounts = references.computeIfAbsent(registry, r -> new HashMap<>());
+        this.hits = register(Counter.builder(GETS)
+                .tag(CACHE_TAG_NAME, cacheName)
+                .tag("result", "hit")
+                .description("the number of times cache lookup methods have returned a cached value")
+                .baseUnit(BaseUnits.OPERATIONS)::register);
+
+        this.misses = register(Counter.builder(GETS)
+                .tag(CACHE_TAG_NAME, cacheName)
+                .tag("result", "miss")
+                .description("the number of times cache lookup methods have returned an uncached value")
+                .baseUnit(BaseUnits.OPERATIONS)::register);
+
+        this.loadSuccess = register(Timer.builder(LOADS)
+                .tag(CACHE_TAG_NAME, cacheName)
+                .tag("result", "success")
+                .description("the time spent loading new values successfully")
+                .publishPercentileHistogram()::register);
+
+        this.loadFailure = register(Timer.builder(LOADS)
+                .tag(CACHE_TAG_NAME, cacheName)
+                .tag("result", "failure")
+                .description("the time spent loading new values that failed or returned null")
+                .publishPercentileHistogram()::register);
+
+        for (RemovalCause cause : RemovalCause.values()) {
+            if (cause.wasEvicted()) {
+                evictions.put(cause, register(Counter.builder(EVICTIONS)
+                        .tag(CACHE_TAG_NAME, cacheName)
+                        .tag("cause", cause.name())
+                        .description("the number of times an entry has been evicted")
+                        .baseUnit(BaseUnits.OPERATIONS)::register));
+            }
+        }
+
+        this.evictionWeight = register(Counter.builder(EVICTION_WEIGHT)
+                .tag(CACHE_TAG_NAME, cacheName)
+                .description("the sum of weights of evicted entries")::register);
+    }
+
+    /**
+     * 注册缓存数量与权重的指标
+     */
+    public void bindTo(Cache<?, ?> cache) {
+        register(Gauge.builder(SIZE, cache, Cache::estimatedSize)
+                .tag(CACHE_TAG_NAME, cacheName)
+                .description("the approximate number of entries in this cache")::register);
+
+        cache.policy().eviction()
+                .filter(Policy.Eviction::isWeighted)
+                .ifPresent(eviction -> register(Gauge.builder(WEIGHT, eviction, e -> e.weightedSize().orElse(0L))
+                        .tag(CACHE_TAG_NAME, cacheName)
+                        .description("the sum of weights of entries in this cache")::register));
+    }
+
+    /**
+     * 注册提前刷新的指标
+     */
+    public void bindRefreshAhead() {
+        this.refreshFailure = register(Counter.builder(REFRESHES)
+                .tag(CACHE_TAG_NAME, cacheName)
+                .tag("result", "failure")
+                .description("the number of refresh-ahead reloads that failed and kept the old value")
+                .baseUnit(BaseUnits.OPERATIONS)::register);
+
+        this.refreshRejected = register(Counter.builder(REFRESHES)
+                .tag(CACHE_TAG_NAME, cacheName)
+                .tag("result", "rejected")
+                .description("the number of refresh-ahead reloads postponed because the refresh budget was exhausted")
+                .baseUnit(BaseUnits.OPERATIONS)::register);
+
+        this.refreshLag = register(Timer.builder(REFRESH_LAG)
+                .tag(CACHE_TAG_NAME, cacheName)
+                .description("the time from an entry becoming due for refresh-ahead until the reloaded value is stored")
+                .publishPercentileHistogram()::register);
+    }
+
+    /**
+     * 记录一次成功的提前刷新
+     *
+     * @param lagNanos 数据达到提前刷新时间到新数据写入缓存之间的时间
+     */
+    public void recordRefreshSuccess(long lagNanos) {
+        Timer timer = refreshLag;
+        if (timer != null) {
+            timer.record(Math.max(0, lagNanos), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void recordRefreshFailure() {
+        Counter counter = refreshFailure;
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * 记录一次由于并发限制而推迟的提前刷新
+     */
+    public void recordRefreshRejected() {
+        Counter counter = refreshRejected;
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * 删除注册的所有指标, 同名的其他缓存仍在使用的指标会被保留
+     */
+    public void close() {
+        synchronized (meters) {
+            synchronized (referenceCounts) {
+                for (Meter meter : meters) {
+                    Integer count = referenceCounts.get(meter.getId());
+                    if (count != null && count > 1) {
+                        referenceCounts.put(meter.getId(), count - 1);
+                        continue;
+                    }
+
+                    referenceCounts.remove(meter.getId());
+                    registry.remove(meter);
+                }
+            }
+
+            meters.clear();
+        }
+    }
+
+    @Override
+    public void recordHits(@NonNegative int count) {
+        hits.increment(count);
+    }
+
+    @Override
+    public void recordMisses(@NonNegative int count) {
+        misses.increment(count);
+    }
+
+    @Override
+    public void recordLoadSuccess(@NonNegative long loadTime) {
+        loadSuccess.record(loadTime, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordLoadFailure(@NonNegative long loadTime) {
+        loadFailure.record(loadTime, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void recordEviction() {
+        recordEviction(1, RemovalCause.SIZE);
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void recordEviction(@NonNegative int weight) {
+        recordEviction(weight, RemovalCause.SIZE);
+    }
+
+    @Override
+    public void recordEviction(@NonNegative int weight, @NonNull RemovalCause cause) {
+        Counter counter = evictions.get(cause);
+        if (counter != null) {
+            counter.increment();
+        }
+
+        evictionWeight.increment(weight);
+    }
+
+    @Override
+    public @NonNull CacheStats snapshot() {
+        long evictionCount = 0;
+        for (Counter counter : evictions.values()) {
+            evictionCount += (long) counter.count();
+        }
+
+        return CacheStats.of(
+                (long) hits.count(),
+                (long) misses.count(),
+                loadSuccess.count(),
+                loadFailure.count(),
+                (long) (loadSuccess.totalTime(TimeUnit.NANOSECONDS) + loadFailure.totalTime(TimeUnit.NANOSECONDS)),
+                evictionCount,
+                (long) evictionWeight.count());
+    }
+
+    /**
+     * 注册指标并增加引用次数，同名的指标已经存在时registry会返回已经存在的指标
+     */
+    private <T extends Meter> T register(Function<MeterRegistry, T> registration) {
+        T meter;
+        synchronized (referenceCounts) {
+            meter = registration.apply(registry);
+            referenceCounts.merge(meter.getId(), 1, Integer::sum);
+        }
+
+        synchronized (meters) {
+            meters.add(meter);
+        }
+
+        return meter;
+    }
+}
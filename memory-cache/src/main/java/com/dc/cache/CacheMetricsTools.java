@@ -2,6 +2,7 @@ package com.dc.cache;
 
 import com.dc.pool.thread.NamedThreadFactory;
 import com.dc.pool.thread.ThreadPoolUtil;
+import io.netty.util.HashedWheelTimer;
 
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -18,6 +19,11 @@ public class CacheMetricsTools {
      */
     public static final ThreadPoolExecutor CACHE_POOL;
 
+    /**
+     * 所有缓存共享的定时器，用于窗口滚动、批量刷新、快照以及过期清理等周期任务，任务应该尽快完成，耗时的操作提交到线程池中执行
+     */
+    public static final HashedWheelTimer CACHE_TIMER = new HashedWheelTimer(new NamedThreadFactory("cache-timer-", true));
+
     static {
         CACHE_POOL = ThreadPoolUtil.newBuilder()
                 .poolName("CACHE_REFRESH")
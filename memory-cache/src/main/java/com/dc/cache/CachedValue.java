@@ -11,5 +11,12 @@ public interface CachedValue<K, V> extends ExpirableValue {
 
     V getValue();
 
+    /**
+     * 数据是否是因为超过缓存的最大容量而被淘汰的
+     */
+    default boolean isEvicted() {
+        return false;
+    }
+
 }
 
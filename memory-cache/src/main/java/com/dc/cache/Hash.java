@@ -1,11 +1,8 @@
 package com.dc.cache;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufAllocator;
-import io.netty.util.CharsetUtil;
 import jodd.util.Bits;
 
-import java.nio.ByteBuffer;
 import java.util.Base64;
 
 /**
@@ -23,51 +20,34 @@ public class Hash {
 
     public static byte[] hash128toArray(ByteBuf objectState) {
         long[] hash = hash128(objectState);
-
-        ByteBuf buf = ByteBufAllocator.DEFAULT.buffer((2 * Long.SIZE) / Byte.SIZE);
-        try {
-            buf.writeLong(hash[0]).writeLong(hash[1]);
-            byte[] dst = new byte[buf.readableBytes()];
-            buf.readBytes(dst);
-            return dst;
-        } finally {
-            buf.release();
-        }
+        byte[] bytes = new byte[16];
+        Bits.putLong(bytes, 0, hash[0]);
+        Bits.putLong(bytes, 8, hash[1]);
+        return bytes;
     }
 
+    /**
+     * 直接读取ByteBuf中可读的数据计算hash, 堆内与堆外内存都不会产生拷贝
+     */
     public static long hash64(ByteBuf objectState) {
-        HighwayHash h = calcHash(objectState);
-        return h.finalize64();
+        return HighwayHash.hash64(objectState, objectState.readerIndex(), objectState.readableBytes(), KEY);
     }
 
-    public static long[] hash128(ByteBuf objectState) {
-        HighwayHash h = calcHash(objectState);
-        return h.finalize128();
+    public static long hash64(byte[] data) {
+        return HighwayHash.hash64(data, 0, data.length, KEY);
     }
 
-    protected static HighwayHash calcHash(ByteBuf objectState) {
-        HighwayHash h = new HighwayHash(KEY);
-        int i;
-        int length = objectState.readableBytes();
-        int offset = objectState.readerIndex();
-        byte[] data = new byte[32];
-        for (i = 0; i + 32 <= length; i += 32) {
-            objectState.getBytes(offset + i, data);
-            h.updatePacket(data, 0);
-        }
-        if ((length & 31) != 0) {
-            data = new byte[length & 31];
-            objectState.getBytes(offset + i, data);
-            h.updateRemainder(data, 0, length & 31);
-        }
-        return h;
+    /**
+     * 直接读取ByteBuf中可读的数据计算hash, 堆内与堆外内存都不会产生拷贝
+     *
+     * @return 长度为2的数组，包含128位的hash值
+     */
+    public static long[] hash128(ByteBuf objectState) {
+        return HighwayHash.hash128(objectState, objectState.readerIndex(), objectState.readableBytes(), KEY);
     }
 
     public static String hash128toBase64(ByteBuf objectState) {
-        long[] hash = hash128(objectState);
-        byte[] bytes = new byte[16];
-        Bits.putLong(bytes,0, hash[0]);
-        Bits.putLong(bytes,8, hash[1]);
+        byte[] bytes = hash128toArray(objectState);
         String base64 = Base64.getEncoder().encodeToString(bytes);
         return base64.substring(0, base64.length() - 2);
     }
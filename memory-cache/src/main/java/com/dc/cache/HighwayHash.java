@@ -1,5 +1,7 @@
 package com.dc.cache;
 
+import io.netty.buffer.ByteBuf;
+
 /**
  * HighwayHash algorithm. See <a href="https://github.com/google/highwayhash">
  * HighwayHash on GitHub</a>
@@ -51,6 +53,17 @@ public final class HighwayHash {
         update(a0, a1, a2, a3);
     }
 
+    /**
+     * Updates the hash with 32 bytes of data read directly from the buffer, the
+     * buffer may be heap or direct and no bytes are copied.
+     * @param buf buffer which has at least index + 32 bytes
+     * @param index absolute index in the buffer to read the first of 32 bytes from
+     */
+    public void updatePacket(ByteBuf buf, int index) {
+        update(buf.getLongLE(index), buf.getLongLE(index + 8),
+                buf.getLongLE(index + 16), buf.getLongLE(index + 24));
+    }
+
     /**
      * Updates the hash with 32 bytes of data given as 4 longs. This function is
      * more efficient than updatePacket when you can use it.
@@ -127,6 +140,40 @@ public final class HighwayHash {
         updatePacket(packet, 0);
     }
 
+    /**
+     * Same as {@link #updateRemainder(byte[], int, int)} but reads the last 1 to 31
+     * bytes directly from the buffer without building an intermediate packet.
+     * @param buf buffer which has at least index + size_mod32 bytes
+     * @param index absolute index in the buffer to start reading size_mod32 bytes from
+     * @param size_mod32 the amount of bytes to read
+     */
+    public void updateRemainder(ByteBuf buf, int index, int size_mod32) {
+        if (size_mod32 < 0 || size_mod32 >= 32) {
+            throw new IllegalArgumentException(
+                    String.format("size_mod32 (%s) must be between 0 and 31", size_mod32));
+        }
+        int size_mod4 = size_mod32 & 3;
+        int remainder = size_mod32 & ~3;
+        for (int i = 0; i < 4; ++i) {
+            v0[i] += ((long)size_mod32 << 32) + size_mod32;
+        }
+        rotate32By(size_mod32, v1);
+        long a0 = readLane(buf, index, 0, remainder);
+        long a1 = readLane(buf, index, 8, remainder);
+        long a2 = readLane(buf, index, 16, remainder);
+        long a3 = readLane(buf, index, 24, remainder);
+        if ((size_mod32 & 16) != 0) {
+            a3 |= buf.getUnsignedIntLE(index + remainder + size_mod4 - 4) << 32;
+        } else {
+            if (size_mod4 != 0) {
+                a2 |= buf.getUnsignedByte(index + remainder)
+                        | ((long) buf.getUnsignedByte(index + remainder + (size_mod4 >>> 1)) << 8)
+                        | ((long) buf.getUnsignedByte(index + remainder + (size_mod4 - 1)) << 16);
+            }
+        }
+        update(a0, a1, a2, a3);
+    }
+
     /**
      * Computes the hash value after all bytes were processed. Invalidates the
      * state.
@@ -236,6 +283,20 @@ public final class HighwayHash {
                 ((src[pos + 6] & 0xffL) << 48) | ((src[pos + 7] & 0xffL) << 56);
     }
 
+    /**
+     * Reads the lane starting at offset of the first length bytes, length is a multiple of 4
+     */
+    private static long readLane(ByteBuf buf, int index, int offset, int length) {
+        int available = length - offset;
+        if (available >= 8) {
+            return buf.getLongLE(index + offset);
+        }
+        if (available >= 4) {
+            return buf.getUnsignedIntLE(index + offset);
+        }
+        return 0;
+    }
+
     private void rotate32By(long count, long[] lanes) {
         for (int i = 0; i < 4; ++i) {
             long half0 = (lanes[i] & 0xffffffffL);
@@ -309,6 +370,46 @@ public final class HighwayHash {
         return h.finalize256();
     }
 
+    /**
+     * NOTE: The 64-bit HighwayHash algorithm is declared stable and no longer subject to change.
+     *
+     * @param buf heap or direct buffer with data bytes, read without copying
+     * @param index absolute index of the first byte of data to read from
+     * @param length number of bytes from buffer to read
+     * @param key array of size 4 with the key to initialize the hash with
+     * @return 64-bit hash for the given data
+     */
+    public static long hash64(ByteBuf buf, int index, int length, long[] key) {
+        HighwayHash h = new HighwayHash(key);
+        h.processAll(buf, index, length);
+        return h.finalize64();
+    }
+
+    /**
+     * NOTE: The 128-bit HighwayHash algorithm is not yet frozen and subject to change.
+     *
+     * @param buf heap or direct buffer with data bytes, read without copying
+     * @param index absolute index of the first byte of data to read from
+     * @param length number of bytes from buffer to read
+     * @param key array of size 4 with the key to initialize the hash with
+     * @return array of size 2 containing 128-bit hash for the given data
+     */
+    public static long[] hash128(ByteBuf buf, int index, int length, long[] key) {
+        HighwayHash h = new HighwayHash(key);
+        h.processAll(buf, index, length);
+        return h.finalize128();
+    }
+
+    private void processAll(ByteBuf buf, int index, int length) {
+        int i;
+        for (i = 0; i + 32 <= length; i += 32) {
+            updatePacket(buf, index + i);
+        }
+        if ((length & 31) != 0) {
+            updateRemainder(buf, index + i, length & 31);
+        }
+    }
+
     private void processAll(byte[] data, int offset, int length) {
         int i;
         for (i = 0; i + 32 <= length; i += 32) {
@@ -0,0 +1,54 @@
+package com.dc.cache.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * 运行 memory-cache 的所有基准测试，每个线程数的结果以JSON格式输出到 {@code target/jmh} 目录，用于比较不同版本的性能,
+ * 可以通过 JMH Visualizer 等工具比较不同版本相同文件名的结果
+ *
+ * <p>
+ * 通过 {@code -Djmh.tag=版本号} 指定输出文件的前缀，默认为 {@code snapshot}; 通过 {@code -Djmh.include=类名} 只运行部分测试
+ * </p>
+ *
+ * @author zy
+ */
+public class BenchMarkRunner {
+
+    /**
+     * 测试的线程数
+     */
+    private static final int[] THREADS = {1, 4, 16, 64};
+
+    public static void main(String[] args) throws RunnerException {
+        String include = System.getProperty("jmh.include", BenchMarkRunner.class.getPackage().getName());
+        for (int threads : THREADS) {
+            run(include, threads);
+        }
+    }
+
+    static void run(String include, int threads) throws RunnerException {
+        String tag = System.getProperty("jmh.tag", "snapshot");
+        File dir = new File("target/jmh");
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IllegalStateException("Cannot create directory: " + dir.getAbsolutePath());
+        }
+
+        Options opts = new OptionsBuilder()
+                // 表示包含的测试类
+                .include(include)
+                .threads(threads)
+                .forks(1)
+                .syncIterations(true)
+                .resultFormat(ResultFormatType.JSON)
+                .result(new File(dir, tag + "-" + include.substring(include.lastIndexOf('.') + 1) + "-" + threads + "t.json").getPath())
+                .build();
+
+        new Runner(opts).run();
+    }
+}
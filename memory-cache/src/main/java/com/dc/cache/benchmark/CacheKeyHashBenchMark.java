@@ -0,0 +1,91 @@
+package com.dc.cache.benchmark;
+
+import com.dc.cache.CacheKey;
+import com.dc.cache.Hash;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 不同长度的key计算 {@link Hash} 以及创建、比较 {@link CacheKey} 的耗时，{@link Arrays#hashCode(byte[])} 作为对照
+ *
+ * @author zy
+ */
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+public class CacheKeyHashBenchMark {
+
+    @Param({"8", "32", "128", "512", "2048"})
+    private int keySize;
+
+    private byte[] bytes;
+
+    private ByteBuf heapBuf;
+
+    private ByteBuf directBuf;
+
+    private CacheKey cacheKey;
+
+    private CacheKey sameKey;
+
+    @Setup
+    public void initialize() {
+        bytes = new byte[keySize];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        heapBuf = Unpooled.wrappedBuffer(bytes);
+        directBuf = Unpooled.directBuffer(keySize).writeBytes(bytes);
+        cacheKey = new CacheKey(heapBuf);
+        sameKey = new CacheKey(Unpooled.copiedBuffer(bytes));
+    }
+
+    @TearDown
+    public void release() {
+        directBuf.release();
+        sameKey.release();
+    }
+
+    @Benchmark
+    public int baseline() {
+        return Arrays.hashCode(bytes);
+    }
+
+    @Benchmark
+    public long hash64() {
+        return Hash.hash64(bytes);
+    }
+
+    @Benchmark
+    public long[] hash128Heap() {
+        return Hash.hash128(heapBuf);
+    }
+
+    @Benchmark
+    public long[] hash128Direct() {
+        return Hash.hash128(directBuf);
+    }
+
+    @Benchmark
+    public CacheKey newCacheKey() {
+        return new CacheKey(heapBuf);
+    }
+
+    /**
+     * hash 相同时需要比较所有的字节
+     */
+    @Benchmark
+    public boolean cacheKeyEquals() {
+        return cacheKey.equals(sameKey);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        BenchMarkRunner.run(CacheKeyHashBenchMark.class.getSimpleName(), 1);
+    }
+}
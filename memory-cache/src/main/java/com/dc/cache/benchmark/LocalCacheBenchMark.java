@@ -0,0 +1,102 @@
+package com.dc.cache.benchmark;
+
+import com.dc.cache.caffeine.LocalCaffeineCache;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * {@link LocalCaffeineCache} 在不同key分布下的读写吞吐量，缓存容量为key数量的一半，保证会有一定的未命中与淘汰
+ *
+ * @author zy
+ */
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.Throughput)
+public class LocalCacheBenchMark {
+
+    private static final int SAMPLES = 1 << 20;
+
+    private static final int MASK = SAMPLES - 1;
+
+    /**
+     * Zipf 分布的指数，0 表示均匀分布
+     */
+    @Param({"0", "0.99", "1.2"})
+    private double exponent;
+
+    @Param({"100000"})
+    private int items;
+
+    private LocalCaffeineCache<String, Integer> cache;
+
+    private String[] keys;
+
+    private int[] sequence;
+
+    private final Function<String, Integer> loader = String::length;
+
+    @Setup
+    public void initialize() {
+        cache = new LocalCaffeineCache<>("benchmark", 1024, items / 2, null, ForkJoinPool.commonPool(),
+                Scheduler.disabledScheduler(), 0, 0, null);
+        keys = new String[items];
+        for (int i = 0; i < items; i++) {
+            keys[i] = "key:" + i;
+        }
+
+        sequence = ZipfianKeys.generate(items, exponent, SAMPLES, 1);
+        for (int i = 0; i < SAMPLES; i++) {
+            String key = keys[sequence[i]];
+            cache.put(key, i, 1, TimeUnit.HOURS);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        int index = ThreadLocalRandom.current().nextInt();
+    }
+
+    @Benchmark
+    public Integer getIfPresent(ThreadState state) {
+        return cache.get(keys[sequence[state.index++ & MASK]]);
+    }
+
+    @Benchmark
+    public Integer getOrLoad(ThreadState state) {
+        return cache.get(keys[sequence[state.index++ & MASK]], loader, 1, TimeUnit.HOURS);
+    }
+
+    @Benchmark
+    public Integer put(ThreadState state) {
+        int index = state.index++;
+        return cache.put(keys[sequence[index & MASK]], index, 1, TimeUnit.HOURS);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public Integer read(ThreadState state) {
+        return cache.get(keys[sequence[state.index++ & MASK]]);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public Integer write(ThreadState state) {
+        int index = state.index++;
+        return cache.put(keys[sequence[index & MASK]], index, 1, TimeUnit.HOURS);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        BenchMarkRunner.run(LocalCacheBenchMark.class.getSimpleName(), 4);
+    }
+}
@@ -0,0 +1,118 @@
+package com.dc.cache.benchmark;
+
+import com.dc.cache.single.ReadWriteCache;
+import com.dc.cache.single.RefreshableReferenceCache;
+import com.dc.cache.single.ShareLockCache;
+import com.dc.cache.single.SpinCache;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 单值缓存在多个线程读取、一个线程不断失效缓存时的读取吞吐量，读取线程需要承担重新加载数据的开销
+ *
+ * @author zy
+ */
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@State(Scope.Group)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.Throughput)
+@SuppressWarnings("deprecation")
+public class ReferenceCacheBenchMark {
+
+    private static final int READERS = 7;
+
+    /**
+     * 失效缓存的间隔，通过消耗CPU模拟
+     */
+    private static final long INVALIDATE_TOKENS = 10_000;
+
+    private final Supplier<Object> supplier = () -> {
+        Blackhole.consumeCPU(100);
+        return new Object();
+    };
+
+    private SpinCache<Object> spinCache;
+
+    private ReadWriteCache<Object> readWriteCache;
+
+    private ShareLockCache<Object> shareLockCache;
+
+    private RefreshableReferenceCache<Object> refreshableCache;
+
+    @Setup
+    public void initialize() {
+        spinCache = new SpinCache<>(supplier);
+        readWriteCache = new ReadWriteCache<>(supplier);
+        shareLockCache = new ShareLockCache<>(supplier);
+        refreshableCache = new RefreshableReferenceCache<>(supplier);
+    }
+
+    @Benchmark
+    @Group("spin")
+    @GroupThreads(READERS)
+    public Object spinRead() {
+        return spinCache.read();
+    }
+
+    @Benchmark
+    @Group("spin")
+    @GroupThreads(1)
+    public void spinRefresh() {
+        Blackhole.consumeCPU(INVALIDATE_TOKENS);
+        spinCache.refresh();
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(READERS)
+    public Object readWriteRead() {
+        return readWriteCache.getCache();
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public void readWriteClear() {
+        Blackhole.consumeCPU(INVALIDATE_TOKENS);
+        readWriteCache.clearCache();
+    }
+
+    @Benchmark
+    @Group("shareLock")
+    @GroupThreads(READERS)
+    public Object shareLockRead() {
+        return shareLockCache.getCache();
+    }
+
+    @Benchmark
+    @Group("shareLock")
+    @GroupThreads(1)
+    public void shareLockClear() {
+        Blackhole.consumeCPU(INVALIDATE_TOKENS);
+        shareLockCache.clearCache();
+    }
+
+    @Benchmark
+    @Group("refreshable")
+    @GroupThreads(READERS)
+    public Object refreshableRead() {
+        return refreshableCache.getCache();
+    }
+
+    @Benchmark
+    @Group("refreshable")
+    @GroupThreads(1)
+    public void refreshableClear() {
+        Blackhole.consumeCPU(INVALIDATE_TOKENS);
+        refreshableCache.clearCache();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        BenchMarkRunner.run(ReferenceCacheBenchMark.class.getSimpleName(), READERS + 1);
+    }
+}
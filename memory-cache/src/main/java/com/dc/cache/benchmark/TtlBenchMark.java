@@ -0,0 +1,86 @@
+package com.dc.cache.benchmark;
+
+import com.dc.cache.caffeine.LocalCaffeineCache;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 过期时间较短、数据频繁过期时 {@link LocalCaffeineCache} 的读写吞吐量，包含过期时间抖动以及定时清理过期数据的开销
+ *
+ * @author zy
+ */
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.Throughput)
+public class TtlBenchMark {
+
+    private static final int SAMPLES = 1 << 20;
+
+    private static final int MASK = SAMPLES - 1;
+
+    @Param({"1", "100", "60000"})
+    private long ttlMillis;
+
+    @Param({"0", "0.2"})
+    private double ttlJitter;
+
+    private LocalCaffeineCache<String, Integer> cache;
+
+    private String[] keys;
+
+    private int[] sequence;
+
+    private final Function<String, Integer> loader = String::length;
+
+    @Setup
+    public void initialize() {
+        int items = 100_000;
+        cache = new LocalCaffeineCache<>("benchmark-ttl", 1024, items, null, ForkJoinPool.commonPool(),
+                Scheduler.systemScheduler(), ttlJitter, 0, null);
+        keys = new String[items];
+        for (int i = 0; i < items; i++) {
+            keys[i] = "key:" + i;
+        }
+
+        sequence = ZipfianKeys.generate(items, 0.99, SAMPLES, 1);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        int index = ThreadLocalRandom.current().nextInt();
+    }
+
+    @Benchmark
+    public Integer put(ThreadState state) {
+        int index = state.index++;
+        return cache.put(keys[sequence[index & MASK]], index, ttlMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    public Integer getOrLoad(ThreadState state) {
+        return cache.get(keys[sequence[state.index++ & MASK]], loader, ttlMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    public Integer merge(ThreadState state) {
+        return cache.merge(keys[sequence[state.index++ & MASK]], 1, Integer::sum, ttlMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    public Integer getAndRefresh(ThreadState state) {
+        return cache.getAndRefresh(keys[sequence[state.index++ & MASK]], ttlMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        BenchMarkRunner.run(TtlBenchMark.class.getSimpleName(), 4);
+    }
+}
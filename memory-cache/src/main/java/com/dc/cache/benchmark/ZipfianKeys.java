@@ -0,0 +1,53 @@
+package com.dc.cache.benchmark;
+
+import java.util.Random;
+
+/**
+ * 预先生成服从 Zipf 分布的key序列，避免在测试过程中计算随机数影响结果
+ *
+ * @author zy
+ */
+final class ZipfianKeys {
+
+    private ZipfianKeys() {
+    }
+
+    /**
+     * @param items    key 的数量
+     * @param exponent Zipf 分布的指数，为0时为均匀分布，越大热点越集中
+     * @param samples  生成的key序列长度，需要为2的幂
+     * @return key 的下标序列，取值范围为 [0, items)
+     */
+    static int[] generate(int items, double exponent, int samples, long seed) {
+        double[] cdf = new double[items];
+        double sum = 0;
+        for (int i = 0; i < items; i++) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+
+        Random random = new Random(seed);
+        int[] keys = new int[samples];
+        for (int i = 0; i < samples; i++) {
+            double target = random.nextDouble() * sum;
+            keys[i] = binarySearch(cdf, target);
+        }
+
+        return keys;
+    }
+
+    private static int binarySearch(double[] cdf, double target) {
+        int low = 0;
+        int high = cdf.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cdf[mid] < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+}
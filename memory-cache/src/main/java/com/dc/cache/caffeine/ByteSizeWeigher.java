@@ -0,0 +1,91 @@
+package com.dc.cache.caffeine;
+
+import com.dc.tools.io.serilizer.ProtoStuffUtils;
+import com.github.benmanes.caffeine.cache.Weigher;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.nio.ByteBuffer;
+import java.util.function.ToIntFunction;
+
+/**
+ * 按照value占用的字节数计算权重，配合 {@code maximumWeight} 使用时可以按照内存大小限制缓存
+ *
+ * <p>
+ * 默认的估算方式: {@link ByteBuf}、{@link ByteBuffer}、{@code byte[]} 直接使用可读的字节数,
+ * {@link CharSequence} 按照每个字符2个字节计算，其他对象使用protostuff序列化后的长度。
+ * 序列化会产生额外的开销，对于写入频繁的POJO建议通过 {@link #of(ToIntFunction)} 提供自定义的估算方式
+ * </p>
+ *
+ * @param <K> cache key
+ * @param <V> cache value
+ * @apiNote 权重只在写入时计算一次, key 占用的内存不计算在内
+ */
+@Slf4j
+public class ByteSizeWeigher<K, V> implements Weigher<K, V> {
+
+    /**
+     * 无法估算大小时使用的默认权重
+     */
+    private static final int DEFAULT_WEIGHT = 1;
+
+    private static final ByteSizeWeigher<Object, Object> DEFAULT = new ByteSizeWeigher<>(ByteSizeWeigher::estimate);
+
+    private final ToIntFunction<? super V> estimator;
+
+    private ByteSizeWeigher(ToIntFunction<? super V> estimator) {
+        this.estimator = estimator;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> ByteSizeWeigher<K, V> defaults() {
+        return (ByteSizeWeigher<K, V>) DEFAULT;
+    }
+
+    /**
+     * @param estimator 自定义的value大小估算方式，返回value占用的字节数
+     */
+    public static <K, V> ByteSizeWeigher<K, V> of(ToIntFunction<? super V> estimator) {
+        return new ByteSizeWeigher<>(estimator);
+    }
+
+    @Override
+    public @NonNegative int weigh(@NonNull K key, @NonNull V value) {
+        return Math.max(DEFAULT_WEIGHT, estimator.applyAsInt(value));
+    }
+
+    /**
+     * 估算value 占用的字节数
+     */
+    public static int estimate(Object value) {
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+
+        if (value instanceof ByteBuf) {
+            return ((ByteBuf) value).readableBytes();
+        }
+
+        if (value instanceof ByteBufHolder) {
+            return ((ByteBufHolder) value).content().readableBytes();
+        }
+
+        if (value instanceof ByteBuffer) {
+            return ((ByteBuffer) value).remaining();
+        }
+
+        if (value instanceof CharSequence) {
+            return ((CharSequence) value).length() << 1;
+        }
+
+        try {
+            return ProtoStuffUtils.serialize(value).length;
+        } catch (Exception e) {
+            log.warn("Estimate value size error, use default weight, value type is: {}", value.getClass().getName(), e);
+            return DEFAULT_WEIGHT;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.dc.cache.caffeine;
+
+import com.dc.cache.CacheMetricsTools;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * 基于 Caffeine {@link AsyncCache} 的 Spring {@link org.springframework.cache.Cache} 实现，缓存中保存的是 {@link CompletableFuture}
+ *
+ * <p>
+ * 同一个key正在加载时，并发的调用会共享同一个 {@link CompletableFuture}, 只会执行一次加载:
+ * <ul>
+ *     <li>{@link #get(Object, Callable)} 在调用线程中加载，其他线程等待加载完成</li>
+ *     <li>{@link #retrieve(Object, Supplier)} 由调用方返回异步加载的结果，不会阻塞调用线程</li>
+ *     <li>{@link #retrieveAsync(Object, Callable)} 在缓存的 executor 中执行阻塞的加载，通常为有界的 {@link CacheMetricsTools#CACHE_POOL}</li>
+ *     <li>{@link #retrieveReactive(Object, Class, Supplier)} 支持 {@code Mono}、{@code Flux} 等响应式类型</li>
+ * </ul>
+ * 加载失败或者返回的future异常结束时，Caffeine 会自动删除对应的缓存
+ * </p>
+ *
+ * @author zy
+ * @see CaffeineCache
+ */
+public class CaffeineAsyncCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+
+    private final AsyncCache<Object, Object> cache;
+
+    public CaffeineAsyncCache(String name, AsyncCache<Object, Object> cache) {
+        this(name, cache, true);
+    }
+
+    /**
+     * @param allowNullValues 是否允许缓存null值, 响应式类型返回空时同样会被缓存为null
+     */
+    public CaffeineAsyncCache(String name, AsyncCache<Object, Object> cache, boolean allowNullValues) {
+        super(allowNullValues);
+        Assert.notNull(name, "Name must not be null");
+        Assert.notNull(cache, "Cache must not be null");
+        this.name = name;
+        this.cache = cache;
+    }
+
+    /**
+     * 创建在 {@link CacheMetricsTools#CACHE_POOL} 中执行异步加载的缓存
+     */
+    public static CaffeineAsyncCache create(String name, long maximumSize, Duration expireAfterWrite) {
+        AsyncCache<Object, Object> cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .executor(CacheMetricsTools.CACHE_POOL)
+                .buildAsync();
+
+        return new CaffeineAsyncCache(name, cache);
+    }
+
+    @Override
+    public final String getName() {
+        return this.name;
+    }
+
+    @Override
+    public final AsyncCache<Object, Object> getNativeCache() {
+        return this.cache;
+    }
+
+    /**
+     * 正在加载的key 会等待加载完成，加载失败时视为不存在
+     */
+    @Override
+    @Nullable
+    protected Object lookup(Object key) {
+        CompletableFuture<Object> future = this.cache.getIfPresent(key);
+        if (future == null) {
+            return null;
+        }
+
+        try {
+            return future.join();
+        } catch (CompletionException | CancellationException ex) {
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    @Nullable
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        CompletableFuture<Object> loading = new CompletableFuture<>();
+        CompletableFuture<Object> future = this.cache.get(key, (k, executor) -> loading);
+        //只有放入loading的线程执行加载，其他线程等待同一个future
+        if (future == loading) {
+            try {
+                loading.complete(toStoreValue(valueLoader.call()));
+            } catch (Exception ex) {
+                loading.completeExceptionally(ex);
+                throw new ValueRetrievalException(key, valueLoader, ex);
+            } catch (Throwable ex) {
+                //Error 也需要结束future, 否则等待的线程会一直阻塞
+                loading.completeExceptionally(ex);
+                throw ex;
+            }
+        }
+
+        try {
+            return (T) fromStoreValue(future.join());
+        } catch (CompletionException ex) {
+            throw new ValueRetrievalException(key, valueLoader, ex.getCause());
+        }
+    }
+
+    /**
+     * 获取缓存的数据，不会阻塞调用线程
+     *
+     * @return 不存在时返回null
+     */
+    @Nullable
+    public CompletableFuture<?> retrieve(Object key) {
+        CompletableFuture<Object> future = this.cache.getIfPresent(key);
+        return future == null ? null : future.thenApply(this::fromStoreValue);
+    }
+
+    /**
+     * 获取缓存的数据，不存在时通过 {@code valueLoader} 异步加载，同一个key同时只会有一次加载
+     *
+     * @param valueLoader 返回异步加载的结果，不能阻塞调用线程
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> retrieve(Object key, Supplier<CompletableFuture<T>> valueLoader) {
+        try {
+            return (CompletableFuture<T>) this.cache.get(key, (k, executor) -> valueLoader.get().thenApply(this::toStoreValue))
+                    .thenApply(this::fromStoreValue);
+        } catch (RuntimeException ex) {
+            CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new ValueRetrievalException(key, valueLoader::get, ex));
+            return failed;
+        }
+    }
+
+    /**
+     * 获取缓存的数据，不存在时在缓存的 executor 中执行 {@code valueLoader}, 适用于阻塞的加载，
+     * executor 拒绝任务时返回异常结束的future
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> retrieveAsync(Object key, Callable<T> valueLoader) {
+        try {
+            return (CompletableFuture<T>) this.cache.get(key, (k, executor) -> CompletableFuture.supplyAsync(() -> {
+                try {
+                    return toStoreValue(valueLoader.call());
+                } catch (Exception ex) {
+                    throw new ValueRetrievalException(key, valueLoader, ex);
+                }
+            }, executor)).thenApply(this::fromStoreValue);
+        } catch (RuntimeException ex) {
+            CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(ex);
+            return failed;
+        }
+    }
+
+    /**
+     * 缓存响应式类型的结果，订阅时才会获取缓存或者加载，取消订阅不会取消共享的加载
+     *
+     * @param returnType  响应式类型，例如 {@code Mono}、{@code Flux}, 需要能够通过 {@link org.springframework.core.ReactiveAdapterRegistry} 转换
+     * @param valueLoader 返回 {@code returnType} 类型的结果，多个元素的类型会缓存所有元素
+     */
+    public <R> R retrieveReactive(Object key, Class<R> returnType, Supplier<? extends R> valueLoader) {
+        return ReactiveCacheSupport.retrieve(this, key, returnType, valueLoader);
+    }
+
+    @Override
+    public void put(Object key, @Nullable Object value) {
+        this.cache.put(key, CompletableFuture.completedFuture(toStoreValue(value)));
+    }
+
+    @Override
+    @Nullable
+    public ValueWrapper putIfAbsent(Object key, @Nullable Object value) {
+        CompletableFuture<Object> stored = CompletableFuture.completedFuture(toStoreValue(value));
+        CompletableFuture<Object> future = this.cache.get(key, (k, executor) -> stored);
+        if (future == stored) {
+            return null;
+        }
+
+        try {
+            return toValueWrapper(future.join());
+        } catch (CompletionException | CancellationException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        this.cache.synchronous().invalidate(key);
+    }
+
+    @Override
+    public void clear() {
+        this.cache.synchronous().invalidateAll();
+    }
+}
@@ -0,0 +1,288 @@
+package com.dc.cache.caffeine;
+
+import com.dc.cache.CacheMetricsTools;
+import com.dc.tools.common.utils.Assert;
+import com.dc.tools.io.serilizer.ProtoStuffUtils;
+import com.google.common.util.concurrent.RateLimiter;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 定时将 {@link LocalCaffeineCache} 中访问频率最高的key (以及value) 写入本地文件，重启后通过 {@link #preload} 预热缓存，
+ * 避免发布之后缓存为空导致大量请求直接访问后端服务
+ *
+ * <p>
+ * 文件通过 {@link ProtoStuffUtils} 序列化，写入时先写临时文件再替换，保证文件不会因为写入过程中进程退出而损坏。
+ * 保存value时同时保存数据的绝对过期时间，预热时直接写入缓存并保留剩余的过期时间; 只保存key时通过loader按照限流的速率并行加载
+ * </p>
+ *
+ * @param <K> cache key
+ * @param <V> cache value
+ * @author zy
+ */
+@Slf4j
+public class HotKeySnapshot<K, V> {
+
+    private static final long NEVER_EXPIRE = Long.MAX_VALUE;
+
+    private final LocalCaffeineCache<K, V> cache;
+
+    private final File file;
+
+    /**
+     * 保存访问频率最高的key的数量
+     */
+    private final int hotKeys;
+
+    /**
+     * 是否保存value, 为false时只保存key
+     */
+    private final boolean withValues;
+
+    /**
+     * 用于写入快照以及预热时加载数据
+     */
+    private final Executor executor;
+
+    private volatile Timeout timeout;
+
+    private volatile boolean closed;
+
+    public HotKeySnapshot(LocalCaffeineCache<K, V> cache, File file, int hotKeys, boolean withValues) {
+        this(cache, file, hotKeys, withValues, CacheMetricsTools.CACHE_POOL);
+    }
+
+    public HotKeySnapshot(LocalCaffeineCache<K, V> cache, File file, int hotKeys, boolean withValues, Executor executor) {
+        Assert.isTrue(hotKeys > 0, "hotKeys must > 0");
+        this.cache = cache;
+        this.file = file;
+        this.hotKeys = hotKeys;
+        this.withValues = withValues;
+        this.executor = executor;
+    }
+
+    /**
+     * 开始定时写入快照
+     */
+    public void start(long period, TimeUnit unit) {
+        Assert.isTrue(!closed, "Snapshot task is stopped");
+        Assert.isTrue(timeout == null, "Snapshot task is already started");
+        this.timeout = CacheMetricsTools.CACHE_TIMER.newTimeout(new SnapshotTask(period, unit), period, unit);
+    }
+
+    private class SnapshotTask implements TimerTask {
+
+        private final long period;
+
+        private final TimeUnit unit;
+
+        SnapshotTask(long period, TimeUnit unit) {
+            this.period = period;
+            this.unit = unit;
+        }
+
+        @Override
+        public void run(Timeout t) {
+            //已经停止时不再继续调度
+            if (closed) {
+                return;
+            }
+
+            try {
+                executor.execute(HotKeySnapshot.this::snapshot);
+            } catch (RejectedExecutionException e) {
+                log.warn("Snapshot task is rejected, cacheName is: {}", cache.getCacheName());
+            } finally {
+                timeout = CacheMetricsTools.CACHE_TIMER.newTimeout(this, period, unit);
+            }
+        }
+    }
+
+    /**
+     * 停止定时任务，并写入最后一次快照
+     */
+    public void stop() {
+        closed = true;
+        Timeout current = timeout;
+        if (current != null) {
+            current.cancel();
+        }
+
+        snapshot();
+    }
+
+    /**
+     * 将当前访问频率最高的数据写入文件
+     *
+     * @return 写入的数据量，写入失败时返回-1
+     */
+    public synchronized int snapshot() {
+        Map<K, V> hottest = cache.hottest(hotKeys);
+        if (hottest.isEmpty()) {
+            return 0;
+        }
+
+        long now = System.currentTimeMillis();
+        Snapshot snapshot = new Snapshot();
+        snapshot.createTime = now;
+        snapshot.entries = new ArrayList<>(hottest.size());
+        hottest.forEach((key, value) -> {
+            SnapshotEntry entry = new SnapshotEntry();
+            entry.key = key;
+            entry.expireTime = NEVER_EXPIRE;
+            if (withValues) {
+                OptionalLong expiresAfter = cache.getExpiresAfter(key, TimeUnit.MILLISECONDS);
+                if (!expiresAfter.isPresent()) {
+                    return;
+                }
+
+                long remaining = expiresAfter.getAsLong();
+                entry.value = value;
+                entry.expireTime = remaining >= NEVER_EXPIRE - now ? NEVER_EXPIRE : now + remaining;
+            }
+
+            snapshot.entries.add(entry);
+        });
+
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(file.getName() + ".tmp");
+        try {
+            Files.write(temp, ProtoStuffUtils.serialize(snapshot));
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Write hot key snapshot success, cacheName is: {}, size is: {}", cache.getCacheName(), snapshot.entries.size());
+            return snapshot.entries.size();
+        } catch (Exception e) {
+            log.error("Write hot key snapshot error, cacheName is: {}, file is: {}", cache.getCacheName(), file, e);
+            return -1;
+        }
+    }
+
+    /**
+     * 通过快照预热缓存, 快照中保存了value的数据直接写入缓存，其余的key通过loader并行加载
+     * <p>
+     * 限流等待在单独的预热线程中进行，不会占用 {@link #executor} 的线程; executor 拒绝时由预热线程直接加载对应的key
+     *
+     * @param loader           加载数据
+     * @param ttl              通过loader加载的数据的过期时间
+     * @param permitsPerSecond 每秒最多调用loader的次数
+     * @return 预热成功的数据量
+     */
+    public CompletableFuture<Integer> preload(Function<K, V> loader, long ttl, TimeUnit ttlUnit, double permitsPerSecond) {
+        Snapshot snapshot = readSnapshot();
+        if (snapshot == null || snapshot.entries == null || snapshot.entries.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        Thread preloadThread = new Thread(() -> {
+            try {
+                result.complete(preload(snapshot, loader, ttl, ttlUnit, permitsPerSecond));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }, "hot-key-preload-" + cache.getCacheName());
+        preloadThread.setDaemon(true);
+        preloadThread.start();
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int preload(Snapshot snapshot, Function<K, V> loader, long ttl, TimeUnit ttlUnit, double permitsPerSecond) {
+        RateLimiter rateLimiter = RateLimiter.create(permitsPerSecond);
+        AtomicInteger loaded = new AtomicInteger();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (SnapshotEntry entry : snapshot.entries) {
+            K key = (K) entry.key;
+            if (entry.value != null) {
+                if (entry.expireTime == NEVER_EXPIRE) {
+                    cache.put(key, (V) entry.value);
+                    loaded.incrementAndGet();
+                } else if (entry.expireTime > now) {
+                    cache.put(key, (V) entry.value, entry.expireTime - now, TimeUnit.MILLISECONDS);
+                    loaded.incrementAndGet();
+                }
+
+                continue;
+            }
+
+            rateLimiter.acquire();
+            Runnable load = () -> {
+                try {
+                    if (cache.get(key, loader, ttl, ttlUnit) != null) {
+                        loaded.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    log.warn("Preload hot key error, cacheName is: {}, key is: {}", cache.getCacheName(), key, e);
+                }
+            };
+
+            try {
+                futures.add(CompletableFuture.runAsync(load, executor));
+            } catch (RejectedExecutionException e) {
+                load.run();
+            }
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        log.info("Preload hot keys finished, cacheName is: {}, loaded: {}/{}", cache.getCacheName(), loaded.get(), snapshot.entries.size());
+        return loaded.get();
+    }
+
+    private Snapshot readSnapshot() {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try {
+            return ProtoStuffUtils.deserialize(Files.readAllBytes(file.toPath()));
+        } catch (IOException | RuntimeException e) {
+            log.error("Read hot key snapshot error, cacheName is: {}, file is: {}", cache.getCacheName(), file, e);
+            return null;
+        }
+    }
+
+
+    /**
+     * 写入文件的快照
+     */
+    static class Snapshot {
+
+        long createTime;
+
+        List<SnapshotEntry> entries;
+    }
+
+
+    static class SnapshotEntry {
+
+        Object key;
+
+        /**
+         * 只保存key时为null
+         */
+        Object value;
+
+        /**
+         * 绝对过期时间(毫秒)
+         */
+        long expireTime;
+    }
+}
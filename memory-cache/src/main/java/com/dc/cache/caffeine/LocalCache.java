@@ -1,56 +1,105 @@
 package com.dc.cache.caffeine;
 
+import com.dc.cache.CacheMetricsRecorder;
 import com.dc.cache.CacheMetricsTools;
+import com.dc.tools.common.utils.Assert;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.github.benmanes.caffeine.cache.LoadingCache;
-import io.netty.util.HashedWheelTimer;
+import com.github.benmanes.caffeine.cache.Weigher;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import io.netty.util.Timeout;
 import io.netty.util.TimerTask;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.checkerframework.checker.index.qual.NonNegative;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.time.Duration;
 import java.util.concurrent.Callable;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.function.Function;
 
 /**
  * 用于本地缓存数据
  *
+ * <p>
+ * 数据在写入 {@code refreshAfterWrite} 之后被访问时会异步刷新，刷新期间返回旧的数据，同一个key同时只会有一个刷新任务;
+ * 数据在写入 {@code refreshAfterWrite + staleGrace} 之后过期，过期后的并发访问只会有一个线程加载数据，其他线程等待加载结果。
+ * 当 {@code negativeTtl} 大于0时，加载失败的结果会被缓存 {@code negativeTtl}，期间访问直接返回null，避免加载失败时所有请求都访问后端服务
+ * </p>
+ *
+ * <p>
+ * 指定 {@link RefreshAhead} 时，一个扫描周期内访问次数达到 {@code minAccesses} 的数据会在 {@code refreshAfterWrite} 之前通过
+ * {@code executor} 主动刷新，热点数据不会因为过期或者刷新而访问到旧的数据; 访问较少的数据仍然在被访问时才刷新
+ * </p>
+ *
  * @author zhangyang
  */
 @Slf4j
 public class LocalCache<K, V> extends CaffeineCache {
 
-    private static final HashedWheelTimer timer = new HashedWheelTimer();
-
     private static final Duration REFRESH_WRITE = Duration.ofMinutes(5);
 
+    /**
+     * 提前刷新的最小扫描间隔
+     */
+    private static final long MIN_SCAN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * 默认可以保存最大的缓存数量
+     */
+    private static final long DEFAULT_MAXIMUM_SIZE = 1000;
+
     private final String cacheName;
 
     private Function<K, V> loadFunction;
 
     /**
-     * 用于统计缓存的内存情况
+     * 记录缓存的统计指标，为null时不记录
      */
-    private Timeout timeout;
+    private final CacheMetricsRecorder metricsRecorder;
 
-    private static <K, V> Cache<K, V> createLocalCache(String cacheName, Executor executor, Function<K, V> function, Duration refreshAfterWrite) {
-        LocalCacheLoader<K, V> cacheLoader = new LocalCacheLoader<>(function, cacheName);
-        return Caffeine.newBuilder()
-                .recordStats()
+    /**
+     * 提前刷新热点数据，为null时不开启
+     */
+    private final RefreshAheadTask<K, V> refreshAheadTask;
+
+    private static <K, V> Cache<K, Object> createLocalCache(String cacheName, Executor executor, Function<K, V> function,
+                                                      Duration refreshAfterWrite, Duration staleGrace, Duration negativeTtl,
+                                                      long maximum, Weigher<? super K, ? super V> weigher,
+                                                      CacheMetricsRecorder metricsRecorder) {
+        LocalCacheLoader<K, V> cacheLoader = new LocalCacheLoader<>(function, cacheName, !negativeTtl.isZero());
+        Caffeine<Object, Object> builder = Caffeine.newBuilder();
+        if (weigher == null) {
+            builder.maximumSize(maximum);
+        } else {
+            builder.maximumWeight(maximum).weigher(new LoadedValueWeigher<>(weigher));
+        }
+
+        if (metricsRecorder != null) {
+            builder.recordStats(() -> metricsRecorder);
+        }
+
+        return builder
                 .executor(executor)
-                .maximumSize(1000)
                 //当JVM内存不足时，可以保证被SoftReference 引用的缓存可以被回收
                 //TODO 是否改为 weakValues
                 .softValues()
                 //默认刷新时间为5分钟
                 .refreshAfterWrite(refreshAfterWrite)
+                .expireAfter(new StaleExpiry<>(refreshAfterWrite, staleGrace, negativeTtl))
                 .build(cacheLoader);
     }
 
@@ -66,21 +115,86 @@ public class LocalCache<K, V> extends CaffeineCache {
         this(cacheName, CacheMetricsTools.CACHE_POOL, loadFunction, refreshAfterWrite);
     }
 
-    @SuppressWarnings("unchecked")
     public LocalCache(String cacheName, Executor executor, Function<K, V> loadFunction, Duration refreshAfterWrite) {
-        super(cacheName, createLocalCache(cacheName, executor, (Function<Object, Object>) loadFunction, refreshAfterWrite));
+        this(cacheName, executor, loadFunction, refreshAfterWrite, null, Duration.ZERO);
+    }
+
+    /**
+     * @param refreshAfterWrite 数据写入多久之后异步刷新
+     * @param staleGrace        超过刷新时间之后，旧的数据还可以被返回的时间，为null时旧的数据一直有效直到刷新成功
+     * @param negativeTtl       加载失败的结果缓存的时间，为0时不缓存加载失败的结果
+     */
+    public LocalCache(String cacheName, Executor executor, Function<K, V> loadFunction, Duration refreshAfterWrite,
+                      Duration staleGrace, Duration negativeTtl) {
+        this(cacheName, executor, loadFunction, refreshAfterWrite, staleGrace, negativeTtl, DEFAULT_MAXIMUM_SIZE, null);
+    }
+
+    /**
+     * @param maximum 缓存的上限，weigher 为空时表示最大的缓存数量，否则表示所有数据权重之和的上限(例如字节数)
+     * @param weigher 计算每条数据的权重, 为空时按照数量限制缓存
+     * @see ByteSizeWeigher
+     */
+    public LocalCache(String cacheName, Executor executor, Function<K, V> loadFunction, Duration refreshAfterWrite,
+                      Duration staleGrace, Duration negativeTtl, long maximum, Weigher<? super K, ? super V> weigher) {
+        this(cacheName, executor, loadFunction, refreshAfterWrite, staleGrace, negativeTtl, maximum, weigher, Metrics.globalRegistry);
+    }
+
+    /**
+     * @param meterRegistry 记录缓存统计指标, 为null时不记录统计数据，用于访问非常频繁的缓存
+     */
+    public LocalCache(String cacheName, Executor executor, Function<K, V> loadFunction, Duration refreshAfterWrite,
+                      Duration staleGrace, Duration negativeTtl, long maximum, Weigher<? super K, ? super V> weigher,
+                      MeterRegistry meterRegistry) {
+        this(cacheName, executor, loadFunction, refreshAfterWrite, staleGrace, negativeTtl, maximum, weigher, meterRegistry, null);
+    }
+
+    /**
+     * @param refreshAhead 按照访问频率提前刷新热点数据，为null时不开启
+     */
+    public LocalCache(String cacheName, Executor executor, Function<K, V> loadFunction, Duration refreshAfterWrite,
+                      Duration staleGrace, Duration negativeTtl, long maximum, Weigher<? super K, ? super V> weigher,
+                      MeterRegistry meterRegistry, RefreshAhead refreshAhead) {
+        this(cacheName, executor, loadFunction, refreshAfterWrite, staleGrace, negativeTtl, maximum, weigher,
+                meterRegistry == null ? null : new CacheMetricsRecorder(meterRegistry, cacheName), refreshAhead);
+    }
+
+    @SuppressWarnings("unchecked")
+    private LocalCache(String cacheName, Executor executor, Function<K, V> loadFunction, Duration refreshAfterWrite,
+                       Duration staleGrace, Duration negativeTtl, long maximum, Weigher<? super K, ? super V> weigher,
+                       CacheMetricsRecorder metricsRecorder, RefreshAhead refreshAhead) {
+        super(cacheName, createLocalCache(cacheName, executor, (Function<Object, Object>) loadFunction, refreshAfterWrite,
+                staleGrace, negativeTtl, maximum, (Weigher<Object, Object>) weigher, metricsRecorder));
         this.cacheName = cacheName;
         this.loadFunction = loadFunction;
-        init();
-    }
+        this.metricsRecorder = metricsRecorder;
+        if (metricsRecorder != null) {
+            metricsRecorder.bindTo(getNativeCache());
+        }
 
-    private void init() {
-        StatsTimeout statsTimeout = new StatsTimeout(getNativeCache(), this.cacheName);
-        this.timeout = timer.newTimeout(statsTimeout, 1, TimeUnit.MINUTES);
+        if (refreshAhead == null) {
+            this.refreshAheadTask = null;
+            return;
+        }
+
+        if (metricsRecorder != null) {
+            metricsRecorder.bindRefreshAhead();
+        }
+
+        this.refreshAheadTask = new RefreshAheadTask<>((Cache<K, Object>) (Cache<?, ?>) getNativeCache(), executor,
+                new LocalCacheLoader<>(loadFunction, cacheName, !negativeTtl.isZero()), refreshAfterWrite, refreshAhead, metricsRecorder);
     }
 
+    /**
+     * 删除注册的统计指标，停止提前刷新
+     */
     public void destroy() {
-        this.timeout.cancel();
+        if (refreshAheadTask != null) {
+            refreshAheadTask.close();
+        }
+
+        if (metricsRecorder != null) {
+            metricsRecorder.close();
+        }
     }
 
     @Override
@@ -88,43 +202,120 @@ public class LocalCache<K, V> extends CaffeineCache {
         throw new UnsupportedOperationException("Cannot support getValue from valueLoader");
     }
 
+    @Override
+    public ValueWrapper get(@org.springframework.lang.NonNull Object key) {
+        return toValueWrapper(lookup(key));
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     protected Object lookup(@org.springframework.lang.NonNull Object key) {
         if (getNativeCache() instanceof LoadingCache) {
             LoadingCache<Object, Object> loadingCache = (LoadingCache<Object, Object>) getNativeCache();
-            return loadingCache.get(key);
+            Object value = loadingCache.get(key);
+            if (refreshAheadTask != null) {
+                refreshAheadTask.recordAccess(value);
+            }
+
+            return LoadedValue.unwrap(value);
         }
 
         return getNativeCache().get(key, (Function<Object, Object>) loadFunction);
     }
 
 
+    /**
+     * 通过loader加载的数据，记录加载的时间用于计算过期时间
+     */
+    private static class LoadedValue {
+
+        private static final AtomicIntegerFieldUpdater<LoadedValue> ACCESSES =
+                AtomicIntegerFieldUpdater.newUpdater(LoadedValue.class, "accesses");
+
+        private final Object value;
+
+        /**
+         * 加载完成的时间，与caffeine的ticker一致
+         */
+        private final long loadTime;
+
+        /**
+         * 是否加载失败
+         */
+        private final boolean failed;
+
+        /**
+         * 当前扫描周期内的访问次数，只在开启提前刷新时记录
+         */
+        private volatile int accesses;
+
+        LoadedValue(Object value, long loadTime, boolean failed) {
+            this.value = value;
+            this.loadTime = loadTime;
+            this.failed = failed;
+        }
+
+        static Object unwrap(Object value) {
+            if (value instanceof LoadedValue) {
+                LoadedValue loadedValue = (LoadedValue) value;
+                return loadedValue.failed ? null : loadedValue.value;
+            }
+
+            return value;
+        }
+    }
+
+
+    /**
+     * 计算 {@link LoadedValue} 中实际数据的权重, 加载失败的数据权重为1
+     */
     @AllArgsConstructor
-    private static class LocalCacheLoader<K, V> implements CacheLoader<K, V> {
+    private static class LoadedValueWeigher<K, V> implements Weigher<K, Object> {
+
+        private final Weigher<? super K, ? super V> weigher;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public @NonNegative int weigh(@NonNull K key, @NonNull Object value) {
+            Object actualValue = LoadedValue.unwrap(value);
+            return actualValue == null ? 1 : weigher.weigh(key, (V) actualValue);
+        }
+    }
+
+
+    @AllArgsConstructor
+    private static class LocalCacheLoader<K, V> implements CacheLoader<K, Object> {
 
         private final Function<K, V> loadFunction;
 
         private final String cacheName;
 
+        /**
+         * 是否缓存加载失败的结果
+         */
+        private final boolean negativeCache;
+
         @Override
-        public @Nullable V load(@NonNull K key) throws Exception {
+        public @Nullable Object load(@NonNull K key) throws Exception {
             try {
-                log.info("Load value from {}, the key is {}", cacheName, key);
-                return loadFunction.apply(key);
+                log.debug("Load value from {}, the key is {}", cacheName, key);
+                V value = loadFunction.apply(key);
+                return value == null ? null : new LoadedValue(value, System.nanoTime(), false);
             } catch (Exception e) {
-                log.info("load value from function error, cacheName is: {}", this.cacheName);
+                log.warn("Load value from function error, cacheName is: {}, key is: {}", cacheName, key, e);
             }
 
-            return null;
+            //缓存加载失败的结果，避免所有的请求都去加载
+            return negativeCache ? new LoadedValue(null, System.nanoTime(), true) : null;
         }
 
         @Override
-        public @Nullable V reload(@NonNull K key, @NonNull V oldValue) throws Exception {
-            V reloadValue = load(key);
+        public @Nullable Object reload(@NonNull K key, @NonNull Object oldValue) throws Exception {
+            Object reloadValue = load(key);
 
-            //当reloadValue为空时，返回旧的值
-            if (reloadValue == null) {
+            //当reloadValue为空或者加载失败时，返回旧的值, 旧的值的加载时间不变所以不会延长过期时间
+            boolean oldFailed = oldValue instanceof LoadedValue && ((LoadedValue) oldValue).failed;
+            if (!oldFailed && (reloadValue == null || ((LoadedValue) reloadValue).failed)) {
                 reloadValue = oldValue;
                 log.error("Reload value error, fallback oldValue to cache, cacheName is {}, reload key is {}", cacheName, key);
             }
@@ -135,21 +326,229 @@ public class LocalCache<K, V> extends CaffeineCache {
 
 
     /**
-     * 用于统计当前缓存使用情况
+     * 根据数据的加载时间计算过期时间，加载成功的数据在 {@code refreshAfterWrite + staleGrace} 后过期,
+     * 加载失败的数据在 {@code negativeTtl} 后过期
      */
-    @AllArgsConstructor
-    private class StatsTimeout implements TimerTask {
+    private static class StaleExpiry<K> implements Expiry<K, Object> {
 
-        private final Cache<?, ?> localCache;
+        private final long lifetime;
 
-        private final String cacheName;
+        private final long negativeTtl;
+
+        StaleExpiry(Duration refreshAfterWrite, Duration staleGrace, Duration negativeTtl) {
+            this.lifetime = staleGrace == null ? Long.MAX_VALUE : saturatedAdd(refreshAfterWrite.toNanos(), staleGrace.toNanos());
+            this.negativeTtl = negativeTtl.toNanos();
+        }
 
         @Override
-        public void run(Timeout timeout) throws Exception {
-            log.info("Cache name {} statics detail: {}", cacheName, localCache.stats());
-            timer.newTimeout(this, 1, TimeUnit.MINUTES);
+        public long expireAfterCreate(@NonNull K key, @NonNull Object value, long currentTime) {
+            if (!(value instanceof LoadedValue)) {
+                return lifetime;
+            }
+
+            LoadedValue loadedValue = (LoadedValue) value;
+            long ttl = loadedValue.failed ? negativeTtl : lifetime;
+            if (ttl == Long.MAX_VALUE) {
+                return ttl;
+            }
+
+            return Math.max(0, loadedValue.loadTime + ttl - currentTime);
+        }
+
+        @Override
+        public long expireAfterUpdate(@NonNull K key, @NonNull Object value, long currentTime, @NonNegative long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(@NonNull K key, @NonNull Object value, long currentTime, @NonNegative long currentDuration) {
+            return currentDuration;
+        }
+
+        private static long saturatedAdd(long a, long b) {
+            long sum = a + b;
+            return sum < 0 ? Long.MAX_VALUE : sum;
         }
     }
 
 
+    /**
+     * 定时扫描缓存中的数据，将访问频繁并且即将到达刷新时间的数据提交到 {@code executor} 重新加载
+     *
+     * <p>
+     * 扫描间隔为提前刷新窗口 {@code refreshAfterWrite * (1 - aheadRatio)} 的一半，保证热点数据在到达刷新时间之前至少被检查两次;
+     * 访问次数达到 {@code minAccesses} 之后不再累加，热点数据的访问不会竞争同一个计数器
+     * </p>
+     *
+     * @apiNote 每次扫描会遍历所有的数据，适合数据量不大的本地缓存
+     */
+    private static class RefreshAheadTask<K, V> implements TimerTask {
+
+        private final Cache<K, Object> cache;
+
+        private final Executor executor;
+
+        private final LocalCacheLoader<K, V> cacheLoader;
+
+        private final CacheMetricsRecorder metricsRecorder;
+
+        /**
+         * 数据写入多久之后开始提前刷新
+         */
+        private final long aheadNanos;
+
+        private final long scanIntervalNanos;
+
+        private final int minAccesses;
+
+        private final int maxConcurrentRefreshes;
+
+        private final AtomicInteger runningRefreshes = new AtomicInteger();
+
+        /**
+         * 正在刷新的key, 避免同一个key重复提交
+         */
+        private final Set<K> refreshingKeys = ConcurrentHashMap.newKeySet();
+
+        private volatile Timeout timeout;
+
+        private volatile boolean closed;
+
+        RefreshAheadTask(Cache<K, Object> cache, Executor executor, LocalCacheLoader<K, V> cacheLoader,
+                         Duration refreshAfterWrite, RefreshAhead refreshAhead, CacheMetricsRecorder metricsRecorder) {
+            Assert.notNull(executor, "Executor must not be null");
+            this.cache = cache;
+            this.executor = executor;
+            this.cacheLoader = cacheLoader;
+            this.metricsRecorder = metricsRecorder;
+            this.aheadNanos = (long) (refreshAfterWrite.toNanos() * refreshAhead.getAheadRatio());
+            this.scanIntervalNanos = Math.max(MIN_SCAN_INTERVAL_NANOS, (refreshAfterWrite.toNanos() - aheadNanos) / 2);
+            this.minAccesses = refreshAhead.getMinAccesses();
+            this.maxConcurrentRefreshes = refreshAhead.getMaxConcurrentRefreshes();
+            this.timeout = CacheMetricsTools.CACHE_TIMER.newTimeout(this, scanIntervalNanos, TimeUnit.NANOSECONDS);
+        }
+
+        void recordAccess(Object value) {
+            if (value instanceof LoadedValue) {
+                LoadedValue loadedValue = (LoadedValue) value;
+                if (loadedValue.accesses < minAccesses) {
+                    LoadedValue.ACCESSES.incrementAndGet(loadedValue);
+                }
+            }
+        }
+
+        void close() {
+            closed = true;
+            Timeout current = timeout;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+
+        @Override
+        public void run(Timeout t) {
+            if (closed) {
+                return;
+            }
+
+            try {
+                scan();
+            } catch (Exception e) {
+                log.warn("Scan refresh-ahead entries error", e);
+            } finally {
+                timeout = CacheMetricsTools.CACHE_TIMER.newTimeout(this, scanIntervalNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void scan() {
+            long now = System.nanoTime();
+            boolean exhausted = false;
+            for (Map.Entry<K, Object> entry : cache.asMap().entrySet()) {
+                if (!(entry.getValue() instanceof LoadedValue)) {
+                    continue;
+                }
+
+                LoadedValue loadedValue = (LoadedValue) entry.getValue();
+                if (loadedValue.failed || loadedValue.accesses < minAccesses || now - loadedValue.loadTime < aheadNanos) {
+                    //每个扫描周期重新计数
+                    resetAccesses(loadedValue);
+                    continue;
+                }
+
+                if (exhausted || !submit(entry.getKey(), loadedValue)) {
+                    //没有提交的数据保留访问次数，下一个扫描周期继续尝试刷新
+                    exhausted = true;
+                    if (metricsRecorder != null) {
+                        metricsRecorder.recordRefreshRejected();
+                    }
+                    continue;
+                }
+
+                resetAccesses(loadedValue);
+            }
+        }
+
+        private void resetAccesses(LoadedValue loadedValue) {
+            if (loadedValue.accesses != 0) {
+                LoadedValue.ACCESSES.set(loadedValue, 0);
+            }
+        }
+
+        /**
+         * @return 超过并发限制或者线程池拒绝时返回false
+         */
+        private boolean submit(K key, LoadedValue oldValue) {
+            if (!refreshingKeys.add(key)) {
+                return true;
+            }
+
+            if (runningRefreshes.incrementAndGet() > maxConcurrentRefreshes) {
+                release(key);
+                return false;
+            }
+
+            try {
+                executor.execute(() -> {
+                    try {
+                        refresh(key, oldValue);
+                    } finally {
+                        release(key);
+                    }
+                });
+                return true;
+            } catch (RejectedExecutionException e) {
+                release(key);
+                return false;
+            }
+        }
+
+        private void refresh(K key, LoadedValue oldValue) {
+            try {
+                Object newValue = cacheLoader.reload(key, oldValue);
+                //数据在刷新期间被修改或者删除时放弃刷新的结果
+                if (newValue == oldValue || !cache.asMap().replace(key, oldValue, newValue)) {
+                    if (metricsRecorder != null && newValue == oldValue) {
+                        metricsRecorder.recordRefreshFailure();
+                    }
+
+                    return;
+                }
+
+                if (metricsRecorder != null) {
+                    metricsRecorder.recordRefreshSuccess(System.nanoTime() - oldValue.loadTime - aheadNanos);
+                }
+            } catch (Exception e) {
+                log.warn("Refresh ahead error, key is {}", key, e);
+                if (metricsRecorder != null) {
+                    metricsRecorder.recordRefreshFailure();
+                }
+            }
+        }
+
+        private void release(K key) {
+            runningRefreshes.decrementAndGet();
+            refreshingKeys.remove(key);
+        }
+    }
+
 }
@@ -2,6 +2,9 @@ package com.dc.cache.caffeine;
 
 import com.dc.cache.Cache;
 import com.github.benmanes.caffeine.cache.Scheduler;
+import com.github.benmanes.caffeine.cache.Weigher;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import org.springframework.util.Assert;
 
 import java.util.concurrent.Executor;
@@ -30,8 +33,30 @@ public class LocalCacheFactory {
 
         private long maximumSize;
 
+        /**
+         * 所有数据权重之和的上限，大于0时按照权重限制缓存
+         */
+        private long maximumWeight;
+
+        private Weigher<? super K, ? super V> weigher;
+
         private Executor executor;
 
+        /**
+         * 写入数据时过期时间的随机抖动比例
+         */
+        private double ttlJitter;
+
+        /**
+         * XFetch 提前刷新的系数, 为0时不开启
+         */
+        private double earlyRefreshBeta;
+
+        /**
+         * 记录缓存统计指标，默认为 {@link Metrics#globalRegistry}, 为null时不记录
+         */
+        private MeterRegistry meterRegistry = Metrics.globalRegistry;
+
         public LocalCacheBuilder(String cacheName) {
             this.cacheName = cacheName;
         }
@@ -52,6 +77,45 @@ public class LocalCacheFactory {
             return this;
         }
 
+        /**
+         * 按照字节数限制缓存，未指定 weigher 时使用 {@link ByteSizeWeigher#defaults()}
+         */
+        public LocalCacheBuilder<K, V> maximumWeight(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+            return this;
+        }
+
+        public LocalCacheBuilder<K, V> weigher(Weigher<? super K, ? super V> weigher) {
+            this.weigher = weigher;
+            return this;
+        }
+
+        public LocalCacheBuilder<K, V> ttlJitter(double ttlJitter) {
+            this.ttlJitter = ttlJitter;
+            return this;
+        }
+
+        /**
+         * XFetch 提前刷新的系数，命中的数据仍然会刷新过期时间, 只有接近过期的数据才可能在后台提前刷新
+         */
+        public LocalCacheBuilder<K, V> earlyRefresh(double beta) {
+            this.earlyRefreshBeta = beta;
+            return this;
+        }
+
+        public LocalCacheBuilder<K, V> meterRegistry(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+            return this;
+        }
+
+        /**
+         * 不记录统计数据，用于访问非常频繁的缓存
+         */
+        public LocalCacheBuilder<K, V> disableStats() {
+            this.meterRegistry = null;
+            return this;
+        }
+
         public LocalCacheBuilder<K, V> scheduler(Scheduler scheduler) {
             this.scheduler = scheduler;
             return this;
@@ -72,7 +136,13 @@ public class LocalCacheFactory {
             Assert.notNull(executor, "Executor must not be null");
             Assert.isTrue(initialSize > 0, "initialSize must be > 0");
             Assert.isTrue(maximumSize < Long.MAX_VALUE, "maximumSize must < Integer.MAX_VALUE");
-            return new LocalCaffeineCache<>(cacheName, initialSize, maximumSize, executor, scheduler);
+            if (maximumWeight <= 0) {
+                return new LocalCaffeineCache<>(cacheName, initialSize, maximumSize, null, executor, scheduler, ttlJitter, earlyRefreshBeta, meterRegistry);
+            }
+
+            Assert.isTrue(maximumSize == 0, "maximumSize cannot be combined with maximumWeight");
+            Weigher<? super K, ? super V> valueWeigher = weigher == null ? ByteSizeWeigher.defaults() : weigher;
+            return new LocalCaffeineCache<>(cacheName, initialSize, maximumWeight, valueWeigher, executor, scheduler, ttlJitter, earlyRefreshBeta, meterRegistry);
 
         }
 
@@ -1,25 +1,35 @@
 package com.dc.cache.caffeine;
 
+import com.dc.cache.CacheMetricsRecorder;
 import com.dc.cache.CacheRemovedListener;
 import com.dc.cache.CachedValue;
+import com.dc.tools.common.utils.Assert;
 import com.dc.tools.common.utils.ConcurrentList;
 import com.github.benmanes.caffeine.cache.*;
-import io.netty.util.HashedWheelTimer;
-import io.netty.util.Timeout;
-import io.netty.util.TimerTask;
-import lombok.AllArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.checkerframework.checker.index.qual.NonNegative;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.AbstractCollection;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
-import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 /**
@@ -32,12 +42,17 @@ import java.util.function.Function;
 @Slf4j
 public class LocalCaffeineCache<K, V> implements com.dc.cache.Cache<K, V> {
 
-    private static final HashedWheelTimer recordsTimer = new HashedWheelTimer();
+    /**
+     * 读取时不刷新过期时间
+     */
+    private static final long NOT_SLIDING = -1;
+
+    private static final long NO_REMAINING = -1;
 
     /**
-     * 创建本地缓存
+     * 创建本地缓存，数据的过期时间保存在 {@link TtlValue} 上
      */
-    private final Cache<K, V> localCache;
+    private final Cache<K, TtlValue<V>> localCache;
 
     /**
      * 监听Key 过期
@@ -47,7 +62,34 @@ public class LocalCaffeineCache<K, V> implements com.dc.cache.Cache<K, V> {
     @Getter
     private final String cacheName;
 
-    private final Policy<K,V> policy;
+    private final Policy<K, TtlValue<V>> policy;
+
+    private final Executor executor;
+
+    /**
+     * 写入数据时过期时间的随机抖动比例，实际的过期时间为 [ttl * (1 - ttlJitter), ttl], 避免同时写入的数据同时过期
+     */
+    private final double ttlJitter;
+
+    /**
+     * XFetch 提前刷新的系数，越大越容易提前刷新, 为0时表示不开启提前刷新
+     */
+    private final double earlyRefreshBeta;
+
+    /**
+     * 重新计算value的平均耗时(纳秒)，通过指数加权平均计算
+     */
+    private final AtomicLong recomputeCost = new AtomicLong();
+
+    /**
+     * 正在提前刷新的key, 保证同一个key只会有一个刷新任务
+     */
+    private final Set<K> refreshingKeys = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 记录缓存的统计指标，为null时不记录
+     */
+    private final CacheMetricsRecorder metricsRecorder;
 
 
     /**
@@ -58,12 +100,56 @@ public class LocalCaffeineCache<K, V> implements com.dc.cache.Cache<K, V> {
      * @param scheduler       当有键值对过期时需要通过schduler进行调度 (对于expire类型的键值对时通过TimerWheel时间轮实现的)
      */
     public LocalCaffeineCache(String cacheName, int initialCapacity, long maximumSize, Executor executor, Scheduler scheduler) {
+        this(cacheName, initialCapacity, maximumSize, executor, scheduler, 0, 0);
+    }
+
+    /**
+     * @param ttlJitter        写入数据时过期时间的随机抖动比例, 取值范围为 [0, 1)
+     * @param earlyRefreshBeta XFetch 提前刷新的系数，通常为1, 为0时不开启提前刷新
+     */
+    public LocalCaffeineCache(String cacheName, int initialCapacity, long maximumSize, Executor executor, Scheduler scheduler,
+                              double ttlJitter, double earlyRefreshBeta) {
+        this(cacheName, initialCapacity, maximumSize, null, executor, scheduler, ttlJitter, earlyRefreshBeta);
+    }
+
+    /**
+     * @param maximum 缓存的上限，weigher 为空时表示最大的缓存数量，否则表示所有数据权重之和的上限(例如字节数)
+     * @param weigher 计算每条数据的权重, 为空时按照数量限制缓存
+     * @see ByteSizeWeigher
+     */
+    public LocalCaffeineCache(String cacheName, int initialCapacity, long maximum, Weigher<? super K, ? super V> weigher,
+                              Executor executor, Scheduler scheduler, double ttlJitter, double earlyRefreshBeta) {
+        this(cacheName, initialCapacity, maximum, weigher, executor, scheduler, ttlJitter, earlyRefreshBeta, Metrics.globalRegistry);
+    }
+
+    /**
+     * @param meterRegistry 记录缓存统计指标, 为null时不记录统计数据，用于访问非常频繁的缓存
+     */
+    public LocalCaffeineCache(String cacheName, int initialCapacity, long maximum, Weigher<? super K, ? super V> weigher,
+                              Executor executor, Scheduler scheduler, double ttlJitter, double earlyRefreshBeta,
+                              MeterRegistry meterRegistry) {
+        Assert.isTrue(ttlJitter >= 0 && ttlJitter < 1, "ttlJitter must be in [0, 1)");
+        Assert.isTrue(earlyRefreshBeta >= 0, "earlyRefreshBeta must >= 0");
         this.cacheName = cacheName;
-        this.localCache = Caffeine.newBuilder()
+        this.executor = executor;
+        this.ttlJitter = ttlJitter;
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        Caffeine<K, TtlValue<V>> builder = Caffeine.newBuilder()
                 .removalListener(new RemoveListener())
-                .initialCapacity(initialCapacity)
-                .maximumSize(maximumSize)
-                .recordStats()
+                .initialCapacity(initialCapacity);
+        if (weigher == null) {
+            builder.maximumSize(maximum);
+        } else {
+            builder.maximumWeight(maximum).weigher((K key, TtlValue<V> cached) -> weigher.weigh(key, cached.value));
+        }
+
+        CacheMetricsRecorder metricsRecorder = meterRegistry == null ? null : new CacheMetricsRecorder(meterRegistry, cacheName);
+        this.metricsRecorder = metricsRecorder;
+        if (metricsRecorder != null) {
+            builder.recordStats(() -> metricsRecorder);
+        }
+
+        this.localCache = builder
                 .ticker(Ticker.systemTicker())
                 .scheduler(scheduler)
                 .executor(executor)
@@ -74,72 +160,229 @@ public class LocalCaffeineCache<K, V> implements com.dc.cache.Cache<K, V> {
         this.policy = localCache.policy();
 
         //添加缓存统计指标
-        recordsTimer.newTimeout(CacheRecordsTask.of(cacheName, localCache), 1, TimeUnit.MINUTES);
+        if (metricsRecorder != null) {
+            metricsRecorder.bindTo(localCache);
+        }
+    }
 
+
+    /**
+     * 写入数据的同时设置过期时间，过期时间保存在数据上，只需要一次操作
+     */
+    @Override
+    public V put(K key, V value, long ttl, TimeUnit ttlUnit) {
+        return unwrap(localCache.asMap().put(key, wrap(value, ttl, ttlUnit, NOT_SLIDING)));
     }
 
-    @AllArgsConstructor(staticName = "of")
-    private static class CacheRecordsTask implements TimerTask {
+    /**
+     * 数据不存在时写入并设置过期时间
+     *
+     * @return 已经存在的数据，写入成功时返回null
+     */
+    public V putIfAbsent(K key, V value, long ttl, TimeUnit ttlUnit) {
+        return unwrap(localCache.asMap().putIfAbsent(key, wrap(value, ttl, ttlUnit, NOT_SLIDING)));
+    }
 
-        private String cacheName;
+    /**
+     * 原子的计算新的数据并设置过期时间，与 {@link Map#compute} 一致，返回null时删除数据
+     */
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction, long ttl, TimeUnit ttlUnit) {
+        return unwrap(localCache.asMap().compute(key, (k, old) -> {
+            V value = remappingFunction.apply(k, unwrap(old));
+            return value == null ? null : wrap(value, ttl, ttlUnit, NOT_SLIDING);
+        }));
+    }
 
-        private Cache<?, ?> cache;
+    /**
+     * 原子的合并数据并设置过期时间，与 {@link Map#merge} 一致，返回null时删除数据
+     */
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction, long ttl, TimeUnit ttlUnit) {
+        Assert.notNull(value, "value must not be null");
+        return compute(key, (k, old) -> old == null ? value : remappingFunction.apply(old, value), ttl, ttlUnit);
+    }
 
-        @Override
-        public void run(Timeout timeout) throws Exception {
-            log.info("Cache name {} statics detail: {}", cacheName, cache.stats());
-            recordsTimer.newTimeout(this, 1, TimeUnit.MINUTES);
+    @Override
+    public void refreshTime(K key, long ttl, TimeUnit ttlUnit) {
+        getAndRefresh(key, ttl, ttlUnit);
+    }
+
+
+    /**
+     * 命中时刷新数据的过期时间；开启提前刷新时，在刷新过期时间之前根据剩余的过期时间以及重新计算的耗时，
+     * 按照一定的概率在后台提前刷新 (XFetch)，避免长时间没有被访问的数据过期时大量的请求同时加载数据
+     */
+    @Override
+    public V get(K key, Function<K, V> mappingFunction, long ttl, TimeUnit ttlUnit) {
+        long slideTtl = ttlUnit.toNanos(ttl);
+        boolean[] loaded = new boolean[1];
+        //加载的数据在写入时设置过期时间，命中的数据在读取时按照数据上的过期时间刷新，保证原子性
+        TtlValue<V> cached = localCache.get(key, k -> {
+            loaded[0] = true;
+            V value = earlyRefreshBeta <= 0 ? mappingFunction.apply(k) : recompute(mappingFunction, k);
+            return value == null ? null : wrap(value, ttl, ttlUnit, slideTtl);
+        });
+
+        if (cached == null || loaded[0]) {
+            return unwrap(cached);
+        }
+
+        if (cached.slideTtl != slideTtl) {
+            //通过put写入或者使用其他过期时间写入的数据，读取时不会刷新过期时间，替换为按照当前过期时间刷新的数据
+            slide(key, cached, ttl, ttlUnit);
+            return cached.value;
         }
+
+        //根据刷新过期时间之前剩余的过期时间判断
+        if (earlyRefreshBeta > 0 && shouldRefreshEarly(cached.remaining)) {
+            refreshAsync(key, mappingFunction, ttl, ttlUnit);
+        }
+
+        return cached.value;
     }
 
+    /**
+     * XFetch: 当 {@code cost * beta * -ln(random) >= 剩余过期时间} 时提前刷新，越接近过期时间、重新计算的耗时越长，提前刷新的概率越大
+     */
+    private boolean shouldRefreshEarly(long remaining) {
+        long cost = recomputeCost.get();
+        if (cost <= 0 || remaining == NO_REMAINING) {
+            return false;
+        }
 
+        double random = 1 - ThreadLocalRandom.current().nextDouble();
+        return cost * earlyRefreshBeta * -Math.log(random) >= remaining;
+    }
 
-    @Override
-    public V put(K key, V value, long ttl, TimeUnit ttlUnit) {
-        Optional<Policy.VarExpiration<K, V>> expireVariably = localCache.policy().expireVariably();
-        V oldValue = localCache.getIfPresent(key);
-
-        if (expireVariably.isPresent()) {
-            Policy.VarExpiration<K, V> expiration = expireVariably.get();
-            localCache.put(key, value);
-            //为新写入的数据添加过期时间
-            expiration.setExpiresAfter(key, ttl, ttlUnit);
+    private void refreshAsync(K key, Function<K, V> mappingFunction, long ttl, TimeUnit ttlUnit) {
+        if (!refreshingKeys.add(key)) {
+            return;
         }
 
+        try {
+            executor.execute(() -> {
+                try {
+                    V value = recompute(mappingFunction, key);
+                    if (value != null) {
+                        localCache.put(key, wrap(value, ttl, ttlUnit, ttlUnit.toNanos(ttl)));
+                    }
+                } catch (Exception e) {
+                    log.warn("Refresh value early error, cacheName is: {}, key is: {}", cacheName, key, e);
+                } finally {
+                    refreshingKeys.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshingKeys.remove(key);
+        }
+    }
 
-        return oldValue;
+    /**
+     * 计算value并记录耗时
+     */
+    private V recompute(Function<K, V> mappingFunction, K key) {
+        long startTime = System.nanoTime();
+        try {
+            return mappingFunction.apply(key);
+        } finally {
+            long cost = System.nanoTime() - startTime;
+            recomputeCost.accumulateAndGet(cost, (prev, current) -> prev == 0 ? current : prev + ((current - prev) >> 3));
+        }
     }
 
-    @Override
-    public void refreshTime(K key, long ttl, TimeUnit ttlUnit) {
-        Optional<Policy.VarExpiration<K, V>> expirationOptional = localCache.policy().expireVariably();
-        if (expirationOptional.isPresent()) {
-            Policy.VarExpiration<K, V> expiration = expirationOptional.get();
-            if (localCache.getIfPresent(key) != null) {
-                expiration.setExpiresAfter(key, ttl, ttlUnit);
-            }
+    /**
+     * 为过期时间添加随机抖动，永不过期的数据不会抖动
+     *
+     * @return 抖动后的过期时间(纳秒)
+     */
+    private long jitterTtl(long ttl, TimeUnit ttlUnit) {
+        long ttlNanos = ttlUnit.toNanos(ttl);
+        if (ttlJitter <= 0 || ttlNanos == Long.MAX_VALUE) {
+            return ttlNanos;
         }
+
+        return ttlNanos - (long) (ttlNanos * ttlJitter * ThreadLocalRandom.current().nextDouble());
     }
 
+    /**
+     * @param slideTtl 读取时刷新过期时间对应的原始过期时间(纳秒)，为 {@link #NOT_SLIDING} 时读取不刷新过期时间
+     */
+    private TtlValue<V> wrap(V value, long ttl, TimeUnit ttlUnit, long slideTtl) {
+        return new TtlValue<>(value, jitterTtl(ttl, ttlUnit), slideTtl);
+    }
 
+    private static <V> V unwrap(TtlValue<V> cached) {
+        return cached == null ? null : cached.value;
+    }
 
-    @Override
-    public V get(K key, Function<K, V> mappingFunction, long ttl, TimeUnit ttlUnit) {
-        //保证原子性
-        V value = localCache.get(key, mappingFunction);
-        Optional<Policy.VarExpiration<K, V>> expiration = policy.expireVariably();
-        expiration.ifPresent(kvVarExpiration -> kvVarExpiration.setExpiresAfter(key, ttl, ttlUnit));
-        return value;
+    /**
+     * 将数据替换为读取时按照指定过期时间刷新的数据，写入的同时设置过期时间；数据已经被其他线程修改时放弃
+     */
+    private void slide(K key, TtlValue<V> cached, long ttl, TimeUnit ttlUnit) {
+        localCache.asMap().replace(key, cached, wrap(cached.value, ttl, ttlUnit, ttlUnit.toNanos(ttl)));
     }
 
     @Override
     public V getAndRefresh(K key, long ttl, TimeUnit ttlUnit) {
-        V value = localCache.getIfPresent(key);
-        if (value != null) {
-            policy.expireVariably().ifPresent(expire-> expire.setExpiresAfter(key, ttl, ttlUnit));
+        TtlValue<V> cached = localCache.getIfPresent(key);
+        if (cached == null) {
+            return null;
+        }
+
+        if (cached.slideTtl != ttlUnit.toNanos(ttl)) {
+            slide(key, cached, ttl, ttlUnit);
+        }
+        return cached.value;
+    }
+
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys, Function<Set<K>, Map<K, V>> bulkLoader, long ttl, TimeUnit ttlUnit) {
+        long slideTtl = ttlUnit.toNanos(ttl);
+        //一次批量查询，按照相同过期时间写入的数据在读取的同时刷新过期时间
+        Map<K, TtlValue<V>> present = localCache.getAllPresent(keys);
+        Map<K, V> result = new LinkedHashMap<>(keys.size());
+        Set<K> missKeys = new LinkedHashSet<>();
+        for (K key : keys) {
+            TtlValue<V> cached = present.get(key);
+            if (cached == null) {
+                missKeys.add(key);
+                continue;
+            }
+
+            result.put(key, cached.value);
+            if (cached.slideTtl != slideTtl) {
+                slide(key, cached, ttl, ttlUnit);
+            }
         }
 
-        return value;
+        if (!missKeys.isEmpty()) {
+            //所有不存在的数据只会调用一次loader
+            Map<K, V> loaded = bulkLoader.apply(Collections.unmodifiableSet(missKeys));
+            if (loaded != null && !loaded.isEmpty()) {
+                Map<K, TtlValue<V>> values = new LinkedHashMap<>(loaded.size());
+                loaded.forEach((key, value) -> {
+                    if (value == null) {
+                        return;
+                    }
+
+                    values.put(key, wrap(value, ttl, ttlUnit, slideTtl));
+                    if (missKeys.contains(key)) {
+                        result.put(key, value);
+                    }
+                });
+                //一次批量写入，每个key的过期时间单独抖动
+                localCache.putAll(values);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map, long ttl, TimeUnit ttlUnit) {
+        Map<K, TtlValue<V>> values = new LinkedHashMap<>(map.size());
+        map.forEach((key, value) -> values.put(key, wrap(value, ttl, ttlUnit, NOT_SLIDING)));
+        //一次批量写入，过期时间保存在数据上，每个key的过期时间单独抖动
+        localCache.putAll(values);
     }
 
     @Override
@@ -165,17 +408,17 @@ public class LocalCaffeineCache<K, V> implements com.dc.cache.Cache<K, V> {
 
     @Override
     public boolean containsKey(Object key) {
-        return localCache.getIfPresent(key) != null;
+        return localCache.asMap().containsKey(key);
     }
 
     @Override
     public boolean containsValue(Object value) {
-        return localCache.asMap().containsValue(value);
+        return values().contains(value);
     }
 
     @Override
     public V get(Object key) {
-        return localCache.getIfPresent(key);
+        return unwrap(localCache.getIfPresent(key));
     }
 
     @Override
@@ -186,14 +429,13 @@ public class LocalCaffeineCache<K, V> implements com.dc.cache.Cache<K, V> {
 
     @Override
     public V remove(Object key) {
-        V value = localCache.getIfPresent(key);
-        localCache.invalidate(key);
-        return value;
+        return unwrap(localCache.asMap().remove(key));
     }
 
     @Override
     public void putAll(Map<? extends K, ? extends V> m) {
-        m.forEach(this::put);
+        //添加永远不过期的键值
+        putAll(m, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
     }
 
     @Override
@@ -208,7 +450,34 @@ public class LocalCaffeineCache<K, V> implements com.dc.cache.Cache<K, V> {
 
     @Override
     public Collection<V> values() {
-        return localCache.asMap().values();
+        Collection<TtlValue<V>> values = localCache.asMap().values();
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                Iterator<TtlValue<V>> iterator = values.iterator();
+                return new Iterator<V>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public V next() {
+                        return iterator.next().value;
+                    }
+
+                    @Override
+                    public void remove() {
+                        iterator.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return values.size();
+            }
+        };
     }
 
     @Override
@@ -216,29 +485,99 @@ public class LocalCaffeineCache<K, V> implements com.dc.cache.Cache<K, V> {
         throw new UnsupportedOperationException("Cannot support entry set operations");
     }
 
-    class KeyExpired implements Expiry<K, V> {
+    /**
+     * 获取访问频率最高的数据，按照频率从高到低排序
+     *
+     * @param limit 最多返回的数量
+     * @see HotKeySnapshot
+     */
+    public Map<K, V> hottest(int limit) {
+        Map<K, V> hottest = new LinkedHashMap<>();
+        policy.eviction()
+                .map(eviction -> eviction.hottest(limit))
+                .ifPresent(values -> values.forEach((key, cached) -> hottest.put(key, cached.value)));
+        return hottest;
+    }
+
+    /**
+     * 获取数据剩余的过期时间，数据不存在时返回empty
+     */
+    public OptionalLong getExpiresAfter(K key, TimeUnit unit) {
+        return policy.expireVariably()
+                .map(expiration -> expiration.getExpiresAfter(key, unit))
+                .orElse(OptionalLong.empty());
+    }
+
+    /**
+     * 删除注册的统计指标
+     */
+    public void destroy() {
+        if (metricsRecorder != null) {
+            metricsRecorder.close();
+        }
+    }
+
+    /**
+     * 缓存中实际保存的数据，过期时间保存在数据上，由 {@link KeyExpired} 在写入、读取的同时读取，保证过期时间与数据的操作是原子的
+     */
+    static final class TtlValue<V> {
+
+        final V value;
+
+        /**
+         * 写入以及读取刷新时使用的过期时间(纳秒)，已经添加了随机抖动
+         */
+        final long ttlNanos;
+
+        /**
+         * 读取时刷新过期时间对应的原始过期时间(纳秒)，为 {@link #NOT_SLIDING} 时读取不刷新过期时间
+         */
+        final long slideTtl;
+
+        /**
+         * 最近一次读取刷新之前剩余的过期时间(纳秒)，用于 XFetch 判断是否提前刷新，并发读取时为近似值
+         */
+        volatile long remaining = NO_REMAINING;
+
+        TtlValue(V value, long ttlNanos, long slideTtl) {
+            this.value = value;
+            this.ttlNanos = ttlNanos;
+            this.slideTtl = slideTtl;
+        }
+    }
+
+    /**
+     * 写入、更新的数据使用数据上保存的过期时间；通过 {@link #get(Object, Function, long, TimeUnit)} 等刷新过期时间的方法写入的数据，
+     * 读取时按照数据上的过期时间刷新，其他数据读取时保留原来的过期时间
+     */
+    class KeyExpired implements Expiry<K, TtlValue<V>> {
 
         @Override
-        public long expireAfterCreate(@NonNull K key, @NonNull V value, long currentTime) {
-            return Long.MAX_VALUE;
+        public long expireAfterCreate(@NonNull K key, @NonNull TtlValue<V> value, long currentTime) {
+            return value.ttlNanos;
         }
 
         @Override
-        public long expireAfterUpdate(@NonNull K key, @NonNull V value, long currentTime, @NonNegative long currentDuration) {
-            return currentDuration;
+        public long expireAfterUpdate(@NonNull K key, @NonNull TtlValue<V> value, long currentTime, @NonNegative long currentDuration) {
+            return value.ttlNanos;
         }
 
         @Override
-        public long expireAfterRead(@NonNull K key, @NonNull V value, long currentTime, @NonNegative long currentDuration) {
-            return currentDuration;
+        public long expireAfterRead(@NonNull K key, @NonNull TtlValue<V> value, long currentTime, @NonNegative long currentDuration) {
+            if (value.slideTtl == NOT_SLIDING) {
+                return currentDuration;
+            }
+
+            value.remaining = currentDuration;
+            return value.ttlNanos;
         }
     }
 
 
-    class RemoveListener implements RemovalListener<K, V> {
+    class RemoveListener implements RemovalListener<K, TtlValue<V>> {
 
         @Override
-        public void onRemoval(@Nullable K key, @Nullable V expireValue, @NonNull RemovalCause cause) {
+        public void onRemoval(@Nullable K key, @Nullable TtlValue<V> expired, @NonNull RemovalCause cause) {
 
             //如果数据是被人为操作的，那么就会忽略执行removeListener
             // 因为只有在被动的情况下，超过最大限制 或者是被JVM回收 或者是过期时，才应该被通知
@@ -246,7 +585,8 @@ public class LocalCaffeineCache<K, V> implements com.dc.cache.Cache<K, V> {
                 return;
             }
 
-            log.warn("Remove cause: " + cause);
+            log.debug("Remove cause: " + cause);
+            V expireValue = unwrap(expired);
 
             for (CacheRemovedListener<K, V> removedListener : removedListeners) {
 
@@ -265,6 +605,11 @@ public class LocalCaffeineCache<K, V> implements com.dc.cache.Cache<K, V> {
                     public boolean isExpired() {
                         return true;
                     }
+
+                    @Override
+                    public boolean isEvicted() {
+                        return cause == RemovalCause.SIZE;
+                    }
                 };
 
                 removedListener.onRemove(cachedValue);
@@ -0,0 +1,43 @@
+package com.dc.cache.caffeine;
+
+import org.springframework.core.ReactiveAdapter;
+import org.springframework.core.ReactiveAdapterRegistry;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 将响应式类型转换为 {@link java.util.concurrent.CompletableFuture} 缓存，单独放在一个类中，
+ * 没有引入 reactor 时不会影响 {@link CaffeineAsyncCache} 的其他功能
+ *
+ * @author zy
+ */
+final class ReactiveCacheSupport {
+
+    private static final ReactiveAdapterRegistry registry = ReactiveAdapterRegistry.getSharedInstance();
+
+    private ReactiveCacheSupport() {
+    }
+
+    static <R> R retrieve(CaffeineAsyncCache cache, Object key, Class<R> returnType, Supplier<? extends R> valueLoader) {
+        ReactiveAdapter adapter = registry.getAdapter(returnType);
+        Assert.notNull(adapter, () -> "Unsupported reactive type: " + returnType.getName());
+
+        Object result;
+        if (adapter.isMultiValue()) {
+            //缓存所有的元素，订阅时重新发送
+            Mono<List<Object>> values = Mono.fromFuture(() -> cache.<List<Object>>retrieve(key,
+                    () -> Flux.from(adapter.toPublisher(valueLoader.get())).collectList().toFuture()), true);
+            result = adapter.fromPublisher(values.flatMapIterable(list -> list));
+        } else {
+            Mono<Object> value = Mono.fromFuture(() -> cache.retrieve(key,
+                    () -> Mono.from(adapter.toPublisher(valueLoader.get())).toFuture()), true);
+            result = adapter.fromPublisher(value);
+        }
+
+        return returnType.cast(result);
+    }
+}
@@ -0,0 +1,44 @@
+package com.dc.cache.caffeine;
+
+import com.dc.tools.common.utils.Assert;
+import lombok.Getter;
+
+/**
+ * {@link LocalCache} 提前刷新的配置，只有访问频繁的数据会在 {@code refreshAfterWrite} 之前被主动刷新,
+ * 其他数据仍然在过了刷新时间之后被访问时才刷新
+ *
+ * @author zy
+ */
+@Getter
+public class RefreshAhead {
+
+    private static final double DEFAULT_AHEAD_RATIO = 0.8;
+
+    /**
+     * 数据写入 {@code refreshAfterWrite * aheadRatio} 之后开始提前刷新, 取值范围为 (0, 1)
+     */
+    private final double aheadRatio;
+
+    /**
+     * 一个扫描周期内至少访问多少次才会提前刷新
+     */
+    private final int minAccesses;
+
+    /**
+     * 同时进行的提前刷新任务的最大数量，超过之后剩余的数据在下一个扫描周期刷新
+     */
+    private final int maxConcurrentRefreshes;
+
+    public RefreshAhead(double aheadRatio, int minAccesses, int maxConcurrentRefreshes) {
+        Assert.isTrue(aheadRatio > 0 && aheadRatio < 1, "aheadRatio must be in (0, 1)");
+        Assert.isTrue(minAccesses > 0, "minAccesses must > 0");
+        Assert.isTrue(maxConcurrentRefreshes > 0, "maxConcurrentRefreshes must > 0");
+        this.aheadRatio = aheadRatio;
+        this.minAccesses = minAccesses;
+        this.maxConcurrentRefreshes = maxConcurrentRefreshes;
+    }
+
+    public static RefreshAhead of(int minAccesses, int maxConcurrentRefreshes) {
+        return new RefreshAhead(DEFAULT_AHEAD_RATIO, minAccesses, maxConcurrentRefreshes);
+    }
+}
@@ -0,0 +1,46 @@
+package com.dc.cache.cluster;
+
+import com.dc.cache.Hash;
+import com.dc.tools.common.utils.Assert;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * 一致性hash环，每个节点在环上有 {@code virtualNodes} 个虚拟节点，使得key在节点之间分布均匀;
+ * 节点增加或者减少时只有相邻区间的key会迁移
+ *
+ * @author zy
+ */
+public class ConsistentHashRing {
+
+    private final NavigableMap<Long, PartitionPeer> ring;
+
+    public ConsistentHashRing(Collection<PartitionPeer> peers, int virtualNodes) {
+        Assert.isTrue(!peers.isEmpty(), "peers must not be empty");
+        Assert.isTrue(virtualNodes > 0, "virtualNodes must > 0");
+        TreeMap<Long, PartitionPeer> nodes = new TreeMap<>();
+        for (PartitionPeer peer : peers) {
+            for (int i = 0; i < virtualNodes; i++) {
+                byte[] name = (peer + "#" + i).getBytes(StandardCharsets.UTF_8);
+                nodes.put(Hash.hash64(name), peer);
+            }
+        }
+
+        this.ring = Collections.unmodifiableNavigableMap(nodes);
+    }
+
+    /**
+     * 获取hash所在区间的节点
+     *
+     * @param hash key 的hash, 通常为 {@link com.dc.cache.CacheKey#getHash0()}
+     */
+    public PartitionPeer locate(long hash) {
+        Map.Entry<Long, PartitionPeer> entry = ring.ceilingEntry(hash);
+        return entry == null ? ring.firstEntry().getValue() : entry.getValue();
+    }
+}
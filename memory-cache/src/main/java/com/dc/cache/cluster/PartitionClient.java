@@ -0,0 +1,196 @@
+package com.dc.cache.cluster;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 与一个节点之间的连接，所有请求共享同一个channel, 通过 requestId 匹配响应;
+ * 等待响应的请求保存在每个channel自己的 {@link ResponseHandler} 中，旧的连接断开时不会影响重新建立的连接上的请求
+ *
+ * <p>
+ * 连接失败或者请求超时之后，在 {@code retryMillis} 时间内发送给该节点的请求会直接失败，由调用方在本地计算，
+ * 避免每次请求都等待超时
+ * </p>
+ *
+ * @author zy
+ */
+@Slf4j
+class PartitionClient {
+
+    private final PartitionPeer peer;
+
+    private final Bootstrap bootstrap;
+
+    private final long retryMillis;
+
+    private final AtomicLong requestIds = new AtomicLong();
+
+    private volatile ChannelFuture channelFuture;
+
+    /**
+     * 节点不可用的截止时间
+     */
+    private volatile long unavailableUntil;
+
+    PartitionClient(PartitionPeer peer, EventLoopGroup group, int connectTimeoutMillis, long retryMillis) {
+        this.peer = peer;
+        this.retryMillis = retryMillis;
+        this.bootstrap = new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis)
+                .remoteAddress(peer.toAddress())
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline()
+                                .addLast(new LengthFieldBasedFrameDecoder(PartitionCodec.MAX_FRAME_LENGTH, 0, 4, 0, 4))
+                                .addLast(new LengthFieldPrepender(4))
+                                .addLast(PartitionCodec.INSTANCE)
+                                .addLast(new ResponseHandler());
+                    }
+                });
+    }
+
+    long nextRequestId() {
+        return requestIds.incrementAndGet();
+    }
+
+    boolean isAvailable() {
+        return System.currentTimeMillis() >= unavailableUntil;
+    }
+
+    /**
+     * 标记节点在 {@code retryMillis} 内不可用
+     */
+    void markUnavailable() {
+        unavailableUntil = System.currentTimeMillis() + retryMillis;
+    }
+
+    CompletableFuture<PartitionResponse> send(PartitionRequest request) {
+        CompletableFuture<PartitionResponse> future = new CompletableFuture<>();
+        if (!isAvailable()) {
+            future.completeExceptionally(new IOException("Peer " + peer + " is unavailable"));
+            return future;
+        }
+
+        connect().addListener((ChannelFutureListener) connected -> {
+            if (!connected.isSuccess()) {
+                markUnavailable();
+                future.completeExceptionally(connected.cause());
+                return;
+            }
+
+            Channel channel = connected.channel();
+            ResponseHandler handler = channel.pipeline().get(ResponseHandler.class);
+            if (handler == null) {
+                future.completeExceptionally(new IOException("Connection to peer " + peer + " is closed"));
+                return;
+            }
+
+            long requestId = request.getRequestId();
+            handler.pending.put(requestId, future);
+            //调用方超时取消或者请求完成之后都从等待的请求中删除
+            future.whenComplete((response, cause) -> handler.pending.remove(requestId, future));
+            //连接已经断开时 channelInactive 可能已经执行过了
+            if (!channel.isActive()) {
+                handler.fail(requestId, new IOException("Connection to peer " + peer + " is closed"));
+                return;
+            }
+
+            channel.writeAndFlush(request).addListener(written -> {
+                if (!written.isSuccess()) {
+                    handler.fail(requestId, written.cause());
+                }
+            });
+        });
+
+        return future;
+    }
+
+    void close() {
+        ChannelFuture current = channelFuture;
+        if (current != null) {
+            current.channel().close();
+        }
+    }
+
+    private ChannelFuture connect() {
+        ChannelFuture current = channelFuture;
+        if (current != null && (!current.isDone() || current.channel().isActive())) {
+            return current;
+        }
+
+        synchronized (this) {
+            current = channelFuture;
+            if (current == null || (current.isDone() && !current.channel().isActive())) {
+                current = bootstrap.connect();
+                channelFuture = current;
+            }
+
+            return current;
+        }
+    }
+
+
+    /**
+     * 每个channel创建一个实例
+     */
+    private class ResponseHandler extends SimpleChannelInboundHandler<PartitionResponse> {
+
+        /**
+         * 当前channel上等待响应的请求
+         */
+        private final Map<Long, CompletableFuture<PartitionResponse>> pending = new ConcurrentHashMap<>();
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, PartitionResponse response) {
+            CompletableFuture<PartitionResponse> future = pending.remove(response.getRequestId());
+            if (future != null) {
+                future.complete(response);
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            //连接断开时当前连接上所有等待的请求失败
+            Channel channel = ctx.channel();
+            IOException cause = new IOException("Connection to peer " + peer + " is closed");
+            pending.keySet().forEach(requestId -> fail(requestId, cause));
+            log.debug("Partition peer channel {} inactive", channel);
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            log.warn("Partition peer {} error", peer, cause);
+            ctx.close();
+        }
+
+        private void fail(long requestId, Throwable cause) {
+            CompletableFuture<PartitionResponse> future = pending.remove(requestId);
+            if (future != null) {
+                future.completeExceptionally(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.dc.cache.cluster;
+
+import com.dc.cache.CacheKey;
+import com.dc.cache.CacheMetricsTools;
+import com.dc.cache.caffeine.LocalCaffeineCache;
+import com.dc.tools.common.utils.Assert;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 分区缓存集群，同一台机器上的多个JVM通过一致性hash将key分散到不同的节点，每个节点只缓存属于自己的key,
+ * 使得整体的缓存容量随着节点数量增加
+ *
+ * <p>
+ * 每个节点启动一个netty服务处理其他节点的 GET/PUT/REMOVE 请求，请求与响应通过 {@link PartitionCodec} 编解码;
+ * key 通过 {@link CacheKey} 的128位hash定位到 {@link ConsistentHashRing} 上的节点。
+ * 所有节点需要使用相同的节点列表并且通过 {@link #createCache(String, long)} 创建相同名称的缓存
+ * </p>
+ *
+ * @author zy
+ * @apiNote 节点列表是静态配置的，节点不可用时请求会由调用方在本地计算，不会重新分配key
+ */
+@Slf4j
+public class PartitionCluster {
+
+    private static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = 50;
+
+    private static final long DEFAULT_RETRY_MILLIS = 5000;
+
+    @Getter
+    private final PartitionPeer self;
+
+    private final ConsistentHashRing ring;
+
+    private final long requestTimeoutMillis;
+
+    /**
+     * 除自己之外的其他节点
+     */
+    private final Map<PartitionPeer, PartitionClient> clients = new HashMap<>();
+
+    /**
+     * cacheName -> 当前节点负责的数据
+     */
+    private final Map<String, LocalCaffeineCache<CacheKey, byte[]>> stores = new ConcurrentHashMap<>();
+
+    private final EventLoopGroup bossGroup = new NioEventLoopGroup(1, new DefaultThreadFactory("partition-boss"));
+
+    private final EventLoopGroup workerGroup = new NioEventLoopGroup(0, new DefaultThreadFactory("partition-worker"));
+
+    private volatile Channel serverChannel;
+
+    /**
+     * @param self  当前节点，需要包含在 {@code peers} 中
+     * @param peers 所有的节点
+     */
+    public PartitionCluster(PartitionPeer self, Collection<PartitionPeer> peers) {
+        this(self, peers, DEFAULT_REQUEST_TIMEOUT_MILLIS, DEFAULT_RETRY_MILLIS);
+    }
+
+    /**
+     * @param requestTimeoutMillis 等待其他节点响应的最长时间，超时后在本地计算
+     * @param retryMillis          节点连接失败或者超时之后，多久之后才会重新发送请求
+     */
+    public PartitionCluster(PartitionPeer self, Collection<PartitionPeer> peers, long requestTimeoutMillis, long retryMillis) {
+        Assert.isTrue(requestTimeoutMillis > 0, "requestTimeoutMillis must > 0");
+        Set<PartitionPeer> allPeers = new LinkedHashSet<>(peers);
+        allPeers.add(self);
+        this.self = self;
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        this.ring = new ConsistentHashRing(allPeers, DEFAULT_VIRTUAL_NODES);
+        for (PartitionPeer peer : allPeers) {
+            if (!peer.equals(self)) {
+                clients.put(peer, new PartitionClient(peer, workerGroup, (int) requestTimeoutMillis, retryMillis));
+            }
+        }
+    }
+
+    /**
+     * 启动当前节点的服务
+     */
+    public void start() throws InterruptedException {
+        ServerBootstrap bootstrap = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(NioServerSocketChannel.class)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline()
+                                .addLast(new LengthFieldBasedFrameDecoder(PartitionCodec.MAX_FRAME_LENGTH, 0, 4, 0, 4))
+                                .addLast(new LengthFieldPrepender(4))
+                                .addLast(PartitionCodec.INSTANCE)
+                                .addLast(new RequestHandler());
+                    }
+                });
+
+        serverChannel = bootstrap.bind(self.toAddress()).sync().channel();
+        log.info("Partition cache peer {} started", self);
+    }
+
+    public void close() {
+        clients.values().forEach(PartitionClient::close);
+        Channel channel = serverChannel;
+        if (channel != null) {
+            channel.close();
+        }
+
+        bossGroup.shutdownGracefully();
+        workerGroup.shutdownGracefully();
+        stores.values().forEach(LocalCaffeineCache::destroy);
+    }
+
+    /**
+     * 创建分区缓存，所有节点需要创建相同名称的缓存
+     *
+     * @param maximumSize 当前节点最多缓存的数据量
+     */
+    public <K, V> PartitionedCache<K, V> createCache(String cacheName, long maximumSize) {
+        //内部存储不注册统计指标
+        LocalCaffeineCache<CacheKey, byte[]> store = stores.computeIfAbsent(cacheName, name ->
+                new LocalCaffeineCache<>("partition-" + name, 16, maximumSize, null, CacheMetricsTools.CACHE_POOL,
+                        Scheduler.systemScheduler(), 0, 0, null));
+        return new PartitionedCache<>(cacheName, this, store);
+    }
+
+    PartitionPeer locate(CacheKey key) {
+        return ring.locate(key.getHash0());
+    }
+
+    boolean isLocal(PartitionPeer peer) {
+        return self.equals(peer);
+    }
+
+    /**
+     * 发送请求并等待响应
+     *
+     * @throws Exception 节点不可用、超时或者处理失败
+     */
+    PartitionResponse request(PartitionPeer peer, byte type, String cacheName, byte[] key, byte[] value, long ttlMillis) throws Exception {
+        PartitionClient client = clients.get(peer);
+        long requestId = client.nextRequestId();
+        CompletableFuture<PartitionResponse> future = client.send(new PartitionRequest(requestId, type, cacheName, key, value, ttlMillis));
+        try {
+            PartitionResponse response = future.get(requestTimeoutMillis, TimeUnit.MILLISECONDS);
+            if (response.getError() != null) {
+                throw new IllegalStateException(response.getError());
+            }
+
+            return response;
+        } catch (TimeoutException e) {
+            //取消之后不再等待响应
+            future.cancel(false);
+            client.markUnavailable();
+            throw e;
+        }
+    }
+
+    /**
+     * 发送请求，不等待响应
+     */
+    void send(PartitionPeer peer, byte type, String cacheName, byte[] key, byte[] value, long ttlMillis) {
+        PartitionClient client = clients.get(peer);
+        long requestId = client.nextRequestId();
+        client.send(new PartitionRequest(requestId, type, cacheName, key, value, ttlMillis))
+                .whenComplete((response, cause) -> {
+                    if (cause != null) {
+                        log.debug("Send request to partition peer {} error", peer, cause);
+                    }
+                });
+    }
+
+
+    /**
+     * 处理其他节点的请求，本地缓存的操作都是非阻塞的，直接在IO线程中执行
+     */
+    @ChannelHandler.Sharable
+    private class RequestHandler extends SimpleChannelInboundHandler<PartitionRequest> {
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, PartitionRequest request) {
+            LocalCaffeineCache<CacheKey, byte[]> store = stores.get(request.getCacheName());
+            if (store == null) {
+                ctx.writeAndFlush(new PartitionResponse(request.getRequestId(), false, null, "Unknown cache: " + request.getCacheName()));
+                return;
+            }
+
+            CacheKey key = new CacheKey(Unpooled.wrappedBuffer(request.getKey()));
+            PartitionResponse response;
+            switch (request.getType()) {
+                case PartitionRequest.GET:
+                    byte[] value = store.get(key);
+                    response = new PartitionResponse(request.getRequestId(), value != null, value, null);
+                    break;
+                case PartitionRequest.PUT:
+                    store.put(key, request.getValue(), request.getTtlMillis(), TimeUnit.MILLISECONDS);
+                    response = new PartitionResponse(request.getRequestId(), false, null, null);
+                    break;
+                case PartitionRequest.REMOVE:
+                    store.removeCache(key);
+                    response = new PartitionResponse(request.getRequestId(), false, null, null);
+                    break;
+                default:
+                    response = new PartitionResponse(request.getRequestId(), false, null, "Unknown request type: " + request.getType());
+            }
+
+            ctx.writeAndFlush(response);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            log.warn("Partition request from {} error", ctx.channel().remoteAddress(), cause);
+            ctx.close();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.dc.cache.cluster;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.MessageToMessageCodec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 编解码 {@link PartitionRequest} 与 {@link PartitionResponse}, 需要放在 {@code LengthFieldBasedFrameDecoder} 与 {@code LengthFieldPrepender} 之后
+ *
+ * <p>
+ * 消息的第一个字节为消息类型，之后按照固定的顺序写入各个字段，只能解码这两种消息，不会根据网络中读取的类名加载类;
+ * 字节数组与字符串的格式为: | length(4) | bytes |, length 为 -1 时表示null
+ * </p>
+ *
+ * @author zy
+ */
+@ChannelHandler.Sharable
+class PartitionCodec extends MessageToMessageCodec<ByteBuf, Object> {
+
+    static final PartitionCodec INSTANCE = new PartitionCodec();
+
+    /**
+     * 单个消息的最大长度
+     */
+    static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    private static final byte REQUEST = 1;
+
+    private static final byte RESPONSE = 2;
+
+    private static final int NULL_LENGTH = -1;
+
+    @Override
+    public boolean acceptOutboundMessage(Object msg) {
+        return msg instanceof PartitionRequest || msg instanceof PartitionResponse;
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Object msg, List<Object> out) {
+        ByteBuf buf = ctx.alloc().buffer();
+        try {
+            if (msg instanceof PartitionRequest) {
+                PartitionRequest request = (PartitionRequest) msg;
+                buf.writeByte(REQUEST);
+                buf.writeLong(request.getRequestId());
+                buf.writeByte(request.getType());
+                writeString(buf, request.getCacheName());
+                writeBytes(buf, request.getKey());
+                writeBytes(buf, request.getValue());
+                buf.writeLong(request.getTtlMillis());
+            } else {
+                PartitionResponse response = (PartitionResponse) msg;
+                buf.writeByte(RESPONSE);
+                buf.writeLong(response.getRequestId());
+                buf.writeBoolean(response.isFound());
+                writeBytes(buf, response.getValue());
+                writeString(buf, response.getError());
+            }
+        } catch (RuntimeException e) {
+            buf.release();
+            throw e;
+        }
+
+        out.add(buf);
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) {
+        byte messageType = msg.readByte();
+        switch (messageType) {
+            case REQUEST:
+                out.add(new PartitionRequest(msg.readLong(), msg.readByte(), readString(msg), readBytes(msg), readBytes(msg), msg.readLong()));
+                break;
+            case RESPONSE:
+                out.add(new PartitionResponse(msg.readLong(), msg.readBoolean(), readBytes(msg), readString(msg)));
+                break;
+            default:
+                throw new CorruptedFrameException("Unknown partition message type: " + messageType);
+        }
+    }
+
+    private static void writeBytes(ByteBuf buf, byte[] bytes) {
+        if (bytes == null) {
+            buf.writeInt(NULL_LENGTH);
+            return;
+        }
+
+        buf.writeInt(bytes.length);
+        buf.writeBytes(bytes);
+    }
+
+    private static void writeString(ByteBuf buf, String value) {
+        writeBytes(buf, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] readBytes(ByteBuf buf) {
+        int length = buf.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+
+        if (length < 0 || length > buf.readableBytes()) {
+            throw new CorruptedFrameException("Invalid field length: " + length + ", readable bytes: " + buf.readableBytes());
+        }
+
+        byte[] bytes = new byte[length];
+        buf.readBytes(bytes);
+        return bytes;
+    }
+
+    private static String readString(ByteBuf buf) {
+        byte[] bytes = readBytes(buf);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,46 @@
+package com.dc.cache.cluster;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.net.InetSocketAddress;
+
+/**
+ * 分区缓存集群中的一个节点
+ *
+ * @author zy
+ */
+@Getter
+@EqualsAndHashCode
+public class PartitionPeer {
+
+    private final String host;
+
+    private final int port;
+
+    public PartitionPeer(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * @param address host:port
+     */
+    public static PartitionPeer of(String address) {
+        int index = address.lastIndexOf(':');
+        if (index <= 0) {
+            throw new IllegalArgumentException("Peer address must be host:port, but is: " + address);
+        }
+
+        return new PartitionPeer(address.substring(0, index), Integer.parseInt(address.substring(index + 1)));
+    }
+
+    public InetSocketAddress toAddress() {
+        return new InetSocketAddress(host, port);
+    }
+
+    @Override
+    public String toString() {
+        return host + ":" + port;
+    }
+}
@@ -0,0 +1,34 @@
+package com.dc.cache.cluster;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * 发送给key所在节点的请求，key 与 value 都是序列化之后的数据，节点之间不需要反序列化业务对象
+ *
+ * @author zy
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PartitionRequest {
+
+    static final byte GET = 1;
+
+    static final byte PUT = 2;
+
+    static final byte REMOVE = 3;
+
+    private long requestId;
+
+    private byte type;
+
+    private String cacheName;
+
+    private byte[] key;
+
+    private byte[] value;
+
+    private long ttlMillis;
+}
@@ -0,0 +1,30 @@
+package com.dc.cache.cluster;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * 节点处理 {@link PartitionRequest} 之后的响应
+ *
+ * @author zy
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PartitionResponse {
+
+    private long requestId;
+
+    /**
+     * GET 请求时表示数据是否存在
+     */
+    private boolean found;
+
+    private byte[] value;
+
+    /**
+     * 处理失败的原因，成功时为null
+     */
+    private String error;
+}
@@ -0,0 +1,203 @@
+package com.dc.cache.cluster;
+
+import com.dc.cache.CacheKey;
+import com.dc.cache.caffeine.LocalCaffeineCache;
+import com.dc.tools.io.serilizer.ProtoStuffUtils;
+import io.netty.buffer.Unpooled;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 分区缓存，key 通过 {@link PartitionCluster} 定位到所属的节点，属于当前节点的key直接读写本地缓存，
+ * 其他的key通过netty请求所属的节点
+ *
+ * <p>
+ * key 与 value 通过 {@link ProtoStuffUtils} 序列化，相同的key在不同节点上需要序列化为相同的字节;
+ * 所属节点不可用或者超时时直接在本地调用 {@code mappingFunction}, 计算的结果不会缓存;
+ * 当前节点上同一个key并发的远程未命中只会调用一次 {@code mappingFunction}
+ * </p>
+ *
+ * @param <K> cache key
+ * @param <V> cache value
+ * @author zy
+ * @see PartitionCluster#createCache(String, long)
+ */
+@Slf4j
+public class PartitionedCache<K, V> {
+
+    private final String cacheName;
+
+    private final PartitionCluster cluster;
+
+    /**
+     * 当前节点负责的数据
+     */
+    private final LocalCaffeineCache<CacheKey, byte[]> store;
+
+    /**
+     * 所属节点在其他节点的key正在本地计算的结果，相同key的并发请求等待同一个计算结果，避免重复计算以及重复发送PUT
+     */
+    private final Map<CacheKey, CompletableFuture<V>> computing = new ConcurrentHashMap<>();
+
+    PartitionedCache(String cacheName, PartitionCluster cluster, LocalCaffeineCache<CacheKey, byte[]> store) {
+        this.cacheName = cacheName;
+        this.cluster = cluster;
+        this.store = store;
+    }
+
+    /**
+     * 获取对应的数据，不存在时通过 {@code mappingFunction} 计算并写入所属的节点
+     */
+    public V get(K key, Function<K, V> mappingFunction, long ttl, TimeUnit ttlUnit) {
+        byte[] keyBytes = serialize(key);
+        CacheKey cacheKey = new CacheKey(Unpooled.wrappedBuffer(keyBytes));
+        PartitionPeer owner = cluster.locate(cacheKey);
+        if (cluster.isLocal(owner)) {
+            return deserialize(store.get(cacheKey, k -> {
+                V value = mappingFunction.apply(key);
+                return value == null ? null : serialize(value);
+            }, ttl, ttlUnit));
+        }
+
+        try {
+            PartitionResponse response = cluster.request(owner, PartitionRequest.GET, cacheName, keyBytes, null, 0);
+            if (response.isFound()) {
+                return deserialize(response.getValue());
+            }
+        } catch (Exception e) {
+            log.debug("Get value from partition peer {} error, compute locally, cacheName is: {}", owner, cacheName, e);
+            return computeOnce(cacheKey, key, mappingFunction, null);
+        }
+
+        return computeOnce(cacheKey, key, mappingFunction,
+                value -> cluster.send(owner, PartitionRequest.PUT, cacheName, keyBytes, serialize(value), ttlUnit.toMillis(ttl)));
+    }
+
+    /**
+     * 同一个key同时只有一个线程调用 {@code mappingFunction}, 其他线程等待计算的结果
+     *
+     * @param onComputed 计算结果不为null时执行，为null时不执行
+     */
+    private V computeOnce(CacheKey cacheKey, K key, Function<K, V> mappingFunction, Consumer<V> onComputed) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> running = computing.putIfAbsent(cacheKey, future);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+
+                throw e;
+            }
+        }
+
+        try {
+            V value = mappingFunction.apply(key);
+            if (value != null && onComputed != null) {
+                onComputed.accept(value);
+            }
+
+            future.complete(value);
+            return value;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            computing.remove(cacheKey, future);
+        }
+    }
+
+    /**
+     * 获取对应的数据，所属节点不可用时返回null
+     */
+    public V getIfPresent(K key) {
+        byte[] keyBytes = serialize(key);
+        CacheKey cacheKey = new CacheKey(Unpooled.wrappedBuffer(keyBytes));
+        PartitionPeer owner = cluster.locate(cacheKey);
+        if (cluster.isLocal(owner)) {
+            return deserialize(store.get(cacheKey));
+        }
+
+        try {
+            PartitionResponse response = cluster.request(owner, PartitionRequest.GET, cacheName, keyBytes, null, 0);
+            return response.isFound() ? deserialize(response.getValue()) : null;
+        } catch (Exception e) {
+            log.debug("Get value from partition peer {} error, cacheName is: {}", owner, cacheName, e);
+            return null;
+        }
+    }
+
+    /**
+     * 写入所属的节点，其他节点的写入是异步的
+     */
+    public void put(K key, V value, long ttl, TimeUnit ttlUnit) {
+        byte[] keyBytes = serialize(key);
+        CacheKey cacheKey = new CacheKey(Unpooled.wrappedBuffer(keyBytes));
+        PartitionPeer owner = cluster.locate(cacheKey);
+        if (cluster.isLocal(owner)) {
+            store.put(cacheKey, serialize(value), ttl, ttlUnit);
+            return;
+        }
+
+        cluster.send(owner, PartitionRequest.PUT, cacheName, keyBytes, serialize(value), ttlUnit.toMillis(ttl));
+    }
+
+    /**
+     * 从所属的节点删除，其他节点的删除是异步的
+     */
+    public void remove(K key) {
+        byte[] keyBytes = serialize(key);
+        CacheKey cacheKey = new CacheKey(Unpooled.wrappedBuffer(keyBytes));
+        PartitionPeer owner = cluster.locate(cacheKey);
+        if (cluster.isLocal(owner)) {
+            store.removeCache(cacheKey);
+            return;
+        }
+
+        cluster.send(owner, PartitionRequest.REMOVE, cacheName, keyBytes, null, 0);
+    }
+
+    private static byte[] serialize(Object value) {
+        return ProtoStuffUtils.serialize(new Holder(value));
+    }
+
+    @SuppressWarnings("unchecked")
+    private V deserialize(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+
+        Holder holder = ProtoStuffUtils.deserialize(bytes);
+        return (V) holder.value;
+    }
+
+
+    /**
+     * protostuff 不能直接序列化 String、Integer 等类型，通过Object字段保存实际的类型
+     */
+    static class Holder {
+
+        Object value;
+
+        Holder() {
+        }
+
+        Holder(Object value) {
+            this.value = value;
+        }
+    }
+}
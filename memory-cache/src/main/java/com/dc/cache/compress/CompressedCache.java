@@ -0,0 +1,280 @@
+package com.dc.cache.compress;
+
+import com.dc.cache.Cache;
+import com.dc.cache.CacheRemovedListener;
+import com.dc.cache.CachedValue;
+import com.dc.tools.common.utils.Assert;
+import com.dc.tools.io.compress.Lz4Util;
+import com.dc.tools.io.serilizer.ProtoStuffSerializer;
+import com.dc.tools.io.serilizer.Serializer;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 对value进行透明压缩的缓存，value序列化后超过 {@code threshold} 时通过LZ4 fast compressor压缩后写入 {@code delegate}，
+ * 读取时解压并反序列化
+ *
+ * <p>
+ * 写入 delegate 的数据格式为:
+ * <pre>
+ *  | flag(1) | value |                          未压缩
+ *  | flag(1) | originalLength(4) | lz4 block |   压缩
+ * </pre>
+ * 压缩后没有变小的数据会按照未压缩的格式保存。
+ * delegate 配合 {@link com.dc.cache.caffeine.ByteSizeWeigher} 使用时可以按照压缩后的大小限制缓存
+ * </p>
+ *
+ * @param <K> cache key
+ * @param <V> cache value
+ * @author zy
+ * @apiNote 每次读取都会反序列化生成新的对象，适合缓存较大的只读数据(例如JSON响应)
+ */
+public class CompressedCache<K, V> implements Cache<K, V> {
+
+    /**
+     * 默认超过1KB的数据才会压缩
+     */
+    private static final int DEFAULT_THRESHOLD = 1 << 10;
+
+    private static final byte RAW = 0;
+
+    private static final byte LZ4 = 1;
+
+    private static final int HEADER_LENGTH = 1 + Integer.BYTES;
+
+    private final Cache<K, byte[]> delegate;
+
+    private final Serializer<V> serializer;
+
+    /**
+     * 序列化后超过该长度的数据才会压缩
+     */
+    private final int threshold;
+
+    @Getter
+    private final CompressionStats stats = new CompressionStats();
+
+    public CompressedCache(Cache<K, byte[]> delegate) {
+        this(delegate, new ProtoStuffSerializer<>(), DEFAULT_THRESHOLD);
+    }
+
+    public CompressedCache(Cache<K, byte[]> delegate, Serializer<V> serializer, int threshold) {
+        Assert.isTrue(threshold >= 0, "threshold must >= 0");
+        this.delegate = delegate;
+        this.serializer = serializer;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public V put(K key, V value, long ttl, TimeUnit ttlUnit) {
+        return decode(delegate.put(key, encode(value), ttl, ttlUnit));
+    }
+
+    @Override
+    public void refreshTime(K key, long ttl, TimeUnit ttlUnit) {
+        delegate.refreshTime(key, ttl, ttlUnit);
+    }
+
+    @Override
+    public V get(K key, Function<K, V> mappingFunction, long ttl, TimeUnit ttlUnit) {
+        return decode(delegate.get(key, k -> encode(mappingFunction.apply(k)), ttl, ttlUnit));
+    }
+
+    @Override
+    public V getAndRefresh(K key, long ttl, TimeUnit ttlUnit) {
+        return decode(delegate.getAndRefresh(key, ttl, ttlUnit));
+    }
+
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys, Function<Set<K>, Map<K, V>> bulkLoader, long ttl, TimeUnit ttlUnit) {
+        Map<K, byte[]> encoded = delegate.getAll(keys, missKeys -> {
+            Map<K, V> loaded = bulkLoader.apply(missKeys);
+            return loaded == null ? null : encodeAll(loaded);
+        }, ttl, ttlUnit);
+
+        Map<K, V> result = new LinkedHashMap<>(encoded.size());
+        encoded.forEach((key, bytes) -> result.put(key, decode(bytes)));
+        return result;
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map, long ttl, TimeUnit ttlUnit) {
+        delegate.putAll(encodeAll(map), ttl, ttlUnit);
+    }
+
+    @Override
+    public void addRemoveListener(CacheRemovedListener<K, V> removedListener) {
+        delegate.addRemoveListener(cacheValue -> removedListener.onRemove(new CachedValue<K, V>() {
+            @Override
+            public K getKey() {
+                return cacheValue.getKey();
+            }
+
+            @Override
+            public V getValue() {
+                return decode(cacheValue.getValue());
+            }
+
+            @Override
+            public boolean isExpired() {
+                return cacheValue.isExpired();
+            }
+
+            @Override
+            public boolean isEvicted() {
+                return cacheValue.isEvicted();
+            }
+        }));
+    }
+
+    @Override
+    public void removeCache(K cacheKey) {
+        delegate.removeCache(cacheKey);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return delegate.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return delegate.containsKey(key);
+    }
+
+    /**
+     * 需要解压所有的数据，数据量较大时不建议使用
+     */
+    @Override
+    public boolean containsValue(Object value) {
+        return values().contains(value);
+    }
+
+    @Override
+    public V get(Object key) {
+        return decode(delegate.get(key));
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return decode(delegate.put(key, encode(value)));
+    }
+
+    @Override
+    public V remove(Object key) {
+        return decode(delegate.remove(key));
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        delegate.putAll(encodeAll(m));
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return delegate.keySet();
+    }
+
+    /**
+     * 返回所有value的快照，需要解压所有的数据，数据量较大时不建议使用
+     */
+    @Override
+    public Collection<V> values() {
+        List<V> values = new ArrayList<>();
+        delegate.values().forEach(bytes -> values.add(decode(bytes)));
+        return Collections.unmodifiableList(values);
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        throw new UnsupportedOperationException("Cannot support entry set operations");
+    }
+
+    private Map<K, byte[]> encodeAll(Map<? extends K, ? extends V> map) {
+        Map<K, byte[]> encoded = new LinkedHashMap<>(map.size());
+        map.forEach((key, value) -> {
+            if (value != null) {
+                encoded.put(key, encode(value));
+            }
+        });
+
+        return encoded;
+    }
+
+    private byte[] encode(V value) {
+        if (value == null) {
+            return null;
+        }
+
+        byte[] raw = serializer.serialize(value);
+        if (raw.length >= threshold) {
+            long startTime = System.nanoTime();
+            byte[] compressed = Lz4Util.fastCompress(raw, HEADER_LENGTH);
+            stats.recordCompress(raw.length, compressed.length, System.nanoTime() - startTime);
+
+            //压缩后变小时才保存压缩的数据
+            if (compressed.length < raw.length + 1) {
+                compressed[0] = LZ4;
+                writeInt(compressed, 1, raw.length);
+                return compressed;
+            }
+        }
+
+        stats.recordSkip();
+        byte[] encoded = new byte[raw.length + 1];
+        encoded[0] = RAW;
+        System.arraycopy(raw, 0, encoded, 1, raw.length);
+        return encoded;
+    }
+
+    private V decode(byte[] encoded) {
+        if (encoded == null) {
+            return null;
+        }
+
+        byte[] raw;
+        if (encoded[0] == LZ4) {
+            long startTime = System.nanoTime();
+            raw = Lz4Util.fastDecompress(encoded, HEADER_LENGTH, readInt(encoded, 1));
+            stats.recordDecompress(System.nanoTime() - startTime);
+        } else {
+            raw = new byte[encoded.length - 1];
+            System.arraycopy(encoded, 1, raw, 0, raw.length);
+        }
+
+        return serializer.deserialize(raw);
+    }
+
+    private static void writeInt(byte[] bytes, int index, int value) {
+        bytes[index] = (byte) (value >>> 24);
+        bytes[index + 1] = (byte) (value >>> 16);
+        bytes[index + 2] = (byte) (value >>> 8);
+        bytes[index + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] bytes, int index) {
+        return (bytes[index] & 0xff) << 24
+                | (bytes[index + 1] & 0xff) << 16
+                | (bytes[index + 2] & 0xff) << 8
+                | (bytes[index + 3] & 0xff);
+    }
+}
@@ -0,0 +1,94 @@
+package com.dc.cache.compress;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 统计 {@link CompressedCache} 的压缩率以及压缩、解压消耗的CPU时间
+ *
+ * @author zy
+ */
+public class CompressionStats {
+
+    /**
+     * 压缩的次数
+     */
+    private final LongAdder compressCount = new LongAdder();
+
+    /**
+     * 没有达到阈值或者压缩后没有变小，直接保存原始数据的次数
+     */
+    private final LongAdder skipCount = new LongAdder();
+
+    /**
+     * 压缩前的总字节数
+     */
+    private final LongAdder rawBytes = new LongAdder();
+
+    /**
+     * 压缩后的总字节数
+     */
+    private final LongAdder compressedBytes = new LongAdder();
+
+    private final LongAdder compressNanos = new LongAdder();
+
+    private final LongAdder decompressCount = new LongAdder();
+
+    private final LongAdder decompressNanos = new LongAdder();
+
+    void recordCompress(int rawLength, int compressedLength, long nanos) {
+        compressCount.increment();
+        rawBytes.add(rawLength);
+        compressedBytes.add(compressedLength);
+        compressNanos.add(nanos);
+    }
+
+    void recordSkip() {
+        skipCount.increment();
+    }
+
+    void recordDecompress(long nanos) {
+        decompressCount.increment();
+        decompressNanos.add(nanos);
+    }
+
+    public long compressCount() {
+        return compressCount.sum();
+    }
+
+    public long skipCount() {
+        return skipCount.sum();
+    }
+
+    public long decompressCount() {
+        return decompressCount.sum();
+    }
+
+    /**
+     * 压缩后与压缩前的大小比例，越小表示压缩效果越好
+     */
+    public double compressionRatio() {
+        long raw = rawBytes.sum();
+        return raw == 0 ? 1.0 : (double) compressedBytes.sum() / raw;
+    }
+
+    public long compressTime(TimeUnit unit) {
+        return unit.convert(compressNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    public long decompressTime(TimeUnit unit) {
+        return unit.convert(decompressNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionStats{" +
+                "compressCount=" + compressCount() +
+                ", skipCount=" + skipCount() +
+                ", decompressCount=" + decompressCount() +
+                ", compressionRatio=" + String.format("%.3f", compressionRatio()) +
+                ", compressTimeMs=" + compressTime(TimeUnit.MILLISECONDS) +
+                ", decompressTimeMs=" + decompressTime(TimeUnit.MILLISECONDS) +
+                '}';
+    }
+}
@@ -2,8 +2,12 @@ package com.dc.cache.factory;
 
 import com.dc.cache.Cache;
 import com.dc.cache.CacheBuilder;
+import com.dc.cache.caffeine.ByteSizeWeigher;
 import com.dc.cache.caffeine.LocalCaffeineCache;
 import com.github.benmanes.caffeine.cache.Scheduler;
+import com.github.benmanes.caffeine.cache.Weigher;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import org.checkerframework.checker.units.qual.K;
 
 import java.util.concurrent.Executor;
@@ -31,6 +35,13 @@ public class CaffeineCacheBuilder<K, V> implements Cache.Builder<K, V> {
      */
     private int maxSize;
 
+    /**
+     * 所有数据权重之和的上限(例如字节数)，大于0时按照权重限制缓存，忽略maxSize
+     */
+    private long maxWeight;
+
+    private Weigher<? super K, ? super V> weigher;
+
     /**
      * 缓存初始化的数据量
      */
@@ -41,6 +52,21 @@ public class CaffeineCacheBuilder<K, V> implements Cache.Builder<K, V> {
      */
     private Executor executor;
 
+    /**
+     * 写入数据时过期时间的随机抖动比例
+     */
+    private double ttlJitter;
+
+    /**
+     * XFetch 提前刷新的系数, 为0时不开启
+     */
+    private double earlyRefreshBeta;
+
+    /**
+     * 记录缓存统计指标，默认为 {@link Metrics#globalRegistry}, 为null时不记录
+     */
+    private MeterRegistry meterRegistry = Metrics.globalRegistry;
+
 
     @Override
     public CaffeineCacheBuilder<K, V> cacheName(String cacheName) {
@@ -72,8 +98,58 @@ public class CaffeineCacheBuilder<K, V> implements Cache.Builder<K, V> {
     }
 
 
+    /**
+     * 按照字节数限制缓存，未指定 weigher 时使用 {@link ByteSizeWeigher#defaults()}
+     */
+    public CaffeineCacheBuilder<K, V> maxWeight(long maxWeight) {
+        this.maxWeight = maxWeight;
+        return this;
+    }
+
+
+    public CaffeineCacheBuilder<K, V> weigher(Weigher<? super K, ? super V> weigher) {
+        this.weigher = weigher;
+        return this;
+    }
+
+
+    public CaffeineCacheBuilder<K, V> ttlJitter(double ttlJitter) {
+        this.ttlJitter = ttlJitter;
+        return this;
+    }
+
+
+    /**
+     * XFetch 提前刷新的系数，命中的数据仍然会刷新过期时间, 只有接近过期的数据才可能在后台提前刷新
+     */
+    public CaffeineCacheBuilder<K, V> earlyRefresh(double beta) {
+        this.earlyRefreshBeta = beta;
+        return this;
+    }
+
+
+    public CaffeineCacheBuilder<K, V> meterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        return this;
+    }
+
+
+    /**
+     * 不记录统计数据，用于访问非常频繁的缓存
+     */
+    public CaffeineCacheBuilder<K, V> disableStats() {
+        this.meterRegistry = null;
+        return this;
+    }
+
+
     @Override
     public Cache<K, V> build() {
-        return new LocalCaffeineCache<>(cacheName, initialSize, maxSize, executor, scheduler);
+        if (maxWeight <= 0) {
+            return new LocalCaffeineCache<>(cacheName, initialSize, maxSize, null, executor, scheduler, ttlJitter, earlyRefreshBeta, meterRegistry);
+        }
+
+        Weigher<? super K, ? super V> valueWeigher = weigher == null ? ByteSizeWeigher.defaults() : weigher;
+        return new LocalCaffeineCache<>(cacheName, initialSize, maxWeight, valueWeigher, executor, scheduler, ttlJitter, earlyRefreshBeta, meterRegistry);
     }
 }
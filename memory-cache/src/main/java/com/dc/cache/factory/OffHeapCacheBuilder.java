@@ -0,0 +1,118 @@
+package com.dc.cache.factory;
+
+import com.dc.cache.Cache;
+import com.dc.cache.CacheMetricsTools;
+import com.dc.cache.offheap.OffHeapCache;
+import com.dc.tools.io.serilizer.ProtoStuffSerializer;
+import com.dc.tools.io.serilizer.Serializer;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 用于构建堆外缓存
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ * @see OffHeapCache
+ */
+public class OffHeapCacheBuilder<K, V> implements Cache.Builder<K, V> {
+
+    /**
+     * 默认分配直接内存
+     */
+    private static final ByteBufAllocator DIRECT_ALLOCATOR = new PooledByteBufAllocator(true);
+
+    /**
+     * 缓存的名称
+     */
+    private String cacheName;
+
+    /**
+     * 缓存可存储的最大的数据量，小于等于0时只通过内存大小进行限制
+     */
+    private int maxSize;
+
+    /**
+     * 可以使用的最大堆外内存, 默认为64M
+     */
+    private long maxMemory = 64 << 20;
+
+    /**
+     * 每个slab的大小，默认为1M
+     */
+    private int slabSize = 1 << 20;
+
+    /**
+     * segment 数量，必须为2的幂
+     */
+    private int concurrencyLevel = 16;
+
+    /**
+     * 用于执行removeListener
+     */
+    private Executor executor = CacheMetricsTools.CACHE_POOL;
+
+    private ByteBufAllocator allocator = DIRECT_ALLOCATOR;
+
+    private Serializer<K> keySerializer = new ProtoStuffSerializer<>();
+
+    private Serializer<V> valueSerializer = new ProtoStuffSerializer<>();
+
+
+    @Override
+    public OffHeapCacheBuilder<K, V> cacheName(String cacheName) {
+        this.cacheName = cacheName;
+        return this;
+    }
+
+    @Override
+    public OffHeapCacheBuilder<K, V> maxSize(int maxSize) {
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    @Override
+    public OffHeapCacheBuilder<K, V> executor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    public OffHeapCacheBuilder<K, V> maxMemory(long maxMemory) {
+        this.maxMemory = maxMemory;
+        return this;
+    }
+
+    public OffHeapCacheBuilder<K, V> slabSize(int slabSize) {
+        this.slabSize = slabSize;
+        return this;
+    }
+
+    public OffHeapCacheBuilder<K, V> concurrencyLevel(int concurrencyLevel) {
+        this.concurrencyLevel = concurrencyLevel;
+        return this;
+    }
+
+    public OffHeapCacheBuilder<K, V> allocator(ByteBufAllocator allocator) {
+        this.allocator = allocator;
+        return this;
+    }
+
+    public OffHeapCacheBuilder<K, V> keySerializer(Serializer<K> keySerializer) {
+        this.keySerializer = keySerializer;
+        return this;
+    }
+
+    public OffHeapCacheBuilder<K, V> valueSerializer(Serializer<V> valueSerializer) {
+        this.valueSerializer = valueSerializer;
+        return this;
+    }
+
+
+    @Override
+    public OffHeapCache<K, V> build() {
+        return new OffHeapCache<>(cacheName, allocator, maxMemory, slabSize, concurrencyLevel, maxSize,
+                keySerializer, valueSerializer, executor);
+    }
+}
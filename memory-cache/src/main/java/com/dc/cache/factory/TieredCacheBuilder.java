@@ -0,0 +1,145 @@
+package com.dc.cache.factory;
+
+import com.dc.cache.Cache;
+import com.dc.cache.CacheMetricsTools;
+import com.dc.cache.caffeine.LocalCaffeineCache;
+import com.dc.cache.tiered.TieredCache;
+import com.dc.tools.io.serilizer.ProtoStuffSerializer;
+import com.dc.tools.io.serilizer.Serializer;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.HTreeMap;
+
+import java.io.File;
+import java.util.concurrent.Executor;
+
+/**
+ * 用于构建二级缓存
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ * @see TieredCache
+ */
+public class TieredCacheBuilder<K, V> implements Cache.Builder<K, V> {
+
+    /**
+     * 缓存的名称
+     */
+    private String cacheName;
+
+    /**
+     * L1 可存储的最大的数据量
+     */
+    private int maxSize;
+
+    /**
+     * L1 初始化的数据量
+     */
+    private int initialSize = 16;
+
+    /**
+     * L2 文件可以使用的最大空间，默认为1G
+     */
+    private long diskMaxSize = 1L << 30;
+
+    /**
+     * L2 存储的文件，为空时使用临时文件，关闭后会被删除
+     */
+    private File diskFile;
+
+    /**
+     * 定时驱逐器
+     */
+    private Scheduler scheduler = Scheduler.systemScheduler();
+
+    /**
+     * 用于内部线程执行，L1淘汰的数据也会在该线程池中写入L2
+     */
+    private Executor executor = CacheMetricsTools.CACHE_POOL;
+
+    private Serializer<K> keySerializer = new ProtoStuffSerializer<>();
+
+    private Serializer<V> valueSerializer = new ProtoStuffSerializer<>();
+
+    /**
+     * 记录L1的统计指标，默认不记录
+     */
+    private MeterRegistry meterRegistry;
+
+
+    @Override
+    public TieredCacheBuilder<K, V> cacheName(String cacheName) {
+        this.cacheName = cacheName;
+        return this;
+    }
+
+    @Override
+    public TieredCacheBuilder<K, V> maxSize(int maxSize) {
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    @Override
+    public TieredCacheBuilder<K, V> executor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    public TieredCacheBuilder<K, V> initialSize(int initialSize) {
+        this.initialSize = initialSize;
+        return this;
+    }
+
+    public TieredCacheBuilder<K, V> scheduler(Scheduler scheduler) {
+        this.scheduler = scheduler;
+        return this;
+    }
+
+    public TieredCacheBuilder<K, V> diskFile(File diskFile) {
+        this.diskFile = diskFile;
+        return this;
+    }
+
+    public TieredCacheBuilder<K, V> diskMaxSize(long diskMaxSize) {
+        this.diskMaxSize = diskMaxSize;
+        return this;
+    }
+
+    public TieredCacheBuilder<K, V> keySerializer(Serializer<K> keySerializer) {
+        this.keySerializer = keySerializer;
+        return this;
+    }
+
+    public TieredCacheBuilder<K, V> valueSerializer(Serializer<V> valueSerializer) {
+        this.valueSerializer = valueSerializer;
+        return this;
+    }
+
+
+    public TieredCacheBuilder<K, V> meterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        return this;
+    }
+
+    @Override
+    public TieredCache<K, V> build() {
+        DBMaker.Maker maker = diskFile == null ? DBMaker.tempFileDB() : DBMaker.fileDB(diskFile);
+        DB db = maker.fileMmapEnableIfSupported()
+                .closeOnJvmShutdown()
+                .make();
+
+        //按照写入的顺序淘汰超过文件大小的数据
+        HTreeMap<byte[], byte[]> diskCache = db.hashMap(cacheName)
+                .keySerializer(org.mapdb.Serializer.BYTE_ARRAY)
+                .valueSerializer(org.mapdb.Serializer.BYTE_ARRAY)
+                .expireAfterCreate()
+                .expireStoreSize(diskMaxSize)
+                .createOrOpen();
+
+        LocalCaffeineCache<K, TieredCache.TieredValue<V>> localCache =
+                new LocalCaffeineCache<>(cacheName, initialSize, maxSize, null, executor, scheduler, 0, 0, meterRegistry);
+        return new TieredCache<>(cacheName, localCache, db, diskCache, keySerializer, valueSerializer);
+    }
+}
@@ -0,0 +1,92 @@
+package com.dc.cache.hotkey;
+
+import com.dc.tools.common.utils.Assert;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Count-Min Sketch, 通过固定大小的计数器估算key的访问频率，估算值只会偏大不会偏小
+ *
+ * <p>
+ * 每一行通过不同的种子计算key的位置，估算值取所有行中最小的计数;
+ * 调用 {@link #halve()} 会将所有计数减半，使得较早的访问逐渐失去权重，以此近似滑动窗口
+ * </p>
+ *
+ * @author zy
+ */
+class FrequencySketch<K> {
+
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private static final int DEPTH = SEEDS.length;
+
+    private final AtomicIntegerArray table;
+
+    private final int mask;
+
+    /**
+     * @param width 每一行计数器的数量，会向上取整为2的幂
+     */
+    FrequencySketch(int width) {
+        Assert.isTrue(width > 0, "width must > 0");
+        int size = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+        this.mask = size - 1;
+        this.table = new AtomicIntegerArray(size * DEPTH);
+    }
+
+    /**
+     * 增加key的访问次数
+     *
+     * @return 增加之后估算的访问次数
+     */
+    int increment(K key) {
+        int hash = spread(key.hashCode());
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = indexOf(hash, i);
+            int count = table.get(index);
+            //计数饱和之后不再增加，避免溢出
+            if (count != Integer.MAX_VALUE) {
+                count = table.incrementAndGet(index);
+            }
+
+            min = Math.min(min, count);
+        }
+
+        return min;
+    }
+
+    /**
+     * 估算key的访问次数
+     */
+    int frequency(K key) {
+        int hash = spread(key.hashCode());
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            min = Math.min(min, table.get(indexOf(hash, i)));
+        }
+
+        return min;
+    }
+
+    /**
+     * 所有计数减半
+     */
+    void halve() {
+        for (int i = 0; i < table.length(); i++) {
+            table.updateAndGet(i, count -> count >>> 1);
+        }
+    }
+
+    private int indexOf(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return row * (mask + 1) + ((int) h & mask);
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -0,0 +1,333 @@
+package com.dc.cache.hotkey;
+
+import com.dc.cache.Cache;
+import com.dc.cache.CacheRemovedListener;
+import com.dc.tools.common.utils.Assert;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 通过 {@link HotKeyDetector} 统计对 delegate 的读取，将热点key的数据保存在一个较小的本地副本中，
+ * 热点key的读取直接从本地副本返回，避免集中访问远程缓存的同一个分片
+ *
+ * <p>
+ * 本地副本只保存热点key, 过期时间为 {@code replicaTtl}; 当前节点写入或删除 delegate 之后会删除本地副本中的数据，
+ * 读取 delegate 期间对应的key发生过写入时，读取到的数据不会写入本地副本; key 不再是热点时也会从本地副本中删除
+ * </p>
+ *
+ * @param <K> cache key
+ * @param <V> cache value
+ * @author zy
+ * @apiNote 本地副本不会感知其他节点的写入，最多会读取到 {@code replicaTtl} 之前的数据;
+ * 命中本地副本时 {@link #getAndRefresh(Object, long, TimeUnit)} 不会刷新 delegate 中的过期时间
+ */
+public class HotKeyCache<K, V> implements Cache<K, V> {
+
+    private static final int INVALIDATION_STRIPES = 64;
+
+    private final Cache<K, V> delegate;
+
+    private final HotKeyDetector<K> detector;
+
+    /**
+     * 热点key的本地副本
+     */
+    private final com.github.benmanes.caffeine.cache.Cache<Object, V> replica;
+
+    /**
+     * 命中本地副本的次数
+     */
+    private final LongAdder replicaHits = new LongAdder();
+
+    /**
+     * 按照key分段记录本地副本的失效次数，读取delegate期间对应的分段发生过失效时不写入本地副本,
+     * 避免将写入之前读取到的旧数据重新写入本地副本
+     */
+    private final AtomicLongArray invalidations = new AtomicLongArray(INVALIDATION_STRIPES);
+
+    /**
+     * @param delegate   远程缓存
+     * @param detector   用于统计热点key, 可以与其他组件共享
+     * @param replicaTtl 本地副本的过期时间
+     */
+    public HotKeyCache(Cache<K, V> delegate, HotKeyDetector<K> detector, Duration replicaTtl, long replicaMaxSize) {
+        Assert.isTrue(!replicaTtl.isNegative() && !replicaTtl.isZero(), "replicaTtl must > 0");
+        Assert.isTrue(replicaMaxSize > 0, "replicaMaxSize must > 0");
+        this.delegate = delegate;
+        this.detector = detector;
+        this.replica = Caffeine.newBuilder()
+                .expireAfterWrite(replicaTtl)
+                .maximumSize(replicaMaxSize)
+                .build();
+
+        detector.addListener(new HotKeyListener<K>() {
+            @Override
+            public void onHot(K key, long frequency) {
+            }
+
+            @Override
+            public void onCool(K key) {
+                replica.invalidate(key);
+            }
+        });
+    }
+
+    public HotKeyDetector<K> detector() {
+        return detector;
+    }
+
+    public long replicaHitCount() {
+        return replicaHits.sum();
+    }
+
+    @Override
+    public V get(K key, Function<K, V> mappingFunction, long ttl, TimeUnit ttlUnit) {
+        detector.record(key);
+        if (!detector.isHot(key)) {
+            return delegate.get(key, mappingFunction, ttl, ttlUnit);
+        }
+
+        V value = replica.getIfPresent(key);
+        if (value != null) {
+            replicaHits.increment();
+            return value;
+        }
+
+        long epoch = invalidations.get(stripe(key));
+        return pin(key, delegate.get(key, mappingFunction, ttl, ttlUnit), epoch);
+    }
+
+    @Override
+    public V getAndRefresh(K key, long ttl, TimeUnit ttlUnit) {
+        detector.record(key);
+        if (!detector.isHot(key)) {
+            return delegate.getAndRefresh(key, ttl, ttlUnit);
+        }
+
+        V value = replica.getIfPresent(key);
+        if (value != null) {
+            replicaHits.increment();
+            return value;
+        }
+
+        long epoch = invalidations.get(stripe(key));
+        return pin(key, delegate.getAndRefresh(key, ttl, ttlUnit), epoch);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        detector.record((K) key);
+        if (!detector.isHot(key)) {
+            return delegate.get(key);
+        }
+
+        V value = replica.getIfPresent(key);
+        if (value != null) {
+            replicaHits.increment();
+            return value;
+        }
+
+        long epoch = invalidations.get(stripe(key));
+        return pin(key, delegate.get(key), epoch);
+    }
+
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys, Function<Set<K>, Map<K, V>> bulkLoader, long ttl, TimeUnit ttlUnit) {
+        Map<K, V> hits = new LinkedHashMap<>();
+        //key -> 读取delegate之前的失效次数
+        Map<K, Long> remoteKeys = new LinkedHashMap<>();
+        for (K key : keys) {
+            detector.record(key);
+            V value = detector.isHot(key) ? replica.getIfPresent(key) : null;
+            if (value != null) {
+                replicaHits.increment();
+                hits.put(key, value);
+            } else {
+                remoteKeys.put(key, invalidations.get(stripe(key)));
+            }
+        }
+
+        if (remoteKeys.isEmpty()) {
+            return hits;
+        }
+
+        Map<K, V> loaded = delegate.getAll(remoteKeys.keySet(), bulkLoader, ttl, ttlUnit);
+        loaded.forEach((key, value) -> {
+            Long epoch = remoteKeys.get(key);
+            if (epoch != null && detector.isHot(key)) {
+                pin(key, value, epoch);
+            }
+        });
+
+        if (hits.isEmpty()) {
+            return loaded;
+        }
+
+        //按照keys的顺序返回
+        Map<K, V> result = new LinkedHashMap<>(keys.size());
+        for (K key : keys) {
+            V value = hits.containsKey(key) ? hits.get(key) : loaded.get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public V put(K key, V value, long ttl, TimeUnit ttlUnit) {
+        try {
+            return delegate.put(key, value, ttl, ttlUnit);
+        } finally {
+            //写入delegate之后再删除本地副本，写入期间读取到的旧数据由失效次数阻止重新进入副本
+            invalidateReplica(key);
+        }
+    }
+
+    @Override
+    public void refreshTime(K key, long ttl, TimeUnit ttlUnit) {
+        delegate.refreshTime(key, ttl, ttlUnit);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map, long ttl, TimeUnit ttlUnit) {
+        try {
+            delegate.putAll(map, ttl, ttlUnit);
+        } finally {
+            invalidateReplica(map.keySet());
+        }
+    }
+
+    @Override
+    public void addRemoveListener(CacheRemovedListener<K, V> removedListener) {
+        delegate.addRemoveListener(removedListener);
+    }
+
+    @Override
+    public void removeCache(K cacheKey) {
+        try {
+            delegate.removeCache(cacheKey);
+        } finally {
+            invalidateReplica(cacheKey);
+        }
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return delegate.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return delegate.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return delegate.containsValue(value);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        try {
+            return delegate.put(key, value);
+        } finally {
+            invalidateReplica(key);
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        try {
+            return delegate.remove(key);
+        } finally {
+            invalidateReplica(key);
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        try {
+            delegate.putAll(m);
+        } finally {
+            invalidateReplica(m.keySet());
+        }
+    }
+
+    @Override
+    public void clear() {
+        try {
+            delegate.clear();
+        } finally {
+            for (int i = 0; i < INVALIDATION_STRIPES; i++) {
+                invalidations.incrementAndGet(i);
+            }
+
+            replica.invalidateAll();
+        }
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return delegate.keySet();
+    }
+
+    @Override
+    public Collection<V> values() {
+        return delegate.values();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return delegate.entrySet();
+    }
+
+    /**
+     * 读取delegate期间对应的key没有失效时才写入本地副本。
+     * 失效时先增加失效次数再删除本地副本, 这里在compute中比较失效次数, 因此两者不会交错
+     *
+     * @param epoch 读取delegate之前的失效次数
+     */
+    private V pin(Object key, V value, long epoch) {
+        if (value != null) {
+            int stripe = stripe(key);
+            replica.asMap().compute(key, (k, current) -> invalidations.get(stripe) == epoch ? value : current);
+        }
+
+        return value;
+    }
+
+    private void invalidateReplica(Object key) {
+        invalidations.incrementAndGet(stripe(key));
+        replica.invalidate(key);
+    }
+
+    private void invalidateReplica(Collection<?> keys) {
+        for (Object key : keys) {
+            invalidations.incrementAndGet(stripe(key));
+        }
+
+        replica.invalidateAll(keys);
+    }
+
+    private static int stripe(Object key) {
+        int hash = key.hashCode();
+        return (hash ^ hash >>> 16) & (INVALIDATION_STRIPES - 1);
+    }
+}
@@ -0,0 +1,200 @@
+package com.dc.cache.hotkey;
+
+import com.dc.cache.CacheMetricsTools;
+import com.dc.tools.common.utils.Assert;
+import com.dc.tools.common.utils.ConcurrentList;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通过 {@link FrequencySketch} 统计key的访问频率，在每个窗口结束时计算访问次数最多的 {@code topK} 个key
+ *
+ * <p>
+ * 访问次数达到 {@code hotThreshold} 的key会作为候选，窗口结束时按照访问次数排序选出热点key, 并通过
+ * {@link HotKeyListener} 通知新增以及不再是热点的key; 之后所有计数减半，较早的访问在后续窗口中逐渐失去权重
+ * </p>
+ *
+ * @author zy
+ * @apiNote 访问次数是估算值，不同key的hash冲突会导致估算偏大，只适合用于发现热点
+ */
+@Slf4j
+public class HotKeyDetector<K> {
+
+    /**
+     * 候选key数量为topK的倍数，超过之后不再添加新的候选
+     */
+    private static final int CANDIDATE_FACTOR = 8;
+
+    private final FrequencySketch<K> sketch;
+
+    private final int topK;
+
+    /**
+     * 一个窗口内至少访问多少次才会成为热点key
+     */
+    private final long hotThreshold;
+
+    private final long windowMillis;
+
+    private final int maxCandidates;
+
+    /**
+     * 当前窗口内访问次数达到 hotThreshold 的key
+     */
+    private final Map<K, Long> candidates = new ConcurrentHashMap<>();
+
+    private final ConcurrentList<HotKeyListener<K>> listeners = new ConcurrentList<>();
+
+    /**
+     * 上一个窗口计算的热点key, 按照访问次数从高到低排序
+     */
+    private volatile Map<K, Long> hotKeys = Collections.emptyMap();
+
+    private volatile Timeout timeout;
+
+    private volatile boolean closed;
+
+    /**
+     * @param topK         最多保留的热点key数量
+     * @param hotThreshold 一个窗口内至少访问多少次才会成为热点key
+     * @param window       窗口的时长
+     * @param sketchWidth  sketch 每一行计数器的数量，通常为预计的活跃key数量
+     */
+    public HotKeyDetector(int topK, long hotThreshold, Duration window, int sketchWidth) {
+        Assert.isTrue(topK > 0, "topK must > 0");
+        Assert.isTrue(hotThreshold > 0, "hotThreshold must > 0");
+        Assert.isTrue(!window.isNegative() && !window.isZero(), "window must > 0");
+        this.sketch = new FrequencySketch<>(sketchWidth);
+        this.topK = topK;
+        this.hotThreshold = hotThreshold;
+        this.windowMillis = window.toMillis();
+        this.maxCandidates = topK * CANDIDATE_FACTOR;
+        this.timeout = CacheMetricsTools.CACHE_TIMER.newTimeout(new WindowTask(), windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 记录一次访问
+     */
+    public void record(K key) {
+        if (key == null) {
+            return;
+        }
+
+        long frequency = sketch.increment(key);
+        if (frequency < hotThreshold) {
+            return;
+        }
+
+        if (candidates.size() < maxCandidates || candidates.containsKey(key)) {
+            candidates.merge(key, frequency, Math::max);
+        }
+    }
+
+    public boolean isHot(Object key) {
+        return hotKeys.containsKey(key);
+    }
+
+    /**
+     * 上一个窗口的热点key, 按照访问次数从高到低排序
+     */
+    public List<HotKey<K>> hotKeys() {
+        List<HotKey<K>> result = new ArrayList<>(hotKeys.size());
+        hotKeys.forEach((key, frequency) -> result.add(new HotKey<>(key, frequency)));
+        return result;
+    }
+
+    public void addListener(HotKeyListener<K> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 停止计算热点key
+     */
+    public void close() {
+        closed = true;
+        Timeout current = timeout;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    /**
+     * 结束当前窗口，重新计算热点key
+     */
+    void rotate() {
+        List<Map.Entry<K, Long>> entries = new ArrayList<>(candidates.entrySet());
+        candidates.clear();
+        entries.sort(Map.Entry.<K, Long>comparingByValue().reversed());
+
+        Map<K, Long> current = new LinkedHashMap<>();
+        for (int i = 0; i < entries.size() && i < topK; i++) {
+            current.put(entries.get(i).getKey(), entries.get(i).getValue());
+        }
+
+        Map<K, Long> previous = hotKeys;
+        hotKeys = current;
+        sketch.halve();
+
+        for (HotKeyListener<K> listener : listeners) {
+            try {
+                previous.keySet().stream()
+                        .filter(key -> !current.containsKey(key))
+                        .forEach(listener::onCool);
+                current.forEach((key, frequency) -> {
+                    if (!previous.containsKey(key)) {
+                        listener.onHot(key, frequency);
+                    }
+                });
+            } catch (Exception e) {
+                log.error("Notify hot key listener error", e);
+            }
+        }
+    }
+
+
+    /**
+     * 热点key以及上一个窗口中估算的访问次数
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class HotKey<K> {
+
+        private final K key;
+
+        private final long frequency;
+
+        @Override
+        public String toString() {
+            return key + "=" + frequency;
+        }
+    }
+
+
+    private class WindowTask implements TimerTask {
+
+        @Override
+        public void run(Timeout t) {
+            if (closed) {
+                return;
+            }
+
+            try {
+                rotate();
+            } finally {
+                timeout = CacheMetricsTools.CACHE_TIMER.newTimeout(this, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.dc.cache.hotkey;
+
+/**
+ * 热点key变化时触发，在 {@link HotKeyDetector} 的定时线程中执行，不能有耗时的操作
+ *
+ * @author zy
+ */
+public interface HotKeyListener<K> {
+
+    /**
+     * key 成为热点key
+     *
+     * @param key       热点key
+     * @param frequency 上一个窗口中估算的访问次数
+     */
+    void onHot(K key, long frequency);
+
+    /**
+     * key 不再是热点key
+     */
+    default void onCool(K key) {
+    }
+}
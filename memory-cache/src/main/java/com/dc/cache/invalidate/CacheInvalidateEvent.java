@@ -0,0 +1,26 @@
+package com.dc.cache.invalidate;
+
+import com.dc.tools.notify.Event;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 本地写入缓存之后发布的失效事件，由 {@link InvalidationBus} 批量发送给其他节点
+ *
+ * @author zy
+ */
+@Getter
+@AllArgsConstructor
+public class CacheInvalidateEvent extends Event {
+
+    private static final long serialVersionUID = -2783307542941573218L;
+
+    /**
+     * 发布该事件的 {@link InvalidationBus}
+     */
+    private final String busId;
+
+    private final String cacheName;
+
+    private final Object key;
+}
@@ -0,0 +1,233 @@
+package com.dc.cache.invalidate;
+
+import com.dc.cache.Cache;
+import com.dc.cache.CacheMetricsTools;
+import com.dc.tools.common.spi.CommonServiceLoader;
+import com.dc.tools.common.utils.Assert;
+import com.dc.tools.notify.NotifyCenter;
+import com.dc.tools.notify.listener.Subscriber;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 多个节点之间的本地缓存失效总线
+ *
+ * <p>
+ * 节点写入本地缓存之后调用 {@link #invalidate(String, Object)}, 失效事件通过 {@link NotifyCenter} 异步发布，
+ * 不会阻塞写入线程; 事件在publisher线程中合并，达到 {@code batchSize} 或者等待超过 {@code maxDelay} 时通过
+ * {@link InvalidationTransport} 批量发送给其他节点，其他节点收到消息后通过 {@link Cache#removeCache(Object)} 删除对应的数据
+ * </p>
+ *
+ * @author zy
+ * @apiNote 失效消息是尽力送达的，key 需要能够被transport序列化，并且在不同节点之间 equals 一致
+ */
+@Slf4j
+public class InvalidationBus implements Subscriber<CacheInvalidateEvent> {
+
+    private static final int DEFAULT_BATCH_SIZE = 256;
+
+    private static final long DEFAULT_MAX_DELAY_MILLIS = 50;
+
+    @Getter
+    private final String busId = UUID.randomUUID().toString();
+
+    private final InvalidationTransport transport;
+
+    /**
+     * 合并的key数量达到该值时立即发送
+     */
+    private final int batchSize;
+
+    /**
+     * 失效事件最多等待多久发送
+     */
+    private final long maxDelayMillis;
+
+    /**
+     * cacheName -> 本地缓存
+     */
+    private final Map<String, Cache<Object, ?>> caches = new ConcurrentHashMap<>();
+
+    private final Consumer<InvalidationMessage> receiver = this::receive;
+
+    /**
+     * 等待发送的key, 通过 synchronized 保护
+     */
+    private Map<String, List<Object>> pending = new HashMap<>();
+
+    private int pendingCount;
+
+    private volatile Timeout timeout;
+
+    private volatile boolean closed;
+
+    /**
+     * 通过SPI加载transport, 没有实现时使用 {@link LoopbackTransport}
+     */
+    public InvalidationBus() {
+        this(loadTransport());
+    }
+
+    public InvalidationBus(InvalidationTransport transport) {
+        this(transport, DEFAULT_BATCH_SIZE, DEFAULT_MAX_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public InvalidationBus(InvalidationTransport transport, int batchSize, long maxDelay, TimeUnit unit) {
+        Assert.isTrue(batchSize > 0, "batchSize must > 0");
+        Assert.isTrue(maxDelay > 0, "maxDelay must > 0");
+        this.transport = transport;
+        this.batchSize = batchSize;
+        this.maxDelayMillis = unit.toMillis(maxDelay);
+        NotifyCenter.registerSubscriber(this);
+        transport.subscribe(receiver);
+        this.timeout = CacheMetricsTools.CACHE_TIMER.newTimeout(new FlushTask(), maxDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 注册本地缓存，收到其他节点的失效消息时删除该缓存中对应的key
+     */
+    @SuppressWarnings("unchecked")
+    public void register(String cacheName, Cache<?, ?> cache) {
+        caches.put(cacheName, (Cache<Object, ?>) cache);
+    }
+
+    public void unregister(String cacheName) {
+        caches.remove(cacheName);
+    }
+
+    /**
+     * 通知其他节点删除对应的key, 当前节点的缓存不会被删除
+     *
+     * @return 事件是否发布成功
+     */
+    public boolean invalidate(String cacheName, Object key) {
+        Assert.isTrue(!closed, "InvalidationBus is closed");
+        return NotifyCenter.publishEvent(new CacheInvalidateEvent(busId, cacheName, key));
+    }
+
+    @Override
+    public void onEvent(CacheInvalidateEvent event) {
+        //所有的bus共享同一个publisher, 只处理自己发布的事件
+        if (!busId.equals(event.getBusId())) {
+            return;
+        }
+
+        Map<String, List<Object>> batch = null;
+        synchronized (this) {
+            pending.computeIfAbsent(event.getCacheName(), cacheName -> new ArrayList<>()).add(event.getKey());
+            if (++pendingCount >= batchSize) {
+                batch = drain();
+            }
+        }
+
+        send(batch);
+    }
+
+    @Override
+    public Class<? extends CacheInvalidateEvent> subscribeType() {
+        return CacheInvalidateEvent.class;
+    }
+
+    /**
+     * 立即发送所有等待的key
+     */
+    public void flush() {
+        Map<String, List<Object>> batch;
+        synchronized (this) {
+            batch = drain();
+        }
+
+        send(batch);
+    }
+
+    /**
+     * 停止发送与接收失效消息，还在 {@link NotifyCenter} 队列中的事件会被丢弃
+     */
+    public void close() {
+        closed = true;
+        Timeout current = timeout;
+        if (current != null) {
+            current.cancel();
+        }
+
+        flush();
+        NotifyCenter.deregisterSubscriber(this);
+        transport.unsubscribe(receiver);
+    }
+
+    private Map<String, List<Object>> drain() {
+        if (pendingCount == 0) {
+            return null;
+        }
+
+        Map<String, List<Object>> batch = pending;
+        pending = new HashMap<>();
+        pendingCount = 0;
+        return batch;
+    }
+
+    private void send(Map<String, List<Object>> batch) {
+        if (batch == null) {
+            return;
+        }
+
+        try {
+            transport.send(new InvalidationMessage(busId, batch));
+        } catch (Exception e) {
+            log.error("Send invalidation message error, bus id is: {}", busId, e);
+        }
+    }
+
+    private void receive(InvalidationMessage message) {
+        if (closed || busId.equals(message.getSourceId()) || message.getKeys() == null) {
+            return;
+        }
+
+        message.getKeys().forEach((cacheName, keys) -> {
+            Cache<Object, ?> cache = caches.get(cacheName);
+            if (cache == null) {
+                return;
+            }
+
+            for (Object key : keys) {
+                cache.removeCache(key);
+            }
+        });
+    }
+
+    private static InvalidationTransport loadTransport() {
+        List<InvalidationTransport> transports = CommonServiceLoader.load(InvalidationTransport.class).sort();
+        return transports.isEmpty() ? new LoopbackTransport() : transports.get(0);
+    }
+
+
+    /**
+     * 定时发送没有达到 batchSize 的key
+     */
+    private class FlushTask implements TimerTask {
+
+        @Override
+        public void run(Timeout t) {
+            if (closed) {
+                return;
+            }
+
+            try {
+                flush();
+            } finally {
+                timeout = CacheMetricsTools.CACHE_TIMER.newTimeout(this, maxDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+}
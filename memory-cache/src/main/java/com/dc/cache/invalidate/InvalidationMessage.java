@@ -0,0 +1,32 @@
+package com.dc.cache.invalidate;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 通过 {@link InvalidationTransport} 在节点之间传输的一批失效的key
+ *
+ * @author zy
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvalidationMessage implements Serializable {
+
+    private static final long serialVersionUID = 4327018713896403364L;
+
+    /**
+     * 发送消息的节点，节点会忽略自己发送的消息
+     */
+    private String sourceId;
+
+    /**
+     * cacheName -> 失效的key
+     */
+    private Map<String, List<Object>> keys;
+}
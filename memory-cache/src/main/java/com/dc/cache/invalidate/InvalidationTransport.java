@@ -0,0 +1,29 @@
+package com.dc.cache.invalidate;
+
+import java.util.function.Consumer;
+
+/**
+ * 在节点之间传输失效消息的SPI, 可以通过redis pub/sub、MQ 等方式实现，
+ * 通过 {@link com.dc.tools.common.spi.CommonServiceLoader} 加载，没有实现时使用 {@link LoopbackTransport}
+ *
+ * @author zy
+ */
+public interface InvalidationTransport {
+
+    /**
+     * 将消息发送给所有的节点
+     */
+    void send(InvalidationMessage message);
+
+    /**
+     * 订阅其他节点发送的消息
+     *
+     * @param receiver 消息的处理器，不能阻塞
+     */
+    void subscribe(Consumer<InvalidationMessage> receiver);
+
+    /**
+     * 取消订阅
+     */
+    void unsubscribe(Consumer<InvalidationMessage> receiver);
+}
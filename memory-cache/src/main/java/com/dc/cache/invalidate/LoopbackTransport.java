@@ -0,0 +1,42 @@
+package com.dc.cache.invalidate;
+
+import com.dc.tools.common.spi.SPI;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 进程内的传输实现，消息会同步投递给同一个JVM中所有的订阅者，用于测试或者单机部署.
+ * 订阅者在JVM内共享, 不同的实例之间也可以相互投递
+ *
+ * @author zy
+ */
+@Slf4j
+@SPI(name = "loopback")
+public class LoopbackTransport implements InvalidationTransport {
+
+    private static final List<Consumer<InvalidationMessage>> receivers = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void send(InvalidationMessage message) {
+        for (Consumer<InvalidationMessage> receiver : receivers) {
+            try {
+                receiver.accept(message);
+            } catch (Exception e) {
+                log.error("Deliver invalidation message error", e);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<InvalidationMessage> receiver) {
+        receivers.add(receiver);
+    }
+
+    @Override
+    public void unsubscribe(Consumer<InvalidationMessage> receiver) {
+        receivers.remove(receiver);
+    }
+}
@@ -0,0 +1,258 @@
+package com.dc.cache.negative;
+
+import com.dc.cache.Cache;
+import com.dc.cache.CacheRemovedListener;
+import com.dc.tools.common.utils.Assert;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.hash.BloomFilter;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 缓存不存在的key, 避免对不存在的key的访问每次都穿透到 {@code mappingFunction}
+ *
+ * <p>
+ * 加载结果为null的key会在单独的负缓存中保存 {@code negativeTtl}, 期间的访问直接返回null;
+ * 配置 {@code bloomFilter} 后，布隆过滤器中一定不存在的key 会被直接拒绝，不会调用 {@code mappingFunction}。
+ * 布隆过滤器需要由调用方预先加载所有存在的key, 通过当前缓存写入的key也会被添加到布隆过滤器中，
+ * 在其他地方新增的数据需要调用 {@link #markExists(Object)}
+ * </p>
+ *
+ * <p>
+ * 负缓存与布隆过滤器只在未命中 delegate 时才会检查，不会影响命中的性能
+ * </p>
+ *
+ * @param <K> cache key
+ * @param <V> cache value
+ * @author zy
+ */
+public class NegativeCachingCache<K, V> implements Cache<K, V> {
+
+    private final Cache<K, V> delegate;
+
+    /**
+     * 不存在的key
+     */
+    private final com.github.benmanes.caffeine.cache.Cache<K, Boolean> negativeCache;
+
+    /**
+     * 所有存在的key, 为空时不过滤
+     */
+    private final BloomFilter<? super K> bloomFilter;
+
+    /**
+     * 命中负缓存的次数
+     */
+    private final LongAdder negativeHits = new LongAdder();
+
+    /**
+     * 被布隆过滤器拒绝的次数
+     */
+    private final LongAdder bloomRejects = new LongAdder();
+
+    /**
+     * @param delegate        实际保存数据的缓存
+     * @param negativeTtl     不存在的key缓存的时间
+     * @param negativeMaxSize 最多缓存不存在的key的数量
+     * @param bloomFilter     所有存在的key, 为null时不过滤
+     */
+    public NegativeCachingCache(Cache<K, V> delegate, Duration negativeTtl, long negativeMaxSize, BloomFilter<? super K> bloomFilter) {
+        Assert.isTrue(!negativeTtl.isNegative() && !negativeTtl.isZero(), "negativeTtl must > 0");
+        this.delegate = delegate;
+        this.bloomFilter = bloomFilter;
+        this.negativeCache = Caffeine.newBuilder()
+                .expireAfterWrite(negativeTtl)
+                .maximumSize(negativeMaxSize)
+                .build();
+    }
+
+    public NegativeCachingCache(Cache<K, V> delegate, Duration negativeTtl, long negativeMaxSize) {
+        this(delegate, negativeTtl, negativeMaxSize, null);
+    }
+
+    /**
+     * 标记key已经存在，用于数据在其他地方新增的场景
+     */
+    public void markExists(K key) {
+        if (bloomFilter != null) {
+            bloomFilter.put(key);
+        }
+
+        negativeCache.invalidate(key);
+    }
+
+    /**
+     * 判断key是否一定不存在
+     */
+    public boolean isAbsent(K key) {
+        if (bloomFilter != null && !bloomFilter.mightContain(key)) {
+            bloomRejects.increment();
+            return true;
+        }
+
+        if (negativeCache.getIfPresent(key) != null) {
+            negativeHits.increment();
+            return true;
+        }
+
+        return false;
+    }
+
+    public long negativeHitCount() {
+        return negativeHits.sum();
+    }
+
+    public long bloomRejectCount() {
+        return bloomRejects.sum();
+    }
+
+    @Override
+    public V put(K key, V value, long ttl, TimeUnit ttlUnit) {
+        markExists(key);
+        return delegate.put(key, value, ttl, ttlUnit);
+    }
+
+    @Override
+    public void refreshTime(K key, long ttl, TimeUnit ttlUnit) {
+        delegate.refreshTime(key, ttl, ttlUnit);
+    }
+
+    @Override
+    public V get(K key, Function<K, V> mappingFunction, long ttl, TimeUnit ttlUnit) {
+        return delegate.get(key, k -> {
+            if (isAbsent(k)) {
+                return null;
+            }
+
+            V value = mappingFunction.apply(k);
+            if (value == null) {
+                negativeCache.put(k, Boolean.TRUE);
+            }
+
+            return value;
+        }, ttl, ttlUnit);
+    }
+
+    @Override
+    public V getAndRefresh(K key, long ttl, TimeUnit ttlUnit) {
+        return delegate.getAndRefresh(key, ttl, ttlUnit);
+    }
+
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys, Function<Set<K>, Map<K, V>> bulkLoader, long ttl, TimeUnit ttlUnit) {
+        return delegate.getAll(keys, missKeys -> {
+            Set<K> loadKeys = new LinkedHashSet<>(missKeys.size());
+            for (K key : missKeys) {
+                if (!isAbsent(key)) {
+                    loadKeys.add(key);
+                }
+            }
+
+            if (loadKeys.isEmpty()) {
+                return Collections.emptyMap();
+            }
+
+            Map<K, V> loaded = bulkLoader.apply(Collections.unmodifiableSet(loadKeys));
+            Map<K, V> result = loaded == null ? Collections.emptyMap() : loaded;
+            for (K key : loadKeys) {
+                if (result.get(key) == null) {
+                    negativeCache.put(key, Boolean.TRUE);
+                }
+            }
+
+            return result;
+        }, ttl, ttlUnit);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map, long ttl, TimeUnit ttlUnit) {
+        map.keySet().forEach(this::markExists);
+        delegate.putAll(map, ttl, ttlUnit);
+    }
+
+    @Override
+    public void addRemoveListener(CacheRemovedListener<K, V> removedListener) {
+        delegate.addRemoveListener(removedListener);
+    }
+
+    /**
+     * 删除缓存的数据以及不存在的标记，布隆过滤器不支持删除
+     */
+    @Override
+    public void removeCache(K cacheKey) {
+        negativeCache.invalidate(cacheKey);
+        delegate.removeCache(cacheKey);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return delegate.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return delegate.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return delegate.containsValue(value);
+    }
+
+    @Override
+    public V get(Object key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        markExists(key);
+        return delegate.put(key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        negativeCache.invalidate(key);
+        return delegate.remove(key);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        m.keySet().forEach(this::markExists);
+        delegate.putAll(m);
+    }
+
+    @Override
+    public void clear() {
+        negativeCache.invalidateAll();
+        delegate.clear();
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return delegate.keySet();
+    }
+
+    @Override
+    public Collection<V> values() {
+        return delegate.values();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return delegate.entrySet();
+    }
+}
@@ -0,0 +1,938 @@
+package com.dc.cache.offheap;
+
+import com.dc.cache.Cache;
+import com.dc.cache.CacheMetricsTools;
+import com.dc.cache.CacheRemovedListener;
+import com.dc.cache.CachedValue;
+import com.dc.cache.Hash;
+import com.dc.pool.buffer.BufferPool;
+import com.dc.pool.buffer.NettyBufferPool;
+import com.dc.pool.buffer.NettyPoolBuf;
+import com.dc.tools.common.utils.Assert;
+import com.dc.tools.common.utils.ConcurrentList;
+import com.dc.tools.io.serilizer.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * 堆外缓存实现，key 与 value 序列化后保存在从 {@link BufferPool} 中分配的直接内存(slab)中，堆内只保留索引,
+ * 用于存放大量的缓存数据而不会对GC产生压力
+ *
+ * <p>
+ * 每个segment 维护自己的索引与slab链表，数据以追加的方式写入当前slab, 当slab写满后会重新分配新的slab。
+ * 当segment 可使用的内存达到上限时会按照写入顺序淘汰最早的slab, slab 中的数据全部被删除或者过期后会立即归还到内存池
+ * </p>
+ *
+ * <p>
+ * slab 中每条记录的格式为: | hash(8) | keyLength(4) | valueLength(4) | key | value |
+ * </p>
+ *
+ * @param <K> cache key
+ * @param <V> cache value
+ * @author zy
+ * @apiNote {@link #get(Object, Function, long, TimeUnit)} 不会在加锁的情况下执行mappingFunction，并发时可能会被执行多次，但只有第一次的结果会被保存
+ */
+@Slf4j
+public class OffHeapCache<K, V> implements Cache<K, V> {
+
+    /**
+     * 每条记录的头部长度
+     */
+    private static final int RECORD_HEADER = 16;
+
+    /**
+     * 永不过期
+     */
+    private static final long NEVER_EXPIRE = Long.MAX_VALUE;
+
+    /**
+     * 从内存池分配slab时的最大等待时间，segment 自身已经控制了内存上限，正常情况下不会发生等待
+     */
+    private static final long ALLOCATE_TIMEOUT = 1000;
+
+    @Getter
+    private final String cacheName;
+
+    private final Segment[] segments;
+
+    private final int segmentMask;
+
+    /**
+     * 每个slab的大小
+     */
+    private final int slabSize;
+
+    /**
+     * 每个segment 可以使用的最大内存
+     */
+    private final long segmentMemory;
+
+    /**
+     * 每个segment 可以保存的最大数量
+     */
+    private final int segmentEntries;
+
+    private final BufferPool<NettyPoolBuf> bufferPool;
+
+    private final Serializer<K> keySerializer;
+
+    private final Serializer<V> valueSerializer;
+
+    /**
+     * 用于执行removeListener
+     */
+    private final Executor executor;
+
+    private final ConcurrentList<CacheRemovedListener<K, V>> removedListeners = new ConcurrentList<>();
+
+    /**
+     * 定时清理过期的数据
+     */
+    private volatile Timeout cleanTimeout;
+
+    private volatile boolean closed;
+
+    @SuppressWarnings("unchecked")
+    public OffHeapCache(String cacheName, ByteBufAllocator allocator, long maxMemory, int slabSize, int concurrencyLevel, int maxSize,
+                 Serializer<K> keySerializer, Serializer<V> valueSerializer, Executor executor) {
+        Assert.isTrue(Integer.bitCount(concurrencyLevel) == 1, "concurrencyLevel must be power of 2");
+        Assert.isTrue(maxMemory / concurrencyLevel >= slabSize, "maxMemory must >= slabSize * concurrencyLevel");
+
+        this.cacheName = cacheName;
+        this.slabSize = slabSize;
+        this.segmentMemory = maxMemory / concurrencyLevel;
+        this.segmentEntries = maxSize <= 0 ? Integer.MAX_VALUE : Math.max(1, maxSize / concurrencyLevel);
+        this.bufferPool = new NettyBufferPool(cacheName, allocator, maxMemory);
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.executor = executor;
+        this.segmentMask = concurrencyLevel - 1;
+        this.segments = (Segment[]) new OffHeapCache.Segment[concurrencyLevel];
+        for (int i = 0; i < concurrencyLevel; i++) {
+            segments[i] = new Segment();
+        }
+
+        this.cleanTimeout = CacheMetricsTools.CACHE_TIMER.newTimeout(new CleanTask(), 1, TimeUnit.MINUTES);
+    }
+
+    private class CleanTask implements TimerTask {
+
+        @Override
+        public void run(Timeout timeout) throws Exception {
+            //定时器由所有缓存共享，清理在线程池中执行
+            try {
+                executor.execute(() -> {
+                    try {
+                        cleanUp();
+                    } catch (Exception e) {
+                        log.error("Clean expired entries error, cacheName is: {}", cacheName, e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                log.warn("Clean expired entries is rejected, cacheName is: {}", cacheName);
+            }
+
+            if (!closed) {
+                cleanTimeout = CacheMetricsTools.CACHE_TIMER.newTimeout(this, 1, TimeUnit.MINUTES);
+            }
+        }
+    }
+
+    @Override
+    public V put(K key, V value, long ttl, TimeUnit ttlUnit) {
+        byte[] keyBytes = keySerializer.serialize(key);
+        byte[] valueBytes = valueSerializer.serialize(value);
+        long hash = hash(keyBytes);
+        Segment segment = segmentFor(hash);
+
+        List<RemovedRecord> removed = newRemovedRecords();
+        byte[] oldValue = segment.put(hash, keyBytes, valueBytes, expireTime(ttl, ttlUnit), removed);
+        notifyRemoved(removed);
+        return deserializeValue(oldValue);
+    }
+
+    @Override
+    public void refreshTime(K key, long ttl, TimeUnit ttlUnit) {
+        byte[] keyBytes = keySerializer.serialize(key);
+        long hash = hash(keyBytes);
+        segmentFor(hash).refresh(hash, keyBytes, expireTime(ttl, ttlUnit), false);
+    }
+
+    @Override
+    public V get(K key, Function<K, V> mappingFunction, long ttl, TimeUnit ttlUnit) {
+        byte[] keyBytes = keySerializer.serialize(key);
+        long hash = hash(keyBytes);
+        Segment segment = segmentFor(hash);
+
+        byte[] valueBytes = segment.refresh(hash, keyBytes, expireTime(ttl, ttlUnit), true);
+        if (valueBytes != null) {
+            return deserializeValue(valueBytes);
+        }
+
+        V value = mappingFunction.apply(key);
+        if (value == null) {
+            return null;
+        }
+
+        List<RemovedRecord> removed = newRemovedRecords();
+        byte[] exists = segment.putIfAbsent(hash, keyBytes, valueSerializer.serialize(value), expireTime(ttl, ttlUnit), removed);
+        notifyRemoved(removed);
+        return exists == null ? value : deserializeValue(exists);
+    }
+
+    @Override
+    public V getAndRefresh(K key, long ttl, TimeUnit ttlUnit) {
+        byte[] keyBytes = keySerializer.serialize(key);
+        long hash = hash(keyBytes);
+        return deserializeValue(segmentFor(hash).refresh(hash, keyBytes, expireTime(ttl, ttlUnit), true));
+    }
+
+    @Override
+    public void addRemoveListener(CacheRemovedListener<K, V> removedListener) {
+        removedListeners.add(removedListener);
+    }
+
+    @Override
+    public void removeCache(K cacheKey) {
+        byte[] keyBytes = keySerializer.serialize(cacheKey);
+        long hash = hash(keyBytes);
+        segmentFor(hash).remove(hash, keyBytes, false);
+    }
+
+    @Override
+    public int size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.count;
+        }
+
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean containsKey(Object key) {
+        byte[] keyBytes = keySerializer.serialize((K) key);
+        long hash = hash(keyBytes);
+        return segmentFor(hash).get(hash, keyBytes) != null;
+    }
+
+    /**
+     * 需要遍历并反序列化所有未过期的value，数据量较大时不建议使用
+     */
+    @Override
+    public boolean containsValue(Object value) {
+        return values().contains(value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        byte[] keyBytes = keySerializer.serialize((K) key);
+        long hash = hash(keyBytes);
+        return deserializeValue(segmentFor(hash).get(hash, keyBytes));
+    }
+
+    @Override
+    public V put(K key, V value) {
+        //添加永远不过期的键值
+        return put(key, value, NEVER_EXPIRE, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        byte[] keyBytes = keySerializer.serialize((K) key);
+        long hash = hash(keyBytes);
+        return deserializeValue(segmentFor(hash).remove(hash, keyBytes, true));
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        //添加永远不过期的键值
+        putAll(m, NEVER_EXPIRE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 在锁外完成序列化，并按照segment进行分组，每个segment只需要加一次锁
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map, long ttl, TimeUnit ttlUnit) {
+        long expireTime = expireTime(ttl, ttlUnit);
+        Map<Segment, List<PendingRecord>> grouped = new HashMap<>();
+        map.forEach((key, value) -> {
+            byte[] keyBytes = keySerializer.serialize(key);
+            long hash = hash(keyBytes);
+            grouped.computeIfAbsent(segmentFor(hash), segment -> new ArrayList<>())
+                    .add(new PendingRecord(hash, keyBytes, valueSerializer.serialize(value)));
+        });
+
+        List<RemovedRecord> removed = newRemovedRecords();
+        grouped.forEach((segment, records) -> segment.putAll(records, expireTime, removed));
+        notifyRemoved(removed);
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * 返回当前所有未过期key的快照，需要对所有的key进行反序列化，数据量较大时不建议使用
+     */
+    @Override
+    public Set<K> keySet() {
+        Set<K> keys = new HashSet<>();
+        for (Segment segment : segments) {
+            segment.forEach((keyBytes, valueBytes) -> keys.add(keySerializer.deserialize(keyBytes)), false);
+        }
+
+        return Collections.unmodifiableSet(keys);
+    }
+
+    /**
+     * 返回当前所有未过期value的快照，需要对所有的value进行反序列化，数据量较大时不建议使用
+     */
+    @Override
+    public Collection<V> values() {
+        List<V> values = new ArrayList<>();
+        for (Segment segment : segments) {
+            segment.forEach((keyBytes, valueBytes) -> values.add(valueSerializer.deserialize(valueBytes)), true);
+        }
+
+        return Collections.unmodifiableList(values);
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        throw new UnsupportedOperationException("Cannot support entry set operations");
+    }
+
+    /**
+     * 清理所有已经过期的数据
+     */
+    public void cleanUp() {
+        for (Segment segment : segments) {
+            List<RemovedRecord> removed = newRemovedRecords();
+            segment.cleanUp(removed);
+            notifyRemoved(removed);
+        }
+    }
+
+    /**
+     * 已经使用的堆外内存大小
+     */
+    public long usedMemory() {
+        return bufferPool.totalMemory() - bufferPool.unallocatedMemory();
+    }
+
+    /**
+     * 可以使用的最大堆外内存
+     */
+    public long maxMemory() {
+        return bufferPool.totalMemory();
+    }
+
+    /**
+     * 释放所有的堆外内存，关闭后缓存不可以再使用
+     */
+    public void close() {
+        closed = true;
+        cleanTimeout.cancel();
+        clear();
+        bufferPool.close();
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> 32) & segmentMask];
+    }
+
+    private V deserializeValue(byte[] valueBytes) {
+        return valueBytes == null ? null : valueSerializer.deserialize(valueBytes);
+    }
+
+    private List<RemovedRecord> newRemovedRecords() {
+        return removedListeners.isEmpty() ? null : new ArrayList<>();
+    }
+
+    /**
+     * 通知被淘汰或者是过期的数据, 反序列化与回调都在 {@link #executor} 中执行
+     */
+    private void notifyRemoved(List<RemovedRecord> removed) {
+        if (removed == null || removed.isEmpty()) {
+            return;
+        }
+
+        executor.execute(() -> {
+            for (RemovedRecord record : removed) {
+                K key = keySerializer.deserialize(record.key);
+                V value = valueSerializer.deserialize(record.value);
+                CachedValue<K, V> cachedValue = new CachedValue<K, V>() {
+                    @Override
+                    public K getKey() {
+                        return key;
+                    }
+
+                    @Override
+                    public V getValue() {
+                        return value;
+                    }
+
+                    @Override
+                    public boolean isExpired() {
+                        return true;
+                    }
+                };
+
+                for (CacheRemovedListener<K, V> removedListener : removedListeners) {
+                    try {
+                        removedListener.onRemove(cachedValue);
+                    } catch (Exception e) {
+                        log.error("Notify removed listener error, cacheName is: {}", cacheName, e);
+                    }
+                }
+            }
+        });
+    }
+
+    private static long hash(byte[] keyBytes) {
+        return Hash.hash64(keyBytes);
+    }
+
+    private static long expireTime(long ttl, TimeUnit ttlUnit) {
+        long ttlNanos = ttlUnit.toNanos(ttl);
+        long now = System.nanoTime();
+        //溢出时认为永不过期
+        if (ttlNanos >= NEVER_EXPIRE - Math.max(now, 0)) {
+            return NEVER_EXPIRE;
+        }
+
+        return now + ttlNanos;
+    }
+
+    private static boolean isExpired(long expireTime, long now) {
+        return expireTime != NEVER_EXPIRE && now - expireTime >= 0;
+    }
+
+
+    /**
+     * 堆内索引，只记录数据在slab中的位置以及过期时间
+     */
+    private static final class Entry {
+
+        private final long hash;
+
+        private final Slab slab;
+
+        private final int offset;
+
+        private final int keyLength;
+
+        private final int valueLength;
+
+        /**
+         * 读取数据时在读锁下刷新，其余的修改都在写锁下进行
+         */
+        private volatile long expireTime;
+
+        /**
+         * hash 冲突时的下一个节点
+         */
+        private Entry next;
+
+        Entry(long hash, Slab slab, int offset, int keyLength, int valueLength, long expireTime) {
+            this.hash = hash;
+            this.slab = slab;
+            this.offset = offset;
+            this.keyLength = keyLength;
+            this.valueLength = valueLength;
+            this.expireTime = expireTime;
+        }
+
+        int recordSize() {
+            return RECORD_HEADER + keyLength + valueLength;
+        }
+
+        byte[] key() {
+            byte[] bytes = new byte[keyLength];
+            slab.buf.getBytes(offset + RECORD_HEADER, bytes);
+            return bytes;
+        }
+
+        byte[] value() {
+            byte[] bytes = new byte[valueLength];
+            slab.buf.getBytes(offset + RECORD_HEADER + keyLength, bytes);
+            return bytes;
+        }
+
+        boolean keyEquals(ByteBuf key) {
+            return keyLength == key.readableBytes()
+                    && ByteBufUtil.equals(slab.buf, offset + RECORD_HEADER, key, key.readerIndex(), keyLength);
+        }
+    }
+
+    /**
+     * 从内存池中分配的一块连续内存，数据只会追加写入
+     */
+    private static final class Slab {
+
+        private final NettyPoolBuf buffer;
+
+        private final ByteBuf buf;
+
+        private final int capacity;
+
+        private int writeIndex;
+
+        /**
+         * 仍然被索引引用的数据大小，为0时可以归还到内存池
+         */
+        private int liveBytes;
+
+        Slab(NettyPoolBuf buffer) {
+            this.buffer = buffer;
+            this.buf = buffer.getByteBuf();
+            this.capacity = buffer.size();
+        }
+
+        int remaining() {
+            return capacity - writeIndex;
+        }
+
+        /**
+         * 写入一条记录，返回记录的起始位置
+         */
+        int append(long hash, byte[] key, byte[] value) {
+            int offset = writeIndex;
+            buf.setLong(offset, hash);
+            buf.setInt(offset + 8, key.length);
+            buf.setInt(offset + 12, value.length);
+            buf.setBytes(offset + RECORD_HEADER, key);
+            buf.setBytes(offset + RECORD_HEADER + key.length, value);
+            int recordSize = RECORD_HEADER + key.length + value.length;
+            writeIndex += recordSize;
+            liveBytes += recordSize;
+            //ByteBufUtil#equals 会根据writerIndex 校验边界
+            buf.writerIndex(writeIndex);
+            return offset;
+        }
+    }
+
+    private static final class RemovedRecord {
+
+        private final byte[] key;
+
+        private final byte[] value;
+
+        RemovedRecord(Entry entry) {
+            this.key = entry.key();
+            this.value = entry.value();
+        }
+    }
+
+    private static final class PendingRecord {
+
+        private final long hash;
+
+        private final byte[] key;
+
+        private final byte[] value;
+
+        PendingRecord(long hash, byte[] key, byte[] value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private interface RecordConsumer {
+
+        void accept(byte[] key, byte[] value);
+    }
+
+
+    private final class Segment {
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private final Map<Long, Entry> index = new HashMap<>();
+
+        /**
+         * 按照分配的顺序保存slab, 淘汰时从头部开始淘汰
+         */
+        private final ArrayDeque<Slab> slabs = new ArrayDeque<>();
+
+        /**
+         * 当前正在写入的slab
+         */
+        private Slab active;
+
+        /**
+         * 当前segment 已经分配的内存
+         */
+        private long allocatedMemory;
+
+        private volatile int count;
+
+        byte[] get(long hash, byte[] keyBytes) {
+            ByteBuf key = Unpooled.wrappedBuffer(keyBytes);
+            Lock readLock = lock.readLock();
+            readLock.lock();
+            try {
+                Entry entry = find(hash, key);
+                if (entry == null) {
+                    return null;
+                }
+
+                if (!isExpired(entry.expireTime, System.nanoTime())) {
+                    return entry.value();
+                }
+            } finally {
+                readLock.unlock();
+            }
+
+            removeExpired(hash, key);
+            return null;
+        }
+
+        /**
+         * 数据已经过期则需要获取写锁进行删除
+         */
+        private void removeExpired(long hash, ByteBuf key) {
+            List<RemovedRecord> removed = newRemovedRecords();
+            Lock writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                Entry entry = find(hash, key);
+                if (entry != null && isExpired(entry.expireTime, System.nanoTime())) {
+                    unlink(entry, removed);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+
+            notifyRemoved(removed);
+        }
+
+        /**
+         * 刷新数据的过期时间, 只需要持有读锁，命中的读请求之间不会相互阻塞;
+         * 并发的刷新只会相互覆盖为相近的过期时间
+         *
+         * @param readValue 是否需要返回对应的value
+         */
+        byte[] refresh(long hash, byte[] keyBytes, long expireTime, boolean readValue) {
+            ByteBuf key = Unpooled.wrappedBuffer(keyBytes);
+            Lock readLock = lock.readLock();
+            readLock.lock();
+            try {
+                Entry entry = find(hash, key);
+                if (entry == null) {
+                    return null;
+                }
+
+                if (!isExpired(entry.expireTime, System.nanoTime())) {
+                    entry.expireTime = expireTime;
+                    return readValue ? entry.value() : null;
+                }
+            } finally {
+                readLock.unlock();
+            }
+
+            removeExpired(hash, key);
+            return null;
+        }
+
+        byte[] put(long hash, byte[] keyBytes, byte[] valueBytes, long expireTime, List<RemovedRecord> removed) {
+            ByteBuf key = Unpooled.wrappedBuffer(keyBytes);
+            Lock writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                Entry old = find(hash, key);
+                byte[] oldValue = null;
+                if (old != null) {
+                    oldValue = isExpired(old.expireTime, System.nanoTime()) ? null : old.value();
+                }
+
+                insert(hash, key, keyBytes, valueBytes, expireTime, removed);
+                return oldValue;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        void putAll(List<PendingRecord> records, long expireTime, List<RemovedRecord> removed) {
+            Lock writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                for (PendingRecord record : records) {
+                    insert(record.hash, Unpooled.wrappedBuffer(record.key), record.key, record.value, expireTime, removed);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        byte[] putIfAbsent(long hash, byte[] keyBytes, byte[] valueBytes, long expireTime, List<RemovedRecord> removed) {
+            ByteBuf key = Unpooled.wrappedBuffer(keyBytes);
+            Lock writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                Entry old = find(hash, key);
+                if (old != null && !isExpired(old.expireTime, System.nanoTime())) {
+                    return old.value();
+                }
+
+                insert(hash, key, keyBytes, valueBytes, expireTime, removed);
+                return null;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        byte[] remove(long hash, byte[] keyBytes, boolean readValue) {
+            ByteBuf key = Unpooled.wrappedBuffer(keyBytes);
+            Lock writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                Entry entry = find(hash, key);
+                if (entry == null) {
+                    return null;
+                }
+
+                byte[] value = readValue && !isExpired(entry.expireTime, System.nanoTime()) ? entry.value() : null;
+                unlink(entry, null);
+                return value;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        void forEach(RecordConsumer consumer, boolean readValue) {
+            Lock readLock = lock.readLock();
+            readLock.lock();
+            try {
+                long now = System.nanoTime();
+                for (Entry head : index.values()) {
+                    for (Entry entry = head; entry != null; entry = entry.next) {
+                        if (!isExpired(entry.expireTime, now)) {
+                            consumer.accept(entry.key(), readValue ? entry.value() : null);
+                        }
+                    }
+                }
+            } finally {
+                readLock.unlock();
+            }
+        }
+
+        void cleanUp(List<RemovedRecord> removed) {
+            Lock writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                long now = System.nanoTime();
+                List<Entry> expired = new ArrayList<>();
+                for (Entry head : index.values()) {
+                    for (Entry entry = head; entry != null; entry = entry.next) {
+                        if (isExpired(entry.expireTime, now)) {
+                            expired.add(entry);
+                        }
+                    }
+                }
+
+                expired.forEach(entry -> unlink(entry, removed));
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        void clear() {
+            Lock writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                index.clear();
+                count = 0;
+                active = null;
+                Slab slab;
+                while ((slab = slabs.pollFirst()) != null) {
+                    release(slab);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        /**
+         * 写入新的数据并替换旧的索引，需要在写锁中执行
+         */
+        private void insert(long hash, ByteBuf key, byte[] keyBytes, byte[] valueBytes, long expireTime, List<RemovedRecord> removed) {
+            int recordSize = RECORD_HEADER + keyBytes.length + valueBytes.length;
+            Slab slab = allocate(recordSize, removed);
+
+            //分配slab时可能会淘汰旧的数据，所以需要重新查找
+            Entry old = find(hash, key);
+            if (old != null) {
+                unlink(old, null);
+            }
+
+            //超过最大数量时淘汰最早写入的slab
+            while (count >= segmentEntries && slabs.size() > 1) {
+                evict(slabs.peekFirst(), removed);
+            }
+
+            int offset = slab.append(hash, keyBytes, valueBytes);
+            Entry entry = new Entry(hash, slab, offset, keyBytes.length, valueBytes.length, expireTime);
+            entry.next = index.get(hash);
+            index.put(hash, entry);
+            count++;
+        }
+
+        /**
+         * 获取可以写入 {@code recordSize} 的slab, 如果内存不足则淘汰最早的slab
+         */
+        private Slab allocate(int recordSize, List<RemovedRecord> removed) {
+            if (active != null && active.remaining() >= recordSize) {
+                return active;
+            }
+
+            //超过slab 大小的数据会单独分配一个slab
+            int capacity = Math.max(slabSize, recordSize);
+            if (capacity > segmentMemory) {
+                throw new IllegalArgumentException("Record size " + recordSize + " is overflow max segment memory " + segmentMemory);
+            }
+
+            //当前slab 已经写满, 如果没有数据引用则直接释放
+            if (active != null) {
+                Slab full = active;
+                active = null;
+                if (full.liveBytes == 0) {
+                    slabs.remove(full);
+                    release(full);
+                }
+            }
+
+            while (allocatedMemory + capacity > segmentMemory && !slabs.isEmpty()) {
+                evict(slabs.peekFirst(), removed);
+            }
+
+            try {
+                Slab slab = new Slab(bufferPool.allocate(capacity, ALLOCATE_TIMEOUT, TimeUnit.MILLISECONDS));
+                slabs.addLast(slab);
+                allocatedMemory += capacity;
+                active = slab;
+                return slab;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Allocate slab is interrupted, cacheName is: " + cacheName, e);
+            }
+        }
+
+        /**
+         * 淘汰整个slab, 删除slab中所有仍然有效的索引
+         */
+        private void evict(Slab slab, List<RemovedRecord> removed) {
+            int offset = 0;
+            while (offset < slab.writeIndex && slab.liveBytes > 0) {
+                long hash = slab.buf.getLong(offset);
+                int recordSize = RECORD_HEADER + slab.buf.getInt(offset + 8) + slab.buf.getInt(offset + 12);
+                for (Entry entry = index.get(hash); entry != null; entry = entry.next) {
+                    if (entry.slab == slab && entry.offset == offset) {
+                        unlink(entry, removed);
+                        break;
+                    }
+                }
+
+                offset += recordSize;
+            }
+
+            //slab 中数据全部被删除时会在unlink 中释放
+            if (slabs.contains(slab)) {
+                if (active == slab) {
+                    active = null;
+                }
+
+                slabs.remove(slab);
+                release(slab);
+            }
+        }
+
+        /**
+         * 删除索引，如果slab中没有被引用的数据并且不是当前写入的slab，则归还到内存池
+         */
+        private void unlink(Entry entry, List<RemovedRecord> removed) {
+            Entry head = index.get(entry.hash);
+            if (head == entry) {
+                if (entry.next == null) {
+                    index.remove(entry.hash);
+                } else {
+                    index.put(entry.hash, entry.next);
+                }
+            } else {
+                Entry prev = head;
+                while (prev != null && prev.next != entry) {
+                    prev = prev.next;
+                }
+
+                if (prev == null) {
+                    return;
+                }
+
+                prev.next = entry.next;
+            }
+
+            count--;
+            if (removed != null) {
+                removed.add(new RemovedRecord(entry));
+            }
+
+            Slab slab = entry.slab;
+            slab.liveBytes -= entry.recordSize();
+            if (slab.liveBytes == 0 && slab != active) {
+                slabs.remove(slab);
+                release(slab);
+            }
+        }
+
+        private void release(Slab slab) {
+            allocatedMemory -= slab.capacity;
+            slab.buffer.close();
+        }
+
+        private Entry find(long hash, ByteBuf key) {
+            for (Entry entry = index.get(hash); entry != null; entry = entry.next) {
+                if (entry.keyEquals(key)) {
+                    return entry;
+                }
+            }
+
+            return null;
+        }
+    }
+}
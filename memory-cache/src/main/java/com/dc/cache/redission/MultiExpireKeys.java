@@ -1,11 +1,14 @@
 package com.dc.cache.redission;
 
 import cn.hutool.core.util.StrUtil;
-import org.redisson.Redisson;
+import com.dc.tools.common.utils.Assert;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.redisson.api.MapOptions;
+import org.redisson.api.RBatch;
 import org.redisson.api.RMapCache;
+import org.redisson.api.RMapCacheAsync;
 import org.redisson.api.RedissonClient;
-import org.redisson.config.Config;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.core.convert.ConversionFailedException;
 import org.springframework.core.convert.ConversionService;
@@ -13,8 +16,16 @@ import org.springframework.core.convert.TypeDescriptor;
 import org.springframework.core.convert.support.DefaultConversionService;
 
 import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
 
 /**
  * 用于多过期key的情况，因为在一些情况下可能需要{@code  keys} 或者是 {@code  scan} 等方式取出对应的key <br/>
@@ -26,12 +37,20 @@ import java.util.concurrent.TimeUnit;
  *     <li>{@code scan} 命令虽然不会阻塞redis，但是会导致执行时间边长，对业务不太友好</li>
  * </ul>
  *
+ * <p>
+ * 批量读写通过 {@link RMapCache#getAll(Set)} 以及 {@link RBatch} 完成，只需要一次网络往返;
+ * 可以配置一个过期时间较短的本地缓存，读取时优先从本地缓存获取，当前节点写入或删除时会同时删除本地缓存中的数据
+ * </p>
+ *
  * @author zy
+ * @apiNote 本地缓存不会感知其他节点的写入以及redis中数据的过期，最多会读取到 {@code localTtl} 之前的数据
  */
 public class MultiExpireKeys implements InitializingBean {
 
     private static final String REDIS_KEY_PREFIX = "multi_expire_keys_%s";
 
+    private static final int INVALIDATION_STRIPES = 64;
+
 
     private final RedissonClient redissonClient;
 
@@ -41,10 +60,45 @@ public class MultiExpireKeys implements InitializingBean {
 
     private final ConversionService registry;
 
+    /**
+     * 本地缓存，为null时不开启
+     */
+    private final Cache<String, Object> localCache;
+
+    /**
+     * 按照key分段记录本地缓存的失效次数，读取redis期间对应的分段发生过失效时不写入本地缓存,
+     * 避免将失效之前读取到的旧数据重新写入本地缓存
+     */
+    private final AtomicLongArray invalidations = new AtomicLongArray(INVALIDATION_STRIPES);
+
+    /**
+     * 目标类型 -> 类型转换
+     */
+    private final Map<TypeDescriptor, ValueConverter> converters = new ConcurrentHashMap<>();
+
     public MultiExpireKeys(RedissonClient redissonClient, String multiKey) {
+        this(redissonClient, multiKey, null, 0);
+    }
+
+    /**
+     * @param localTtl     本地缓存的过期时间，为null时不开启本地缓存
+     * @param localMaxSize 本地缓存最多保存的数量
+     */
+    public MultiExpireKeys(RedissonClient redissonClient, String multiKey, Duration localTtl, long localMaxSize) {
         this.redisKey = String.format(REDIS_KEY_PREFIX, multiKey);
         this.redissonClient = redissonClient;
         this.registry = DefaultConversionService.getSharedInstance();
+        if (localTtl == null) {
+            this.localCache = null;
+        } else {
+            Assert.isTrue(!localTtl.isNegative() && !localTtl.isZero(), "localTtl must > 0");
+            Assert.isTrue(localMaxSize > 0, "localMaxSize must > 0");
+            this.localCache = Caffeine.newBuilder()
+                    .expireAfterWrite(localTtl.toNanos(), TimeUnit.NANOSECONDS)
+                    .maximumSize(localMaxSize)
+                    .build();
+        }
+
         afterPropertiesSet();
     }
 
@@ -65,6 +119,40 @@ public class MultiExpireKeys implements InitializingBean {
      */
     public void putValue(String key, Object value, Duration duration) {
         multiKeys.put(key, value, duration.toMillis(), TimeUnit.MILLISECONDS);
+        invalidateLocal(key);
+    }
+
+    /**
+     * 批量添加数据，所有的数据使用相同的过期时间，只需要一次网络往返
+     *
+     * @param values   需要添加的数据
+     * @param duration 过期时间
+     */
+    public void putValues(Map<String, ?> values, Duration duration) {
+        if (values.isEmpty()) {
+            return;
+        }
+
+        multiKeys.putAll(values, duration.toMillis(), TimeUnit.MILLISECONDS);
+        invalidateLocal(values.keySet());
+    }
+
+    /**
+     * 批量添加数据，每条数据使用各自的过期时间，通过 {@link RBatch} 在一次网络往返中执行
+     *
+     * @param values    需要添加的数据
+     * @param durations 获取每个key的过期时间
+     */
+    public void putValues(Map<String, ?> values, Function<? super String, Duration> durations) {
+        if (values.isEmpty()) {
+            return;
+        }
+
+        RBatch batch = redissonClient.createBatch();
+        RMapCacheAsync<String, Object> batchKeys = batch.getMapCache(redisKey);
+        values.forEach((key, value) -> batchKeys.fastPutAsync(key, value, durations.apply(key).toMillis(), TimeUnit.MILLISECONDS));
+        batch.execute();
+        invalidateLocal(values.keySet());
     }
 
     /**
@@ -72,20 +160,61 @@ public class MultiExpireKeys implements InitializingBean {
      *
      * @param key 需要添加的key
      */
-    @SuppressWarnings("unchecked")
     public <T> T getValue(String key, TypeDescriptor descriptor) {
-        Object value = multiKeys.getOrDefault(key, null);
+        Object value = localCache == null ? null : localCache.getIfPresent(key);
         if (value == null) {
-            return null;
+            long epoch = invalidations.get(stripe(key));
+            value = multiKeys.getOrDefault(key, null);
+            if (value == null) {
+                return null;
+            }
+
+            populateLocal(key, value, epoch);
+        }
+
+        return convert(value, descriptor);
+    }
+
+    /**
+     * 批量获取数据，本地缓存中不存在的key通过一次 {@code getAll} 从redis中获取
+     *
+     * @param keys 需要获取的key
+     * @return 存在的数据，顺序与 {@code keys} 一致
+     */
+    public <T> Map<String, T> getValues(Collection<String> keys, TypeDescriptor descriptor) {
+        if (keys.isEmpty()) {
+            return Collections.emptyMap();
         }
 
-        TypeDescriptor sourceDescriptor = TypeDescriptor.valueOf(value.getClass());
-        if (registry.canConvert(TypeDescriptor.valueOf(value.getClass()), descriptor)) {
-            return (T) registry.convert(value, sourceDescriptor, descriptor);
+        Map<String, Object> values = new LinkedHashMap<>(keys.size() * 2);
+        //key -> 读取redis之前的失效次数
+        Map<String, Long> missKeys = new HashMap<>();
+        for (String key : keys) {
+            Object value = localCache == null ? null : localCache.getIfPresent(key);
+            if (value == null) {
+                missKeys.put(key, invalidations.get(stripe(key)));
+            } else {
+                values.put(key, value);
+            }
         }
 
-        throw new ConversionFailedException(sourceDescriptor, descriptor, value,
-                new IllegalArgumentException(StrUtil.format("The value type {} cannot be converted to type {}", sourceDescriptor, descriptor)));
+        Map<String, Object> loaded = missKeys.isEmpty() ? Collections.emptyMap() : multiKeys.getAll(missKeys.keySet());
+        loaded.forEach((key, value) -> populateLocal(key, value, missKeys.get(key)));
+
+        Map<String, T> result = new LinkedHashMap<>(keys.size() * 2);
+        for (String key : keys) {
+            Object value = values.containsKey(key) ? values.get(key) : loaded.get(key);
+            if (value != null) {
+                result.put(key, convert(value, descriptor));
+            }
+        }
+
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T convert(Object value, TypeDescriptor descriptor) {
+        return (T) converters.computeIfAbsent(descriptor, ValueConverter::new).convert(value);
     }
 
     /**
@@ -95,6 +224,19 @@ public class MultiExpireKeys implements InitializingBean {
      */
     public void delete(String key) {
         multiKeys.fastRemove(key);
+        invalidateLocal(key);
+    }
+
+    /**
+     * 批量删除对应的key
+     */
+    public void deleteValues(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        multiKeys.fastRemove(keys.toArray(new String[0]));
+        invalidateLocal(keys);
     }
 
     /**
@@ -116,6 +258,13 @@ public class MultiExpireKeys implements InitializingBean {
      */
     public void deleteAll() {
         multiKeys.delete();
+        if (localCache != null) {
+            for (int i = 0; i < INVALIDATION_STRIPES; i++) {
+                invalidations.incrementAndGet(i);
+            }
+
+            localCache.invalidateAll();
+        }
     }
 
 
@@ -123,5 +272,80 @@ public class MultiExpireKeys implements InitializingBean {
         return multiKeys;
     }
 
+    /**
+     * 读取redis期间对应的key没有失效时才写入本地缓存。
+     * 失效时先增加失效次数再删除本地缓存, 这里在compute中比较失效次数, 因此两者不会交错
+     *
+     * @param epoch 读取redis之前的失效次数
+     */
+    private void populateLocal(String key, Object value, Long epoch) {
+        if (localCache == null || value == null || epoch == null) {
+            return;
+        }
+
+        int stripe = stripe(key);
+        localCache.asMap().compute(key, (k, current) -> invalidations.get(stripe) == epoch ? value : current);
+    }
+
+    private void invalidateLocal(String key) {
+        if (localCache != null) {
+            invalidations.incrementAndGet(stripe(key));
+            localCache.invalidate(key);
+        }
+    }
+
+    private void invalidateLocal(Collection<String> keys) {
+        if (localCache != null) {
+            for (String key : keys) {
+                invalidations.incrementAndGet(stripe(key));
+            }
+
+            localCache.invalidateAll(keys);
+        }
+    }
+
+    private static int stripe(String key) {
+        int hash = key.hashCode();
+        return (hash ^ hash >>> 16) & (INVALIDATION_STRIPES - 1);
+    }
+
+
+    /**
+     * 将redis中读取的数据转换为目标类型，每种来源类型的转换方式只计算一次
+     */
+    private class ValueConverter {
 
+        private final TypeDescriptor targetType;
+
+        /**
+         * 来源类型 -> 转换方式
+         */
+        private final Map<Class<?>, Function<Object, Object>> conversions = new ConcurrentHashMap<>();
+
+        ValueConverter(TypeDescriptor targetType) {
+            this.targetType = targetType;
+        }
+
+        Object convert(Object value) {
+            return conversions.computeIfAbsent(value.getClass(), this::resolve).apply(value);
+        }
+
+        private Function<Object, Object> resolve(Class<?> sourceClass) {
+            TypeDescriptor sourceDescriptor = TypeDescriptor.valueOf(sourceClass);
+            //集合类型需要转换内部的元素，不能直接返回
+            boolean container = targetType.isCollection() || targetType.isMap() || targetType.isArray();
+            if (!container && targetType.getObjectType().isAssignableFrom(sourceClass)) {
+                return Function.identity();
+            }
+
+            if (registry.canConvert(sourceDescriptor, targetType)) {
+                return value -> registry.convert(value, sourceDescriptor, targetType);
+            }
+
+            return value -> {
+                throw new ConversionFailedException(sourceDescriptor, targetType, value,
+                        new IllegalArgumentException(StrUtil.format("The value type {} cannot be converted to type {}", sourceDescriptor, targetType)));
+            };
+        }
+    }
 }
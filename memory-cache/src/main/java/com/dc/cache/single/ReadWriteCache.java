@@ -16,7 +16,9 @@ import java.util.function.Supplier;
  *
  * @author zhangyang
  * @date 2020-09-16
+ * @deprecated 使用无锁的 {@link RefreshableReferenceCache} 代替
  */
+@Deprecated
 @ThreadSafe
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class ReadWriteCache<T> implements ReferenceCache<T>{
@@ -0,0 +1,246 @@
+package com.dc.cache.single;
+
+import com.dc.cache.CacheMetricsTools;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.lang.ref.SoftReference;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Supplier;
+
+/**
+ * 无锁的单值缓存，用于缓存配置、路由表等计算代价较高且每次请求都会读取的数据
+ *
+ * <p>
+ * 读取数据只需要读取一次volatile的holder，数据有效时不会阻塞也不会产生竞争;
+ * 数据不存在、过期或者软引用被回收时，只会有一个线程执行 {@code supplier}，其他线程等待该线程的加载结果。
+ * 设置 {@code refreshAfterWrite} 后，数据写入超过该时间再被访问时会在 {@code executor} 中异步刷新，刷新期间继续返回旧的数据;
+ * 刷新失败后按照指数退避，退避期间不会再次刷新
+ * </p>
+ *
+ * @author zhangyang
+ * @see ReferenceCache
+ */
+@Slf4j
+@ThreadSafe
+public class RefreshableReferenceCache<T> implements ReferenceCache<T> {
+
+    private static final long NEVER = Long.MAX_VALUE;
+
+    /**
+     * 刷新失败后第一次退避的时间(纳秒)，之后每次失败翻倍，直到 {@link #MAX_REFRESH_BACKOFF}
+     */
+    private static final long MIN_REFRESH_BACKOFF = TimeUnit.SECONDS.toNanos(1);
+
+    private static final long MAX_REFRESH_BACKOFF = TimeUnit.MINUTES.toNanos(1);
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<RefreshableReferenceCache, Holder> HOLDER =
+            AtomicReferenceFieldUpdater.newUpdater(RefreshableReferenceCache.class, Holder.class, "holder");
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<RefreshableReferenceCache, CompletableFuture> LOADING =
+            AtomicReferenceFieldUpdater.newUpdater(RefreshableReferenceCache.class, CompletableFuture.class, "loading");
+
+    private final Supplier<T> supplier;
+
+    /**
+     * 数据写入之后的过期时间(纳秒)
+     */
+    private final long expireAfterWrite;
+
+    /**
+     * 数据写入之后异步刷新的时间(纳秒)
+     */
+    private final long refreshAfterWrite;
+
+    private final Executor executor;
+
+    /**
+     * 当前缓存的数据，每次写入、清空都会替换为新的对象，加载完成时只有holder没有变化才会写入
+     */
+    private volatile Holder<T> holder = emptyHolder();
+
+    /**
+     * 正在执行的加载任务，保证同时只有一个线程执行supplier
+     */
+    private volatile CompletableFuture<T> loading;
+
+    /**
+     * 连续加载失败的次数
+     */
+    private volatile int failures;
+
+    /**
+     * 最近一次加载失败的时间
+     */
+    private volatile long lastFailureTime;
+
+
+    /**
+     * 数据一直有效，直到软引用被回收或者调用 {@link #clearCache()}
+     */
+    public RefreshableReferenceCache(Supplier<T> supplier) {
+        this(supplier, null, null, CacheMetricsTools.CACHE_POOL);
+    }
+
+    public RefreshableReferenceCache(Supplier<T> supplier, Duration expireAfterWrite) {
+        this(supplier, expireAfterWrite, null, CacheMetricsTools.CACHE_POOL);
+    }
+
+    /**
+     * @param expireAfterWrite  数据写入多久之后过期，为null时不过期
+     * @param refreshAfterWrite 数据写入多久之后被访问时异步刷新, 为null时不刷新, 应该小于 {@code expireAfterWrite}
+     * @param executor          执行异步刷新的线程池
+     */
+    public RefreshableReferenceCache(Supplier<T> supplier, Duration expireAfterWrite, Duration refreshAfterWrite, Executor executor) {
+        this.supplier = Objects.requireNonNull(supplier, "supplier must not be null");
+        this.expireAfterWrite = expireAfterWrite == null ? NEVER : expireAfterWrite.toNanos();
+        this.refreshAfterWrite = refreshAfterWrite == null ? NEVER : refreshAfterWrite.toNanos();
+        this.executor = Objects.requireNonNull(executor, "executor must not be null");
+    }
+
+
+    @Override
+    public T getCache() {
+        Holder<T> current = holder;
+        T value = current.reference.get();
+        if (value != null) {
+            long age = System.nanoTime() - current.loadTime;
+            if (age < expireAfterWrite) {
+                if (age >= refreshAfterWrite) {
+                    refreshAsync();
+                }
+
+                return value;
+            }
+        }
+
+        return load();
+    }
+
+    /**
+     * 异步刷新数据，刷新期间继续返回旧的数据，如果已经有加载任务或者处于失败后的退避期间则忽略
+     */
+    public void refreshAsync() {
+        if (inBackoff()) {
+            return;
+        }
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (!LOADING.compareAndSet(this, null, future)) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> doLoad(future));
+        } catch (RejectedExecutionException e) {
+            LOADING.compareAndSet(this, future, null);
+            future.completeExceptionally(e);
+            log.warn("Refresh reference cache is rejected by executor", e);
+        }
+    }
+
+    @Override
+    public void clearCache() {
+        //替换为新的对象，正在执行的加载完成后不会覆盖清空的结果
+        Holder<T> current = HOLDER.getAndSet(this, emptyHolder());
+        current.reference.clear();
+    }
+
+    /**
+     * 连续失败 n 次之后退避 {@code MIN_REFRESH_BACKOFF * 2^(n-1)}，最多 {@link #MAX_REFRESH_BACKOFF}
+     */
+    private boolean inBackoff() {
+        int count = failures;
+        if (count == 0) {
+            return false;
+        }
+
+        long backoff = Math.min(MIN_REFRESH_BACKOFF << Math.min(count - 1, 6), MAX_REFRESH_BACKOFF);
+        return System.nanoTime() - lastFailureTime < backoff;
+    }
+
+    /**
+     * 同步加载数据，已经有加载任务时等待该任务的结果
+     */
+    private T load() {
+        for (; ; ) {
+            CompletableFuture<T> future = loading;
+            if (future == null) {
+                CompletableFuture<T> newFuture = new CompletableFuture<>();
+                if (!LOADING.compareAndSet(this, null, newFuture)) {
+                    continue;
+                }
+
+                //其他线程可能在此之前已经加载完成
+                T value = validValue();
+                if (value != null) {
+                    LOADING.compareAndSet(this, newFuture, null);
+                    newFuture.complete(value);
+                    return value;
+                }
+
+                doLoad(newFuture);
+                future = newFuture;
+            }
+
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                throw new IllegalStateException("Load reference cache error", e.getCause());
+            }
+        }
+    }
+
+    private T validValue() {
+        Holder<T> current = holder;
+        T value = current.reference.get();
+        return value != null && System.nanoTime() - current.loadTime < expireAfterWrite ? value : null;
+    }
+
+    private void doLoad(CompletableFuture<T> future) {
+        //同时只有一个加载任务，holder 只会被 clearCache 修改
+        Holder<T> start = holder;
+        try {
+            T value = Objects.requireNonNull(supplier.get(), "The reference supplier produce must not be null");
+            if (!HOLDER.compareAndSet(this, start, new Holder<>(new SoftReference<>(value), System.nanoTime()))) {
+                log.debug("Reference cache is cleared while loading, discard the loaded value");
+            }
+            failures = 0;
+            future.complete(value);
+        } catch (Throwable e) {
+            lastFailureTime = System.nanoTime();
+            failures++;
+            log.error("Load reference cache error", e);
+            future.completeExceptionally(e);
+        } finally {
+            LOADING.compareAndSet(this, future, null);
+        }
+    }
+
+
+    private static <T> Holder<T> emptyHolder() {
+        return new Holder<>(new SoftReference<>(null), 0);
+    }
+
+
+    @AllArgsConstructor
+    private static class Holder<T> {
+
+        private final SoftReference<T> reference;
+
+        /**
+         * 数据加载完成的时间
+         */
+        private final long loadTime;
+    }
+}
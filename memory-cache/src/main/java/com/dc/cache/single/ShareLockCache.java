@@ -14,6 +14,7 @@ import java.util.function.Supplier;
  *
  * @author zhangyang
  * @date 2020-09-17
+ * @deprecated 使用无锁的 {@link RefreshableReferenceCache} 代替
  */
 @Deprecated
 @SuppressWarnings("Duplicates")
@@ -0,0 +1,424 @@
+package com.dc.cache.tiered;
+
+import com.dc.cache.Cache;
+import com.dc.cache.CacheRemovedListener;
+import com.dc.cache.CachedValue;
+import com.dc.cache.caffeine.LocalCaffeineCache;
+import com.dc.tools.common.utils.ConcurrentList;
+import com.dc.tools.io.serilizer.Serializer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.mapdb.DB;
+import org.mapdb.HTreeMap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 二级缓存实现, L1 为 {@link LocalCaffeineCache}，L2 为基于mmap的MapDB存储
+ *
+ * <p>
+ * 当L1 因为超过最大容量而淘汰数据时，会将数据序列化后写入L2, L2 命中后会将数据重新提升到L1并从L2中删除，
+ * 数据在两级缓存之间移动时会保留原有的过期时间
+ * </p>
+ *
+ * <p>
+ * L2 中每条数据的格式为: | expireTime(8) | value |, 过期时间为绝对时间(毫秒)，所以重新打开已有的文件时过期时间依然有效
+ * </p>
+ *
+ * @param <K> cache key
+ * @param <V> cache value
+ * @author zy
+ * @apiNote L1 使用softValues, 被GC回收的数据不会写入L2
+ */
+@Slf4j
+public class TieredCache<K, V> implements Cache<K, V> {
+
+    /**
+     * 永不过期
+     */
+    private static final long NEVER_EXPIRE = Long.MAX_VALUE;
+
+    @Getter
+    private final String cacheName;
+
+    private final LocalCaffeineCache<K, TieredValue<V>> localCache;
+
+    private final DB db;
+
+    private final HTreeMap<byte[], byte[]> diskCache;
+
+    private final Serializer<K> keySerializer;
+
+    private final Serializer<V> valueSerializer;
+
+    private final ConcurrentList<CacheRemovedListener<K, V>> removedListeners = new ConcurrentList<>();
+
+    public TieredCache(String cacheName, LocalCaffeineCache<K, TieredValue<V>> localCache, DB db, HTreeMap<byte[], byte[]> diskCache,
+                       Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this.cacheName = cacheName;
+        this.localCache = localCache;
+        this.db = db;
+        this.diskCache = diskCache;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.localCache.addRemoveListener(new SpillListener());
+    }
+
+    @Override
+    public V put(K key, V value, long ttl, TimeUnit ttlUnit) {
+        TieredValue<V> oldValue = localCache.put(key, new TieredValue<>(value, expireTime(ttl, ttlUnit)), ttl, ttlUnit);
+        //写入L1之后再删除L2中旧的数据，避免L1过期后读取到L2中旧的数据, 与 SpillListener 的顺序相反
+        byte[] spilled = diskCache.remove(keySerializer.serialize(key));
+        if (oldValue != null) {
+            return oldValue.value;
+        }
+
+        return spilled == null ? null : decodeValue(spilled);
+    }
+
+    @Override
+    public void refreshTime(K key, long ttl, TimeUnit ttlUnit) {
+        if (getAndRefresh(key, ttl, ttlUnit) == null) {
+            log.debug("Refresh time is ignored because key is not exists, cacheName is: {}", cacheName);
+        }
+    }
+
+    @Override
+    public V get(K key, Function<K, V> mappingFunction, long ttl, TimeUnit ttlUnit) {
+        TieredValue<V> tieredValue = localCache.get(key, k -> {
+            V value = promoteValue(k);
+            if (value == null) {
+                value = mappingFunction.apply(k);
+            }
+
+            return value == null ? null : new TieredValue<>(value, expireTime(ttl, ttlUnit));
+        }, ttl, ttlUnit);
+
+        if (tieredValue == null) {
+            return null;
+        }
+
+        tieredValue.expireTime = expireTime(ttl, ttlUnit);
+        return tieredValue.value;
+    }
+
+    @Override
+    public V getAndRefresh(K key, long ttl, TimeUnit ttlUnit) {
+        TieredValue<V> tieredValue = localCache.getAndRefresh(key, ttl, ttlUnit);
+        if (tieredValue != null) {
+            tieredValue.expireTime = expireTime(ttl, ttlUnit);
+            return tieredValue.value;
+        }
+
+        V value = promoteValue(key);
+        if (value != null) {
+            localCache.put(key, new TieredValue<>(value, expireTime(ttl, ttlUnit)), ttl, ttlUnit);
+        }
+
+        return value;
+    }
+
+    @Override
+    public void addRemoveListener(CacheRemovedListener<K, V> removedListener) {
+        removedListeners.add(removedListener);
+    }
+
+    @Override
+    public void removeCache(K cacheKey) {
+        localCache.removeCache(cacheKey);
+        diskCache.remove(keySerializer.serialize(cacheKey));
+    }
+
+    /**
+     * L2 中已经过期的数据不计算在内，需要遍历L2
+     */
+    @Override
+    public int size() {
+        int size = localCache.size();
+        for (byte[] spilled : diskCache.getValues()) {
+            if (!isExpired(spilled)) {
+                size++;
+            }
+        }
+
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        if (!localCache.isEmpty()) {
+            return false;
+        }
+
+        for (byte[] spilled : diskCache.getValues()) {
+            if (!isExpired(spilled)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean containsKey(Object key) {
+        if (localCache.containsKey(key)) {
+            return true;
+        }
+
+        byte[] spilled = diskCache.get(keySerializer.serialize((K) key));
+        return spilled != null && !isExpired(spilled);
+    }
+
+    /**
+     * 依次查找L1与L2中的value，L2 中的value需要反序列化，数据量较大时不建议使用
+     */
+    @Override
+    public boolean containsValue(Object value) {
+        for (TieredValue<V> tieredValue : localCache.values()) {
+            if (Objects.equals(tieredValue.value, value)) {
+                return true;
+            }
+        }
+
+        for (byte[] spilled : diskCache.getValues()) {
+            if (!isExpired(spilled) && Objects.equals(decodeValue(spilled), value)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        TieredValue<V> tieredValue = localCache.get(key);
+        if (tieredValue != null) {
+            return tieredValue.value;
+        }
+
+        //从L2中读取并提升到L1, 保留剩余的过期时间
+        K cacheKey = (K) key;
+        byte[] spilled = diskCache.remove(keySerializer.serialize(cacheKey));
+        if (spilled == null || isExpired(spilled)) {
+            return null;
+        }
+
+        long expireTime = ByteBuffer.wrap(spilled).getLong();
+        V value = decodeValue(spilled);
+        if (expireTime == NEVER_EXPIRE) {
+            localCache.put(cacheKey, new TieredValue<>(value, expireTime));
+        } else {
+            long remaining = Math.max(1, expireTime - System.currentTimeMillis());
+            localCache.put(cacheKey, new TieredValue<>(value, expireTime), remaining, TimeUnit.MILLISECONDS);
+        }
+
+        return value;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        //添加永远不过期的键值
+        return put(key, value, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        TieredValue<V> tieredValue = localCache.remove(key);
+        byte[] spilled = diskCache.remove(keySerializer.serialize((K) key));
+        if (tieredValue != null) {
+            return tieredValue.value;
+        }
+
+        return spilled == null || isExpired(spilled) ? null : decodeValue(spilled);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        m.forEach(this::put);
+    }
+
+    @Override
+    public void clear() {
+        localCache.clear();
+        diskCache.clear();
+    }
+
+    /**
+     * 返回两级缓存中所有key的快照，L2 中的key需要反序列化，数据量较大时不建议使用
+     */
+    @Override
+    public Set<K> keySet() {
+        Set<K> keys = new HashSet<>(localCache.keySet());
+        for (Map.Entry<byte[], byte[]> entry : diskCache.getEntries()) {
+            if (!isExpired(entry.getValue())) {
+                keys.add(keySerializer.deserialize(entry.getKey()));
+            }
+        }
+
+        return Collections.unmodifiableSet(keys);
+    }
+
+    /**
+     * 返回两级缓存中所有value的快照，L2 中的value需要反序列化，数据量较大时不建议使用
+     */
+    @Override
+    public Collection<V> values() {
+        List<V> values = new ArrayList<>();
+        localCache.values().forEach(tieredValue -> values.add(tieredValue.value));
+        for (byte[] spilled : diskCache.getValues()) {
+            if (!isExpired(spilled)) {
+                values.add(decodeValue(spilled));
+            }
+        }
+
+        return Collections.unmodifiableList(values);
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        throw new UnsupportedOperationException("Cannot support entry set operations");
+    }
+
+    /**
+     * 关闭L2存储
+     */
+    public void close() {
+        localCache.clear();
+        db.close();
+    }
+
+    /**
+     * 从L2中获取数据并删除，数据会由调用方重新写入L1
+     */
+    private V promoteValue(K key) {
+        byte[] spilled = diskCache.remove(keySerializer.serialize(key));
+        if (spilled == null || isExpired(spilled)) {
+            return null;
+        }
+
+        return decodeValue(spilled);
+    }
+
+    private V decodeValue(byte[] spilled) {
+        byte[] valueBytes = new byte[spilled.length - Long.BYTES];
+        System.arraycopy(spilled, Long.BYTES, valueBytes, 0, valueBytes.length);
+        return valueSerializer.deserialize(valueBytes);
+    }
+
+    private static byte[] encodeValue(byte[] valueBytes, long expireTime) {
+        return ByteBuffer.allocate(Long.BYTES + valueBytes.length)
+                .putLong(expireTime)
+                .put(valueBytes)
+                .array();
+    }
+
+    private static boolean isExpired(byte[] spilled) {
+        long expireTime = ByteBuffer.wrap(spilled).getLong();
+        return expireTime != NEVER_EXPIRE && expireTime <= System.currentTimeMillis();
+    }
+
+    private static long expireTime(long ttl, TimeUnit ttlUnit) {
+        long ttlMillis = ttlUnit.toMillis(ttl);
+        long now = System.currentTimeMillis();
+        //溢出时认为永不过期
+        return ttlMillis >= NEVER_EXPIRE - now ? NEVER_EXPIRE : now + ttlMillis;
+    }
+
+
+    /**
+     * L1 中保存的数据，记录绝对过期时间，用于写入L2时保留剩余的过期时间
+     */
+    public static final class TieredValue<V> {
+
+        private final V value;
+
+        private volatile long expireTime;
+
+        TieredValue(V value, long expireTime) {
+            this.value = value;
+            this.expireTime = expireTime;
+        }
+    }
+
+
+    /**
+     * 将L1中因为容量淘汰的数据写入L2, 其他原因删除的数据通知给外部的listener
+     */
+    private class SpillListener implements CacheRemovedListener<K, TieredValue<V>> {
+
+        @Override
+        public void onRemove(CachedValue<K, TieredValue<V>> cacheValue) {
+            K key = cacheValue.getKey();
+            TieredValue<V> tieredValue = cacheValue.getValue();
+            if (key == null || tieredValue == null) {
+                return;
+            }
+
+            long expireTime = tieredValue.expireTime;
+            boolean expired = expireTime != NEVER_EXPIRE && expireTime <= System.currentTimeMillis();
+            if (cacheValue.isEvicted() && !expired) {
+                spill(key, tieredValue);
+                return;
+            }
+
+            for (CacheRemovedListener<K, V> removedListener : removedListeners) {
+                removedListener.onRemove(new CachedValue<K, V>() {
+                    @Override
+                    public K getKey() {
+                        return key;
+                    }
+
+                    @Override
+                    public V getValue() {
+                        return tieredValue.value;
+                    }
+
+                    @Override
+                    public boolean isExpired() {
+                        return cacheValue.isExpired();
+                    }
+
+                    @Override
+                    public boolean isEvicted() {
+                        return cacheValue.isEvicted();
+                    }
+                });
+            }
+        }
+
+        /**
+         * 淘汰是异步通知的，在此期间可能已经重新写入了L1. 先写入L2再检查L1, 与 put 先写L1再删除L2的顺序相反,
+         * 保证任何交错下L2中都不会留下比L1旧的数据
+         */
+        private void spill(K key, TieredValue<V> tieredValue) {
+            if (localCache.containsKey(key)) {
+                return;
+            }
+
+            try {
+                byte[] keyBytes = keySerializer.serialize(key);
+                byte[] spilled = encodeValue(valueSerializer.serialize(tieredValue.value), tieredValue.expireTime);
+                diskCache.put(keyBytes, spilled);
+                if (localCache.containsKey(key)) {
+                    //只删除当前写入的数据
+                    diskCache.remove(keyBytes, spilled);
+                }
+            } catch (Exception e) {
+                log.error("Spill value to disk cache error, cacheName is: {}", cacheName, e);
+            }
+        }
+    }
+}
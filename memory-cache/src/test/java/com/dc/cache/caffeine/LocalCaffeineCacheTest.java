@@ -0,0 +1,132 @@
+package com.dc.cache.caffeine;
+
+import com.github.benmanes.caffeine.cache.Scheduler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 检查 {@link LocalCaffeineCache} 写入、读取时过期时间的设置与刷新
+ *
+ * @author zy
+ */
+public class LocalCaffeineCacheTest {
+
+    private LocalCaffeineCache<String, Integer> cache;
+
+    @Before
+    public void setUp() {
+        cache = new LocalCaffeineCache<>("test", 16, 1000, null, Runnable::run, Scheduler.systemScheduler(), 0, 0, null);
+    }
+
+    @After
+    public void tearDown() {
+        cache.destroy();
+    }
+
+    @Test
+    public void putUsesTtlAndPlainReadKeepsIt() {
+        cache.put("a", 1, 10, TimeUnit.SECONDS);
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        assertTtl("a", 10);
+
+        //没有指定过期时间的数据永不过期 (caffeine 中最长的过期时间约为150年)
+        cache.put("b", 2);
+        assertTrue(cache.getExpiresAfter("b", TimeUnit.DAYS).getAsLong() > 365 * 100);
+    }
+
+    @Test
+    public void hitRefreshesTtl() {
+        cache.put("a", 1, 10, TimeUnit.SECONDS);
+        assertEquals(Integer.valueOf(1), cache.get("a", key -> 2, 100, TimeUnit.SECONDS));
+        assertTtl("a", 100);
+
+        cache.refreshTime("a", 200, TimeUnit.SECONDS);
+        assertTtl("a", 200);
+
+        assertEquals(Integer.valueOf(1), cache.getAndRefresh("a", 300, TimeUnit.SECONDS));
+        assertTtl("a", 300);
+        assertNull(cache.getAndRefresh("missing", 300, TimeUnit.SECONDS));
+    }
+
+    /**
+     * mappingFunction 中读取其他key时，外层的过期时间不会作用在内层的key上
+     */
+    @Test
+    public void nestedReadKeepsItsOwnTtl() {
+        cache.put("inner", 5, 50, TimeUnit.SECONDS);
+        Integer value = cache.get("outer", key -> cache.get("inner") + cache.get("loaded", k -> 1, 20, TimeUnit.SECONDS), 500, TimeUnit.SECONDS);
+
+        assertEquals(Integer.valueOf(6), value);
+        assertTtl("outer", 500);
+        assertTtl("inner", 50);
+        assertTtl("loaded", 20);
+    }
+
+    @Test
+    public void bulkLoadMissesOnceAndRefreshHits() {
+        cache.put("a", 1, 10, TimeUnit.SECONDS);
+        AtomicInteger loads = new AtomicInteger();
+        Map<String, Integer> values = cache.getAll(Arrays.asList("a", "b", "c"), keys -> {
+            loads.incrementAndGet();
+            assertEquals(2, keys.size());
+            Map<String, Integer> loaded = new LinkedHashMap<>();
+            loaded.put("b", 2);
+            return loaded;
+        }, 400, TimeUnit.SECONDS);
+
+        assertEquals(1, loads.get());
+        assertEquals(Arrays.asList("a", "b"), Arrays.asList(values.keySet().toArray()));
+        assertTtl("a", 400);
+        assertTtl("b", 400);
+        assertFalse(cache.containsKey("c"));
+
+        Map<String, Integer> map = new LinkedHashMap<>();
+        map.put("x", 1);
+        map.put("y", 2);
+        cache.putAll(map, 30, TimeUnit.SECONDS);
+        assertTtl("x", 30);
+        assertTtl("y", 30);
+        assertEquals(Collections.singletonMap("x", 1), cache.getAll(Collections.singletonList("x"), keys -> {
+            throw new AssertionError("x should be cached");
+        }, 30, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void expiredEntryIsReloaded() throws InterruptedException {
+        cache.put("a", 1, 50, TimeUnit.MILLISECONDS);
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertNull(cache.get("a"));
+        assertEquals(Integer.valueOf(2), cache.get("a", key -> 2, 1, TimeUnit.MINUTES));
+    }
+
+    @Test
+    public void valuesAndRemove() {
+        cache.put("a", 1, 1, TimeUnit.MINUTES);
+        cache.put("b", 2, 1, TimeUnit.MINUTES);
+        assertTrue(cache.containsValue(2));
+        assertEquals(2, cache.values().size());
+        assertEquals(Integer.valueOf(1), cache.remove("a"));
+        assertFalse(cache.containsKey("a"));
+        assertEquals(Integer.valueOf(1), cache.compute("b", (key, old) -> old - 1, 1, TimeUnit.MINUTES));
+        assertEquals(Integer.valueOf(3), cache.merge("b", 2, Integer::sum, 1, TimeUnit.MINUTES));
+    }
+
+    private void assertTtl(String key, long seconds) {
+        long remaining = cache.getExpiresAfter(key, TimeUnit.MILLISECONDS).getAsLong();
+        assertTrue(key + " expires after " + remaining + "ms, expected about " + seconds + "s",
+                remaining <= TimeUnit.SECONDS.toMillis(seconds) && remaining > TimeUnit.SECONDS.toMillis(seconds) - 1000);
+    }
+}
@@ -0,0 +1,197 @@
+package com.dc.cache.cluster;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 在本机的多个端口上启动 {@link PartitionCluster}, 检查跨节点读写、并发未命中只计算一次以及节点重启之后的重新连接
+ *
+ * @author zy
+ */
+public class PartitionClusterTest {
+
+    private static final int NODES = 3;
+
+    private static final long RETRY_MILLIS = 1000;
+
+    private final List<PartitionPeer> peers = new ArrayList<>();
+
+    private final List<PartitionCluster> clusters = new ArrayList<>();
+
+    private final List<PartitionedCache<String, String>> caches = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        for (int i = 0; i < NODES; i++) {
+            peers.add(new PartitionPeer("127.0.0.1", freePort()));
+        }
+
+        for (PartitionPeer peer : peers) {
+            PartitionCluster cluster = new PartitionCluster(peer, peers, 200, RETRY_MILLIS);
+            cluster.start();
+            clusters.add(cluster);
+            caches.add(cluster.createCache("users", 1000));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        clusters.forEach(PartitionCluster::close);
+    }
+
+    /**
+     * 一个节点加载的数据，其他节点读取时不需要再次加载
+     */
+    @Test
+    public void crossNode() throws InterruptedException {
+        AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 100; i++) {
+            caches.get(i % NODES).get("key-" + i, key -> {
+                loads.incrementAndGet();
+                return "value-" + key;
+            }, 1, TimeUnit.MINUTES);
+        }
+
+        //其他节点的写入是异步的
+        TimeUnit.MILLISECONDS.sleep(300);
+        int firstLoads = loads.get();
+        for (int i = 0; i < 100; i++) {
+            String key = "key-" + i;
+            String value = caches.get((i + 1) % NODES).get(key, k -> {
+                loads.incrementAndGet();
+                return "reload";
+            }, 1, TimeUnit.MINUTES);
+            assertEquals("value-" + key, value);
+        }
+
+        assertEquals("Values were loaded again from other nodes", firstLoads, loads.get());
+    }
+
+    /**
+     * 所有节点同时读取同一个不存在的key, 每个节点最多加载一次
+     */
+    @Test
+    public void singleFlight() throws InterruptedException {
+        int threadsPerNode = 8;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(NODES * threadsPerNode);
+        for (PartitionedCache<String, String> cache : caches) {
+            for (int i = 0; i < threadsPerNode; i++) {
+                new Thread(() -> {
+                    try {
+                        start.await();
+                        cache.get("hot-key", key -> {
+                            loads.incrementAndGet();
+                            sleep(100);
+                            return "hot-value";
+                        }, 1, TimeUnit.MINUTES);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }, "partition-test-" + i).start();
+            }
+        }
+
+        start.countDown();
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertTrue("Concurrent misses were loaded " + loads.get() + " times", loads.get() <= NODES);
+    }
+
+    /**
+     * 节点关闭之后请求在本地计算，节点在相同的端口重启之后重新建立连接
+     */
+    @Test
+    public void reconnect() throws InterruptedException {
+        int last = NODES - 1;
+        clusters.get(last).close();
+        TimeUnit.MILLISECONDS.sleep(300);
+        for (int i = 0; i < 100; i++) {
+            assertNotNull(caches.get(0).get("key-" + i, key -> "fallback", 1, TimeUnit.MINUTES));
+        }
+
+        PartitionCluster restarted = new PartitionCluster(peers.get(last), peers, 200, RETRY_MILLIS);
+        restarted.start();
+        clusters.set(last, restarted);
+        caches.set(last, restarted.createCache("users", 1000));
+
+        //等待其他节点重新发送请求
+        TimeUnit.MILLISECONDS.sleep(RETRY_MILLIS + 200);
+        for (int i = 0; i < 100; i++) {
+            caches.get(0).put("restart-" + i, "value-" + i, 1, TimeUnit.MINUTES);
+        }
+
+        TimeUnit.MILLISECONDS.sleep(300);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("value-" + i, caches.get(last).getIfPresent("restart-" + i));
+        }
+    }
+
+    @Test
+    public void codecRoundTrip() {
+        EmbeddedChannel channel = new EmbeddedChannel(PartitionCodec.INSTANCE);
+        PartitionRequest request = new PartitionRequest(7, PartitionRequest.PUT, "users", new byte[]{1, 2}, null, 1000);
+        assertTrue(channel.writeOutbound(request));
+        ByteBuf encoded = channel.readOutbound();
+        assertTrue(channel.writeInbound(encoded));
+        PartitionRequest decoded = channel.readInbound();
+        assertEquals(7, decoded.getRequestId());
+        assertEquals(PartitionRequest.PUT, decoded.getType());
+        assertEquals("users", decoded.getCacheName());
+        assertArrayEquals(new byte[]{1, 2}, decoded.getKey());
+        assertNull(decoded.getValue());
+        assertEquals(1000, decoded.getTtlMillis());
+
+        assertTrue(channel.writeOutbound(new PartitionResponse(7, true, new byte[]{3}, null)));
+        assertTrue(channel.writeInbound((Object) channel.readOutbound()));
+        PartitionResponse response = channel.readInbound();
+        assertTrue(response.isFound());
+        assertArrayEquals(new byte[]{3}, response.getValue());
+        assertNull(response.getError());
+        channel.finish();
+    }
+
+    /**
+     * 只能解码固定的消息类型，不会根据网络中的数据加载类
+     */
+    @Test(expected = DecoderException.class)
+    public void rejectUnknownMessageType() {
+        EmbeddedChannel channel = new EmbeddedChannel(PartitionCodec.INSTANCE);
+        channel.writeInbound(Unpooled.wrappedBuffer(new byte[]{9, 0, 0, 0, 0}));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.dc.cache.invalidate;
+
+import com.dc.cache.caffeine.LocalCaffeineCache;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 通过 {@link LoopbackTransport} 在同一个JVM中模拟两个节点，检查失效消息的合并发送与接收
+ *
+ * @author zy
+ */
+public class InvalidationBusTest {
+
+    private final LoopbackTransport transport = new LoopbackTransport();
+
+    private LocalCaffeineCache<String, String> cache1;
+
+    private LocalCaffeineCache<String, String> cache2;
+
+    private InvalidationBus bus1;
+
+    private InvalidationBus bus2;
+
+    @Before
+    public void setUp() {
+        cache1 = newCache();
+        cache2 = newCache();
+        //批量大小为4, 不足时最多等待100ms
+        bus1 = new InvalidationBus(transport, 4, 100, TimeUnit.MILLISECONDS);
+        bus2 = new InvalidationBus(transport, 4, 100, TimeUnit.MILLISECONDS);
+        bus1.register("users", cache1);
+        bus2.register("users", cache2);
+        for (int i = 0; i < 10; i++) {
+            cache1.put("k" + i, "v1", 1, TimeUnit.HOURS);
+            cache2.put("k" + i, "v2", 1, TimeUnit.HOURS);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        bus1.close();
+        bus2.close();
+    }
+
+    @Test
+    public void invalidateOtherNodesOnly() throws InterruptedException {
+        cache1.put("k0", "new", 1, TimeUnit.HOURS);
+        assertTrue(bus1.invalidate("users", "k0"));
+
+        //不足批量大小时由定时任务发送
+        awaitTrue(() -> cache2.get("k0") == null);
+        assertEquals("new", cache1.get("k0"));
+        assertEquals("v2", cache2.get("k1"));
+    }
+
+    @Test
+    public void sendWhenBatchIsFull() throws InterruptedException {
+        InvalidationBus slowBus = new InvalidationBus(transport, 4, 1, TimeUnit.HOURS);
+        try {
+            for (int i = 0; i < 4; i++) {
+                slowBus.invalidate("users", "k" + i);
+            }
+
+            awaitTrue(() -> cache1.get("k3") == null && cache2.get("k3") == null);
+            assertTrue(cache1.get("k4") != null && cache2.get("k4") != null);
+        } finally {
+            slowBus.close();
+        }
+    }
+
+    @Test
+    public void ignoreUnregisteredCacheAndClosedBus() throws InterruptedException {
+        bus2.unregister("users");
+        bus1.invalidate("users", "k0");
+        bus1.flush();
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertEquals("v2", cache2.get("k0"));
+
+        bus2.register("users", cache2);
+        bus2.close();
+        bus1.invalidate("users", "k1");
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertEquals("v2", cache2.get("k1"));
+    }
+
+    private static LocalCaffeineCache<String, String> newCache() {
+        return new LocalCaffeineCache<>("users", 16, 1000, null, Runnable::run, Scheduler.systemScheduler(), 0, 0, null);
+    }
+
+    /**
+     * 失效事件通过 NotifyCenter 异步发布，等待条件成立
+     */
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Condition is not satisfied in 5s", System.currentTimeMillis() < deadline);
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.dc.cache.redission;
+
+import org.redisson.api.RBatch;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RMapCacheAsync;
+import org.redisson.api.RedissonClient;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于内存的 {@link RedissonClient} 替身，只实现 {@link MultiExpireKeys} 使用到的 {@link RMapCache} 与 {@link RBatch} 方法,
+ * 并记录每个方法的调用次数, 用于统计网络往返
+ *
+ * <p>
+ * 不处理过期时间，所有的map共享同一份数据
+ * </p>
+ *
+ * @author zy
+ */
+class InMemoryRedisson {
+
+    private final Map<String, Object> data = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+
+    /**
+     * 读取到数据之后、返回之前执行，用于模拟读取期间发生的并发写入
+     */
+    private volatile Runnable afterRead = () -> {
+    };
+
+    private final RedissonClient client = proxy(RedissonClient.class, (method, args) -> {
+        switch (method.getName()) {
+            case "getMapCache":
+                return proxy(RMapCache.class, this::invokeMap);
+            case "createBatch":
+                return createBatch();
+            default:
+                throw new UnsupportedOperationException(method.toString());
+        }
+    });
+
+    RedissonClient client() {
+        return client;
+    }
+
+    /**
+     * 方法被调用的次数
+     */
+    int calls(String methodName) {
+        AtomicInteger count = calls.get(methodName);
+        return count == null ? 0 : count.get();
+    }
+
+    Object raw(String key) {
+        return data.get(key);
+    }
+
+    void afterRead(Runnable afterRead) {
+        this.afterRead = afterRead;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object invokeMap(Method method, Object[] args) {
+        calls.computeIfAbsent(method.getName(), name -> new AtomicInteger()).incrementAndGet();
+        switch (method.getName()) {
+            case "put":
+                return data.put((String) args[0], args[1]);
+            case "putAll":
+                data.putAll((Map<String, Object>) args[0]);
+                return null;
+            case "getOrDefault": {
+                Object value = data.getOrDefault(args[0], args[1]);
+                afterRead.run();
+                return value;
+            }
+            case "getAll": {
+                Map<String, Object> result = new LinkedHashMap<>();
+                for (String key : (Set<String>) args[0]) {
+                    Object value = data.get(key);
+                    if (value != null) {
+                        result.put(key, value);
+                    }
+                }
+                afterRead.run();
+                return result;
+            }
+            case "fastRemove": {
+                long removed = 0;
+                for (Object key : (Object[]) args[0]) {
+                    if (data.remove(key) != null) {
+                        removed++;
+                    }
+                }
+                return removed;
+            }
+            case "readAllKeySet":
+                return new HashSet<>(data.keySet());
+            case "delete":
+                boolean existed = !data.isEmpty();
+                data.clear();
+                return existed;
+            default:
+                throw new UnsupportedOperationException(method.toString());
+        }
+    }
+
+    /**
+     * 批量操作在 execute 时一次性写入
+     */
+    private RBatch createBatch() {
+        List<Runnable> commands = new ArrayList<>();
+        RMapCacheAsync<?, ?> batchMap = proxy(RMapCacheAsync.class, (method, args) -> {
+            if (!"fastPutAsync".equals(method.getName())) {
+                throw new UnsupportedOperationException(method.toString());
+            }
+
+            commands.add(() -> data.put((String) args[0], args[1]));
+            return null;
+        });
+
+        return proxy(RBatch.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getMapCache":
+                    return batchMap;
+                case "execute":
+                    calls.computeIfAbsent("batch.execute", name -> new AtomicInteger()).incrementAndGet();
+                    commands.forEach(Runnable::run);
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return type.getSimpleName() + "@InMemoryRedisson";
+                }
+            }
+
+            return handler.invoke(method, args);
+        };
+
+        return (T) Proxy.newProxyInstance(InMemoryRedisson.class.getClassLoader(), new Class<?>[]{type}, invocationHandler);
+    }
+
+    private interface Handler {
+
+        Object invoke(Method method, Object[] args);
+    }
+}
@@ -0,0 +1,113 @@
+package com.dc.cache.redission;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.convert.TypeDescriptor;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 通过 {@link InMemoryRedisson} 检查 {@link MultiExpireKeys} 的批量读写以及本地缓存的失效
+ *
+ * @author zy
+ */
+public class MultiExpireKeysTest {
+
+    private static final TypeDescriptor STRING = TypeDescriptor.valueOf(String.class);
+
+    private InMemoryRedisson redis;
+
+    private MultiExpireKeys keys;
+
+    @Before
+    public void setUp() {
+        redis = new InMemoryRedisson();
+        keys = new MultiExpireKeys(redis.client(), "test", Duration.ofMinutes(1), 100);
+    }
+
+    @Test
+    public void batchPutAndGetUseOneRoundTrip() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (int i = 0; i < 50; i++) {
+            values.put("k" + i, i);
+        }
+
+        keys.putValues(values, Duration.ofMinutes(1));
+        assertEquals(1, redis.calls("putAll"));
+
+        Map<String, String> loaded = keys.getValues(Arrays.asList("k1", "missing", "k0", "k2"), STRING);
+        assertEquals(1, redis.calls("getAll"));
+        //按照请求的顺序返回, 并转换为目标类型
+        assertEquals(Arrays.asList("k1", "k0", "k2"), Arrays.asList(loaded.keySet().toArray()));
+        assertEquals("1", loaded.get("k1"));
+
+        //已经读取过的key从本地缓存返回
+        keys.getValues(Arrays.asList("k0", "k1", "k2"), STRING);
+        assertEquals(1, redis.calls("getAll"));
+    }
+
+    @Test
+    public void batchPutWithDifferentTtlUsesOneBatch() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("a", "1");
+        values.put("b", "2");
+        keys.putValues(values, key -> "a".equals(key) ? Duration.ofSeconds(1) : Duration.ofMinutes(1));
+
+        assertEquals(1, redis.calls("batch.execute"));
+        assertEquals("1", redis.raw("a"));
+        assertEquals("2", redis.raw("b"));
+    }
+
+    @Test
+    public void writeInvalidatesLocalFront() {
+        keys.putValue("k", "old", Duration.ofMinutes(1));
+        assertEquals("old", keys.getValue("k", STRING));
+        assertEquals("old", keys.getValue("k", STRING));
+        assertEquals(1, redis.calls("getOrDefault"));
+
+        keys.putValue("k", "new", Duration.ofMinutes(1));
+        assertEquals("new", keys.getValue("k", STRING));
+
+        keys.delete("k");
+        assertNull(keys.getValue("k", STRING));
+    }
+
+    /**
+     * 读取redis期间当前节点写入了新的数据，读取到的旧数据不能写入本地缓存
+     */
+    @Test
+    public void readRacingWriteDoesNotFillStaleValue() {
+        keys.putValue("k", "old", Duration.ofMinutes(1));
+        redis.afterRead(() -> {
+            redis.afterRead(() -> {
+            });
+            keys.putValue("k", "new", Duration.ofMinutes(1));
+        });
+
+        //读取开始于写入之前，可以返回旧数据，但是不能写入本地缓存
+        assertEquals("old", keys.getValue("k", STRING));
+        assertEquals("new", keys.getValue("k", STRING));
+    }
+
+    @Test
+    public void bulkReadRacingWriteDoesNotFillStaleValue() {
+        keys.putValue("a", "old", Duration.ofMinutes(1));
+        keys.putValue("b", "old", Duration.ofMinutes(1));
+        redis.afterRead(() -> {
+            redis.afterRead(() -> {
+            });
+            //redis返回旧数据之后、写入本地缓存之前发生的删除
+            keys.deleteValues(Arrays.asList("a", "b"));
+        });
+
+        assertEquals(2, keys.getValues(Arrays.asList("a", "b"), STRING).size());
+        assertNull(keys.getValue("a", STRING));
+        assertNull(keys.getValue("b", STRING));
+    }
+}
@@ -2,9 +2,12 @@ package com.dc.tools.task;
 
 import cn.hutool.core.lang.TypeReference;
 import cn.hutool.core.map.MapUtil;
+import com.dc.tools.task.limit.TaskLimiter;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -23,6 +26,27 @@ public class TaskContext {
      */
     private final Map<String, Object> context = new ConcurrentHashMap<>();
 
+    /**
+     * 多processor场景下已经执行成功的processor, 按照processor的槽位记录，重试时会跳过已经执行成功的processor.
+     * 同一个任务的多次执行通过worker队列串行化，因此不需要额外的同步
+     * <p>
+     * 一个任务会依次经过任务自身的pipeline和默认的pipeline, 各个pipeline的槽位都从0开始, 因此按照pipeline分别记录;
+     * 第一个执行的pipeline使用 {@link #completedProcessors}, 其余的pipeline记录在 {@link #otherPipelines} 中
+     */
+    private int completedPipeline;
+
+    private long completedProcessors;
+
+    /**
+     * 槽位 >= 64 时使用
+     */
+    private BitSet overflowProcessors;
+
+    /**
+     * pipeline id -> 已经执行成功的processor槽位
+     */
+    private Map<Integer, BitSet> otherPipelines;
+
     /**
      * task id attribute
      */
@@ -71,6 +95,11 @@ public class TaskContext {
     public static final String TASK_CALLBACK_PROPERTY = TaskContext.class.getName() + "_internal_task_callbacks";
 
 
+    /**
+     * 任务已经获取到的限流器许可，任务执行完成后释放. {@link TaskLimiter}
+     */
+    public static final String TASK_LIMITER = TaskContext.class.getName() + "_internal_task_limiter";
+
     /**
      * 当任务执行完成后需要对TaskContext内部缓存的所有的属性进行清除, 默认为true
      */
@@ -141,11 +170,13 @@ public class TaskContext {
     }
 
     public <V> V getOrDefault(String key, V defaultValue, Class<V> valueClass) {
-        return MapUtil.get(context, key, valueClass);
+        V value = MapUtil.get(context, key, valueClass);
+        return value != null ? value : defaultValue;
     }
 
     public <V> V getOrDefault(String key, V defaultValue, TypeReference<V> valueClass) {
-        return MapUtil.get(context, key, valueClass);
+        V value = MapUtil.get(context, key, valueClass);
+        return value != null ? value : defaultValue;
     }
 
     public Long taskId() {
@@ -175,6 +206,16 @@ public class TaskContext {
     }
 
 
+    /**
+     * 释放任务已经获取的限流器许可
+     */
+    public void releaseLimiter() {
+        TaskLimiter taskLimiter = (TaskLimiter) context.remove(TASK_LIMITER);
+        if (taskLimiter != null) {
+            taskLimiter.release();
+        }
+    }
+
     public List<TaskCallback> taskCallbacks() {
         return getOrDefault(TASK_CALLBACK_PROPERTY, Collections.emptyList(), TASK_CALLBACKS);
     }
@@ -208,10 +249,72 @@ public class TaskContext {
     }
 
 
+    /**
+     * 判断对应槽位的processor是否已经执行成功
+     *
+     * @param pipelineId processor 所属pipeline的id
+     * @param slot       processor 的槽位
+     */
+    public boolean isProcessorCompleted(int pipelineId, int slot) {
+        if (pipelineId != completedPipeline) {
+            BitSet completed = otherPipelines == null ? null : otherPipelines.get(pipelineId);
+            return completed != null && completed.get(slot);
+        }
+
+        if (slot < Long.SIZE) {
+            return (completedProcessors & 1L << slot) != 0;
+        }
+
+        return overflowProcessors != null && overflowProcessors.get(slot - Long.SIZE);
+    }
+
+    /**
+     * 标记对应槽位的processor已经执行成功
+     *
+     * @param pipelineId processor 所属pipeline的id
+     * @param slot       processor 的槽位
+     */
+    public void markProcessorCompleted(int pipelineId, int slot) {
+        if (completedPipeline == 0) {
+            completedPipeline = pipelineId;
+        }
+
+        if (pipelineId != completedPipeline) {
+            if (otherPipelines == null) {
+                otherPipelines = new HashMap<>(4);
+            }
+
+            otherPipelines.computeIfAbsent(pipelineId, id -> new BitSet()).set(slot);
+            return;
+        }
+
+        if (slot < Long.SIZE) {
+            completedProcessors |= 1L << slot;
+            return;
+        }
+
+        if (overflowProcessors == null) {
+            overflowProcessors = new BitSet();
+        }
+
+        overflowProcessors.set(slot - Long.SIZE);
+    }
+
+    /**
+     * 清除processor的执行状态，在任务执行完成后调用
+     */
+    public void clearCompletedProcessors() {
+        completedPipeline = 0;
+        completedProcessors = 0;
+        overflowProcessors = null;
+        otherPipelines = null;
+    }
+
     /**
      * 清除当前上下文中的所有信息
      */
     public void removeAll() {
         context.clear();
+        clearCompletedProcessors();
     }
 }
@@ -5,21 +5,27 @@ import com.dc.tools.common.IdGenerator;
 import com.dc.tools.common.RandomIdGenerator;
 import com.dc.tools.common.annotaion.NonNull;
 import com.dc.tools.common.utils.StringUtils;
+import com.dc.tools.common.utils.SystemClock;
 import com.dc.tools.task.exception.TaskException;
+import com.dc.tools.task.limit.TaskLimiter;
 import com.dc.tools.task.processor.DefaultMultiProcessor;
 import com.dc.tools.task.processor.MultiTaskProcessor;
 import com.dc.tools.task.worker.DelayTaskWorker;
+import com.dc.tools.task.worker.ExecutorTaskWorker;
 import com.dc.tools.task.worker.NormalTaskWorker;
 import com.dc.tools.task.worker.RunnableTaskWrapper;
 import com.dc.tools.task.worker.SlowTaskWorker;
+import com.dc.tools.task.worker.WorkerExecutors;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLong;
@@ -29,12 +35,20 @@ import java.util.concurrent.atomic.AtomicLong;
  *
  * @author zy
  */
+@Slf4j
 public class TaskDispatchCenter implements TaskManager, Executor {
 
     private static final TaskIdGenerator ID_GENERATOR = new DefaultTaskIdGenerator();
 
     private static final TaskRouter TASK_ROUTER = new DefaultTaskRouter();
 
+    private static final TaskRejectedHandler REJECTED_HANDLER = new LoggingRejectedHandler();
+
+    /**
+     * 调用 {@link #stop()} 时默认等待积压任务处理完成的时间
+     */
+    private static final long DEFAULT_DRAIN_TIMEOUT = 3000;
+
     /**
      * 任务处理器
      */
@@ -46,6 +60,11 @@ public class TaskDispatchCenter implements TaskManager, Executor {
     private final Map<String, TaskProcessorWrapper> processorMap = new ConcurrentHashMap<>();
 
 
+    /**
+     * 任务的限流器，在任务分发时进行限流, 被限流的任务会投递到延迟worker中
+     */
+    private final Map<String, TaskLimiter> limiters = new ConcurrentHashMap<>();
+
     /**
      * 当任务不为 {@link ExecutionTask} 类型 以及没有对应的  {@link TaskProcessor} 处理器时则采用默认处理器进行处理
      */
@@ -63,6 +82,21 @@ public class TaskDispatchCenter implements TaskManager, Executor {
     private TaskWorker<Task>[] slowTaskWorkers;
 
 
+    /**
+     * 阻塞任务处理器, 任务交由 {@link #blockingExecutor} 执行
+     */
+    private TaskWorker<Task>[] blockingWorkers;
+
+    /**
+     * 用于执行阻塞任务的线程池，所有的阻塞任务处理器共享
+     */
+    private final Executor blockingExecutor;
+
+    /**
+     * {@link #blockingExecutor} 是否由当前任务分发器创建，如果是则在停止时关闭
+     */
+    private final boolean ownsBlockingExecutor;
+
     /**
      * 用于处理及时的任务
      */
@@ -79,6 +113,16 @@ public class TaskDispatchCenter implements TaskManager, Executor {
     @Setter
     private TaskIdGenerator idGenerator;
 
+    /**
+     * 任务被拒绝时的处理器
+     */
+    private TaskRejectedHandler rejectedHandler;
+
+    /**
+     * 停止过程中未能处理完成的任务
+     */
+    private final List<UndrainedTask> undrainedTasks = new ArrayList<>();
+
     /**
      * 管理器名称
      */
@@ -117,6 +161,11 @@ public class TaskDispatchCenter implements TaskManager, Executor {
 
     private static final int RUNNING = 1 << 1;
 
+    /**
+     * 停止过程中，不再接收外部任务，但内部流转的任务(重试、到期的延迟任务)仍然会被处理
+     */
+    private static final int DRAINING = 1 << 2;
+
     private static final AtomicIntegerFieldUpdater<TaskDispatchCenter> UPDATER =
             AtomicIntegerFieldUpdater.newUpdater(TaskDispatchCenter.class, "state");
 
@@ -127,9 +176,24 @@ public class TaskDispatchCenter implements TaskManager, Executor {
      * @param timeout       当worker的空闲时间 > timeout时 尝试关闭当前worker线程
      */
     public TaskDispatchCenter(String managerName, int coreSize, int maxWorkerSize, long timeout, TimeUnit timeUnit) {
+        this(managerName, coreSize, maxWorkerSize, timeout, timeUnit, null);
+    }
+
+    /**
+     * @param managerName      任务管理器名称
+     * @param coreSize         核心worker数量
+     * @param maxWorkerSize    最大worker数量
+     * @param timeout          当worker的空闲时间 > timeout时 尝试关闭当前worker线程
+     * @param blockingExecutor 用于执行 {@link TaskType#BLOCKING} 类型任务的线程池, 所有的阻塞任务处理器共享, 为null时使用
+     *                         {@link com.dc.tools.task.worker.WorkerExecutors#newBlockingExecutor(String)}
+     */
+    public TaskDispatchCenter(String managerName, int coreSize, int maxWorkerSize, long timeout, TimeUnit timeUnit, Executor blockingExecutor) {
         this.managerName = managerName;
+        this.ownsBlockingExecutor = blockingExecutor == null;
+        this.blockingExecutor = blockingExecutor == null ? WorkerExecutors.newBlockingExecutor(managerName + "-blocking") : blockingExecutor;
         this.taskRouter = TASK_ROUTER;
         this.idGenerator = ID_GENERATOR;
+        this.rejectedHandler = REJECTED_HANDLER;
         this.coreSize = coreSize;
         this.maxWorkerSize = maxWorkerSize;
         this.workers = new CopyOnWriteArrayList<>();
@@ -137,6 +201,7 @@ public class TaskDispatchCenter implements TaskManager, Executor {
         this.timeout = timeUnit.convert(timeout == -1 ? Long.MAX_VALUE : timeout, TimeUnit.MILLISECONDS);
         this.metricRegistry = new MetricRegistry();
         initAllWorkers();
+        UPDATER.set(this, RUNNING << BASE_SHIFT | state);
     }
 
     /**
@@ -152,13 +217,19 @@ public class TaskDispatchCenter implements TaskManager, Executor {
             UPDATER.set(this, state + 2);
         }
 
-        slowTaskWorkers = new TaskWorker[processors >>> 1];
+        slowTaskWorkers = new TaskWorker[Math.max(1, processors >>> 1)];
         for (int i = 0; i < slowTaskWorkers.length; i++) {
             slowTaskWorkers[i] = new SlowTaskWorker(this, metricRegistry);
             slowTaskWorkers[i].start();
         }
 
-        delayWorkers = new TaskWorker[processors >>> 1];
+        blockingWorkers = new TaskWorker[Math.max(1, processors >>> 1)];
+        for (int i = 0; i < blockingWorkers.length; i++) {
+            blockingWorkers[i] = new ExecutorTaskWorker(this, metricRegistry, blockingExecutor);
+            blockingWorkers[i].start();
+        }
+
+        delayWorkers = new TaskWorker[Math.max(1, processors >>> 1)];
         for (int i = 0; i < delayWorkers.length; i++) {
             delayWorkers[i] = new DelayTaskWorker(this);
             delayWorkers[i].start();
@@ -174,7 +245,7 @@ public class TaskDispatchCenter implements TaskManager, Executor {
 
             if ((s & 1) == 0 && UPDATER.compareAndSet(this, s, s | 1)) {
                 initAllWorkers();
-                UPDATER.set(this, (s >> 1 << 1));
+                UPDATER.set(this, RUNNING << BASE_SHIFT | (state & MAGIC) >> 1 << 1);
                 break;
             }
         }
@@ -202,7 +273,9 @@ public class TaskDispatchCenter implements TaskManager, Executor {
             throw new TaskException("The task for processor is already exited, please use getProcessor method");
         }
 
-        if (!(processor instanceof MultiTaskProcessor)) {
+        if (processor instanceof MultiTaskProcessor) {
+            taskProcessor = (MultiTaskProcessor<Task>) processor;
+        } else {
             taskProcessor = new DefaultMultiProcessor();
             taskProcessor.addLast((TaskProcessor<Task>) processor);
         }
@@ -246,6 +319,25 @@ public class TaskDispatchCenter implements TaskManager, Executor {
         multiProcessors.remove(taskName);
     }
 
+    /**
+     * 添加任务的限流器，限制任务每秒执行的次数以及最大的并发数, 超过限制的任务不会阻塞worker线程，而是投递到延迟worker中稍后执行
+     *
+     * @param taskName 任务名称
+     * @param limiter  限流器
+     */
+    public void addLimiter(String taskName, TaskLimiter limiter) {
+        limiters.put(taskName, limiter);
+    }
+
+    /**
+     * 删除任务的限流器
+     *
+     * @param taskName 任务名称
+     */
+    public void removeLimiter(String taskName) {
+        limiters.remove(taskName);
+    }
+
     @Override
     public MultiTaskProcessor<Task> getDefaultProcessor() {
         return defaultProcessor;
@@ -286,7 +378,15 @@ public class TaskDispatchCenter implements TaskManager, Executor {
 
     @Override
     public TaskWorker<?>[] taskWorkers(TaskType taskType) {
-        return taskType.isDelay() ? delayWorkers : (taskType.isSlow() ? slowTaskWorkers : workers.toArray(new TaskWorker[0]));
+        if (taskType.isDelay()) {
+            return delayWorkers;
+        }
+
+        if (taskType.isSlow()) {
+            return slowTaskWorkers;
+        }
+
+        return taskType.isBlocking() ? blockingWorkers : workers.toArray(new TaskWorker[0]);
     }
 
     @Override
@@ -302,22 +402,27 @@ public class TaskDispatchCenter implements TaskManager, Executor {
         return (state >>> BASE_SHIFT & SHUTDOWN) != 0;
     }
 
+    public boolean isDraining() {
+        return (state >>> BASE_SHIFT & DRAINING) != 0;
+    }
+
 
     @Override
     public void addTask(Task task, TaskContext taskContext) {
 
-        //丢弃任务
-        if (!isRunning()) {
-            //TODO: 处理需要丢弃的任务
-            return;
-        }
-
         if (taskContext == null) {
             taskContext = new TaskContext();
         }
 
         //如果为内部任务可能是重试的任务或者延迟的任务那么不会 生成新的任务id
         String internal = taskContext.getString(TaskContext.INTERNAL);
+
+        //停止过程中只接收内部流转的任务，否则拒绝任务
+        if (!isRunning() && !(isDraining() && !StringUtils.isEmpty(internal))) {
+            rejectTask(task, taskContext);
+            return;
+        }
+
         if (StringUtils.isEmpty(internal)) {
             //存放任务计算出来的 task id
             taskContext.put(TaskContext.TASK_ID, idGenerator.nextId());
@@ -339,11 +444,43 @@ public class TaskDispatchCenter implements TaskManager, Executor {
 //            return;
 //        }
 
+        //非延迟的任务在分发前进行限流，超过限制的任务投递到延迟worker中
+        if (!taskType.isDelay() && !limiters.isEmpty() && !tryAcquireLimiter(task, taskContext, taskType)) {
+            return;
+        }
+
         //计算执行任务执行的worker节点
         TaskWorker<? super Task> taskWorker = route(task, taskType);
         taskWorker.execute(task, taskContext);
     }
 
+    /**
+     * 获取任务的限流许可，如果被限流则将任务投递到延迟worker中
+     *
+     * @return 如果获取到许可或者任务没有限流器则返回true
+     */
+    private boolean tryAcquireLimiter(Task task, TaskContext taskContext, TaskType taskType) {
+        TaskLimiter limiter = limiters.get(task.taskName());
+
+        //已经持有许可的任务(例如从关闭的worker中从新路由的任务)不需要再次获取
+        if (limiter == null || taskContext.contains(TaskContext.TASK_LIMITER)) {
+            return true;
+        }
+
+        long delayTime = limiter.tryAcquire();
+        if (delayTime == 0) {
+            taskContext.put(TaskContext.TASK_LIMITER, limiter);
+            return true;
+        }
+
+        //标注为内部流转的节点不需要生成新的taskId
+        taskContext.put(TaskContext.INTERNAL, TaskContext.INTERNAL);
+        taskContext.setTaskType(taskType.interestType() | TaskType.DELAYED_TYPE);
+        TaskWorker<? super Task> delayWorker = route(task, TaskType.DELAYED);
+        delayWorker.execute(new DelayedTaskWrapper(task, delayTime), taskContext);
+        return false;
+    }
+
     private boolean tryAddWorker() {
 
 
@@ -388,7 +525,7 @@ public class TaskDispatchCenter implements TaskManager, Executor {
         for (; ; ) {
             int s = state;
 
-            if ((s & MAGIC) >> 1 <= coreSize) {
+            if (!isRunning() || (s & MAGIC) >> 1 <= coreSize) {
                 break;
             }
 
@@ -449,6 +586,10 @@ public class TaskDispatchCenter implements TaskManager, Executor {
         this.taskRouter = taskRouter;
     }
 
+    public void setRejectedHandler(TaskRejectedHandler rejectedHandler) {
+        this.rejectedHandler = rejectedHandler;
+    }
+
     @Override
     public Collection<TaskProcessor<?>> getAllProcessors() {
         return Collections.unmodifiableCollection(multiProcessors.values());
@@ -460,48 +601,107 @@ public class TaskDispatchCenter implements TaskManager, Executor {
         return idGenerator;
     }
 
+    @Override
+    public void rejectTask(Task task, TaskContext taskContext) {
+        //worker被回收时余下的任务从新进行路由
+        if (isRunning()) {
+            addTask(task, taskContext);
+            return;
+        }
+
+        //任务不会再被执行, 归还已经获取的限流许可
+        if (taskContext != null) {
+            taskContext.releaseLimiter();
+        }
+
+        synchronized (undrainedTasks) {
+            if (isDraining()) {
+                undrainedTasks.add(new UndrainedTask(task, taskContext));
+                return;
+            }
+        }
+
+        rejectedHandler.rejected(task, taskContext);
+    }
+
 
     /**
-     * 停止当前的任务分发器
+     * 停止当前的任务分发器, 未能在 {@link #DEFAULT_DRAIN_TIMEOUT} 内处理完成的任务交由 {@link TaskRejectedHandler} 处理
      */
     public void stop() {
+        List<UndrainedTask> undrained = stop(DEFAULT_DRAIN_TIMEOUT, TimeUnit.MILLISECONDS);
+        for (UndrainedTask undrainedTask : undrained) {
+            rejectedHandler.rejected(undrainedTask.getTask(), undrainedTask.getTaskContext());
+        }
+    }
+
+    /**
+     * 停止当前的任务分发器:
+     * <ol>
+     *     <li>不再接收外部添加的任务</li>
+     *     <li>下发所有已经到期的延迟任务，未到期的延迟任务不再等待</li>
+     *     <li>worker线程在截止时间之前继续处理已经接收的任务（包括重试的任务）</li>
+     * </ol>
+     *
+     * @param timeout  等待积压任务处理完成的时间
+     * @param timeUnit time unit
+     * @return 截止时间之前未能处理完成的任务及其上下文, 未到期的延迟任务会以 {@link DelayedTaskWrapper} 的形式返回剩余的延迟时间
+     */
+    public List<UndrainedTask> stop(long timeout, TimeUnit timeUnit) {
         for (; ; ) {
             int s = state;
             if (isShutdown()) {
-                break;
+                return Collections.emptyList();
             }
 
             if ((s & 1) == 0 && UPDATER.compareAndSet(this, s, s | 1)) {
-                s = SHUTDOWN << BASE_SHIFT | s & MAGIC;
-                UPDATER.set(this, s);
-                stopAllWorkers();
-
-                //释放当前的自旋锁
-                UPDATER.set(this, s >> 1 << 1);
+                //标记为停止中的状态并释放当前的自旋锁，避免在等待任务处理时阻塞其他的线程
+                UPDATER.set(this, (SHUTDOWN | DRAINING) << BASE_SHIFT | s & MAGIC);
                 break;
             }
+        }
 
+        long deadline = SystemClock.now() + timeUnit.toMillis(timeout);
+        drainAllWorkers(deadline);
 
+        List<UndrainedTask> undrained;
+        synchronized (undrainedTasks) {
+            UPDATER.set(this, SHUTDOWN << BASE_SHIFT);
+            undrained = new ArrayList<>(undrainedTasks);
+            undrainedTasks.clear();
         }
 
+        if (!undrained.isEmpty()) {
+            log.warn("Task manager {} stopped with {} undrained tasks", managerName, undrained.size());
+        }
+
+        return undrained;
     }
 
-    private void stopAllWorkers() {
-        //关闭所有的worker线程
-        Iterator<TaskWorker<Task>> iterator = workers.iterator();
-        while (iterator.hasNext()) {
-            TaskWorker<Task> taskWorker = iterator.next();
-            taskWorker.shutdown();
-            iterator.remove();
+    private void drainAllWorkers(long deadline) {
+        //优先下发已经到期的延迟任务，保证这部分任务可以被正常的worker处理
+        for (TaskWorker<DelayTask> delayWorker : delayWorkers) {
+            delayWorker.drain(deadline);
         }
 
-        for (TaskWorker<DelayTask> delayWorker : delayWorkers) {
-            delayWorker.shutdown();
+        for (TaskWorker<Task> taskWorker : workers) {
+            taskWorker.drain(deadline);
         }
 
         for (TaskWorker<Task> slowTaskWorker : slowTaskWorkers) {
-            slowTaskWorker.shutdown();
+            slowTaskWorker.drain(deadline);
+        }
+
+        for (TaskWorker<Task> blockingWorker : blockingWorkers) {
+            blockingWorker.drain(deadline);
         }
+
+        //已经提交的任务在关闭之后仍然会执行完成
+        if (ownsBlockingExecutor && blockingExecutor instanceof ExecutorService) {
+            ((ExecutorService) blockingExecutor).shutdown();
+        }
+
+        workers.clear();
     }
 
 
@@ -525,6 +725,15 @@ public class TaskDispatchCenter implements TaskManager, Executor {
     }
 
 
+    static class LoggingRejectedHandler implements TaskRejectedHandler {
+
+        @Override
+        public void rejected(Task task, TaskContext taskContext) {
+            log.warn("Task {} is rejected because the task manager is stopped", task.taskName());
+        }
+    }
+
+
     static class DefaultTaskIdGenerator implements TaskIdGenerator {
 
         private final IdGenerator idGenerator = new RandomIdGenerator();
@@ -544,6 +753,8 @@ public class TaskDispatchCenter implements TaskManager, Executor {
 
         private final AtomicLong delayIndex = new AtomicLong();
 
+        private final AtomicLong blockingIndex = new AtomicLong();
+
 
         @Override
         @SuppressWarnings("unchecked")
@@ -554,6 +765,8 @@ public class TaskDispatchCenter implements TaskManager, Executor {
                 index = delayIndex;
             } else if (taskType.isSlow())
                 index = slowIndex;
+            else if (taskType.isBlocking())
+                index = blockingIndex;
             else
                 index = normalIndex;
 
@@ -37,5 +37,15 @@ public interface TaskManager extends TaskExecution, TaskProcessorManager {
     TaskIdGenerator idGenerator();
 
 
+    /**
+     * 当worker无法继续处理任务时（worker已经关闭或者停止时仍有积压的任务），将任务交还给任务管理器,
+     * 内部方法不建议调用
+     *
+     * @param task        任务
+     * @param taskContext 任务的上下文信息
+     */
+    void rejectTask(Task task, TaskContext taskContext);
+
+
 
 }
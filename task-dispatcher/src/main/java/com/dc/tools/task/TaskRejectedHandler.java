@@ -0,0 +1,18 @@
+package com.dc.tools.task;
+
+/**
+ * 当任务无法被处理时（任务中心已经停止或者在停止时未能处理完成）进行回调
+ *
+ * @author zy
+ */
+public interface TaskRejectedHandler {
+
+    /**
+     * 任务被拒绝时回调
+     *
+     * @param task        被拒绝的任务
+     * @param taskContext 任务的上下文信息
+     */
+    void rejected(Task task, TaskContext taskContext);
+
+}
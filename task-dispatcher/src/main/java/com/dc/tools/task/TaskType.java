@@ -30,6 +30,14 @@ public class TaskType {
     public static final TaskType DELAYED = new TaskType(DELAYED_TYPE);
 
 
+    /**
+     * 阻塞的任务，例如存在IO等待的任务，会交由 {@link java.util.concurrent.Executor} 执行而不会占用worker线程
+     */
+    public static final int BLOCKING_TYPE = 1 << 2;
+
+    public static final TaskType BLOCKING = new TaskType(BLOCKING_TYPE);
+
+
     private final int type;
 
 
@@ -39,13 +47,17 @@ public class TaskType {
 
 
     public boolean isNormal() {
-        return (type & SLOW_TYPE) == 0;
+        return (type & (SLOW_TYPE | BLOCKING_TYPE)) == 0;
     }
 
     public boolean isSlow() {
         return (type & SLOW_TYPE) != 0;
     }
 
+    public boolean isBlocking() {
+        return (type & BLOCKING_TYPE) != 0;
+    }
+
     public boolean isDelay() {
         return (type & DELAYED_TYPE) != 0;
     }
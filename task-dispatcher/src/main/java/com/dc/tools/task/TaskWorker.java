@@ -36,6 +36,15 @@ public interface TaskWorker <T extends Task>{
      */
     void shutdown();
 
+    /**
+     * 停止接收新的任务，并在 {@code deadline} 之前处理完已经接收的任务，
+     * 截止时间后仍未处理的任务会通过 {@link TaskManager#rejectTask(Task, TaskContext)} 交还给任务管理器
+     *
+     * @param deadline 截止时间, 毫秒时间戳
+     * @return 如果worker线程在截止时间之前退出则返回true
+     */
+    boolean drain(long deadline);
+
     /**
      * 停止worker线程
      */
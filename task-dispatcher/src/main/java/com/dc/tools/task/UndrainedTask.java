@@ -0,0 +1,20 @@
+package com.dc.tools.task;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 停止任务分发器时未能处理完成的任务及其上下文
+ *
+ * @author zy
+ * @see TaskDispatchCenter#stop(long, java.util.concurrent.TimeUnit)
+ */
+@Getter
+@RequiredArgsConstructor
+public class UndrainedTask {
+
+    private final Task task;
+
+    private final TaskContext taskContext;
+
+}
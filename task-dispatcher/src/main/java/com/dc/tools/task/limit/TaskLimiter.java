@@ -0,0 +1,126 @@
+package com.dc.tools.task.limit;
+
+import com.dc.tools.common.utils.Assert;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个任务名称的限流器，同时支持速率限制以及并发数限制, 所有的操作均不会阻塞线程.
+ *
+ * <p>
+ * 速率限制采用令牌桶的等价实现(GCRA)：只记录下一个令牌可用的理论时间，通过一次CAS完成令牌的获取，
+ * 当没有可用的令牌时返回需要等待的时间，由调用方将任务投递到延迟队列中
+ * </p>
+ *
+ * @author zy
+ */
+public class TaskLimiter {
+
+    /**
+     * 并发数被限制时，任务重新投递的延迟时间
+     */
+    private static final long CONCURRENCY_RETRY_DELAY = 10;
+
+    /**
+     * 两个令牌之间的间隔时间, 纳秒. 为0时表示不限制速率
+     */
+    private final long interval;
+
+    /**
+     * 允许突发的时间范围, 纳秒
+     */
+    private final long burstTolerance;
+
+    /**
+     * 最大并发数，<= 0 时表示不限制并发数
+     */
+    private final int maxConcurrency;
+
+    /**
+     * 下一个令牌可用的理论时间
+     */
+    private final AtomicLong theoreticalArrivalTime = new AtomicLong(System.nanoTime());
+
+    /**
+     * 当前正在执行的任务数量
+     */
+    private final AtomicInteger running = new AtomicInteger();
+
+    /**
+     * @param permitsPerSecond 每秒允许执行的任务数量, <= 0 时表示不限制速率
+     * @param maxConcurrency   最大并发数, <= 0 时表示不限制并发数
+     */
+    public TaskLimiter(double permitsPerSecond, int maxConcurrency) {
+        this(permitsPerSecond, (int) Math.max(1, permitsPerSecond), maxConcurrency);
+    }
+
+    /**
+     * @param permitsPerSecond 每秒允许执行的任务数量, <= 0 时表示不限制速率
+     * @param burst            令牌桶的容量，既允许突发的任务数量
+     * @param maxConcurrency   最大并发数, <= 0 时表示不限制并发数
+     */
+    public TaskLimiter(double permitsPerSecond, int burst, int maxConcurrency) {
+        Assert.isTrue(burst > 0, "burst must be greater than 0");
+        this.interval = permitsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond) : 0;
+        this.burstTolerance = interval * (burst - 1);
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * 尝试获取执行许可, 获取成功后需要在任务执行完成后调用 {@link #release()}
+     *
+     * @return 0 表示获取成功，否则返回建议的延迟时间(毫秒)
+     */
+    public long tryAcquire() {
+        if (maxConcurrency > 0 && running.incrementAndGet() > maxConcurrency) {
+            running.decrementAndGet();
+            return CONCURRENCY_RETRY_DELAY;
+        }
+
+        long waitTime = tryAcquireToken();
+        if (waitTime > 0 && maxConcurrency > 0) {
+            running.decrementAndGet();
+        }
+
+        return waitTime;
+    }
+
+    private long tryAcquireToken() {
+        if (interval == 0) {
+            return 0;
+        }
+
+        for (; ; ) {
+            long now = System.nanoTime();
+            long tat = theoreticalArrivalTime.get();
+            long newTat = Math.max(tat, now) + interval;
+            long waitNanos = newTat - now - burstTolerance - interval;
+            if (waitNanos > 0) {
+                //向上取整，避免任务被提前唤醒后再次被限流
+                return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1));
+            }
+
+            if (theoreticalArrivalTime.compareAndSet(tat, newTat)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 任务执行完成后释放并发许可
+     */
+    public void release() {
+        if (maxConcurrency > 0) {
+            running.decrementAndGet();
+        }
+    }
+
+    /**
+     * 当前正在执行的任务数量, 只有在限制并发数时才会统计
+     */
+    public int running() {
+        return running.get();
+    }
+}
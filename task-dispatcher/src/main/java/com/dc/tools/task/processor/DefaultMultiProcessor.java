@@ -7,9 +7,12 @@ import com.dc.tools.task.TaskContext;
 import com.dc.tools.task.TaskProcessor;
 import lombok.Getter;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.concurrent.ConcurrentLinkedDeque;
-import java.util.stream.Collectors;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 /**
  * <p>
@@ -17,22 +20,51 @@ import java.util.stream.Collectors;
  * 已经执行成功的processor不需要被进行处理了，但是如果最终还是处理失败，那么我们希望的可能是全局的回滚操作，或者不做任何操作
  * </p>
  *
+ * <p>
+ * 所有的processor 在添加或者删除时会被重新构建为不可变的数组，执行任务时直接遍历该数组；
+ * 每个processor在添加时会分配一个固定的槽位，执行成功的processor通过pipeline id和槽位记录在 {@link TaskContext} 的位图中
+ * </p>
+ *
  * @author zy
  */
 public class DefaultMultiProcessor implements MultiTaskProcessor<Task> {
 
-    private final ConcurrentLinkedDeque<NamedTaskProcessor> processors = new ConcurrentLinkedDeque<>();
+    private static final NamedTaskProcessor[] EMPTY = new NamedTaskProcessor[0];
+
+    private static final AtomicInteger PIPELINE_ID = new AtomicInteger();
+
+    /**
+     * 当前pipeline的id, 不同pipeline的槽位都从0开始, 通过id区分各自的执行状态
+     */
+    private final int pipelineId = PIPELINE_ID.incrementAndGet();
+
+    /**
+     * 不可变的processor数组，在添加或者删除processor时重新构建
+     */
+    private volatile NamedTaskProcessor[] processors = EMPTY;
+
+    /**
+     * 下一个processor的槽位，槽位不会被复用，保证在重试过程中processor的执行状态不会错位
+     */
+    private int nextSlot;
 
 
     @Override
-    public MultiTaskProcessor<Task> addLast(TaskProcessor<Task> processor) {
-        processors.addLast(new NamedTaskProcessor(processor));
+    public synchronized MultiTaskProcessor<Task> addLast(TaskProcessor<Task> processor) {
+        NamedTaskProcessor[] current = this.processors;
+        NamedTaskProcessor[] newProcessors = Arrays.copyOf(current, current.length + 1);
+        newProcessors[current.length] = new NamedTaskProcessor(processor, nextSlot++);
+        this.processors = newProcessors;
         return this;
     }
 
     @Override
-    public MultiTaskProcessor<Task> addFirst(TaskProcessor<Task> processor) {
-        processors.addFirst(new NamedTaskProcessor(processor));
+    public synchronized MultiTaskProcessor<Task> addFirst(TaskProcessor<Task> processor) {
+        NamedTaskProcessor[] current = this.processors;
+        NamedTaskProcessor[] newProcessors = new NamedTaskProcessor[current.length + 1];
+        newProcessors[0] = new NamedTaskProcessor(processor, nextSlot++);
+        System.arraycopy(current, 0, newProcessors, 1, current.length);
+        this.processors = newProcessors;
         return this;
     }
 
@@ -46,24 +78,20 @@ public class DefaultMultiProcessor implements MultiTaskProcessor<Task> {
     public boolean process(Task task, TaskContext taskContext) {
         boolean success = true;
         for (NamedTaskProcessor namedTaskProcessor : processors) {
-            TaskProcessor<Task> processor = namedTaskProcessor.processor;
+            //如果是执行成功的processor则不再进行处理
+            if (taskContext.isProcessorCompleted(pipelineId, namedTaskProcessor.slot)) {
+                continue;
+            }
 
             try {
-                Long taskId = taskContext.taskId();
-                Boolean executeState = taskContext.get(processor.processorName() + taskId, Boolean.class);
-                //如果是执行成功的processor则不再进行处理
-                if (executeState != null && executeState) {
-                    continue;
-                }
-
                 //处理的状态
-                boolean process = processor.process(task, taskContext);
+                boolean process = namedTaskProcessor.processor.process(task, taskContext);
                 if (success) {
                     success = process;
                 }
 
                 if (process) {
-                    taskContext.put(processor.processorName() + taskId, true);
+                    taskContext.markProcessorCompleted(pipelineId, namedTaskProcessor.slot);
                 }
             } catch (Exception e) {
                 success = false;
@@ -75,32 +103,46 @@ public class DefaultMultiProcessor implements MultiTaskProcessor<Task> {
 
     @Override
     public MultiTaskProcessor<Task> remove(TaskProcessor<Task> processor) {
-        processors.removeIf(pro -> pro.processorName.equals(processor.processorName()));
+        String processorName = processor.processorName();
+        removeIf(pro -> pro.processorName.equals(processorName));
         return this;
     }
 
     @Override
     public MultiTaskProcessor<Task> removeProcessor(String processorName) {
-        processors.removeIf(pro -> pro.processorName.equals(processorName));
+        removeIf(pro -> pro.processorName.equals(processorName));
         return this;
     }
 
+    private synchronized void removeIf(Predicate<NamedTaskProcessor> predicate) {
+        NamedTaskProcessor[] current = this.processors;
+        List<NamedTaskProcessor> retained = new ArrayList<>(current.length);
+        for (NamedTaskProcessor namedTaskProcessor : current) {
+            if (!predicate.test(namedTaskProcessor)) {
+                retained.add(namedTaskProcessor);
+            }
+        }
+
+        if (retained.size() != current.length) {
+            this.processors = retained.toArray(EMPTY);
+        }
+    }
+
     @Override
     public Collection<TaskProcessor<Task>> getProcessors() {
-        return processors.stream()
-                .map(NamedTaskProcessor::getProcessor)
-                .collect(Collectors.toList());
+        NamedTaskProcessor[] current = this.processors;
+        List<TaskProcessor<Task>> taskProcessors = new ArrayList<>(current.length);
+        for (NamedTaskProcessor namedTaskProcessor : current) {
+            taskProcessors.add(namedTaskProcessor.processor);
+        }
+
+        return taskProcessors;
     }
 
     @Override
     public TaskProcessor<Task> getFirst() {
-
-        NamedTaskProcessor namedProcessor = processors.peekFirst();
-        if (namedProcessor != null) {
-            return namedProcessor.processor;
-        }
-
-        return null;
+        NamedTaskProcessor[] current = this.processors;
+        return current.length > 0 ? current[0].processor : null;
     }
 
     @Override
@@ -114,13 +156,19 @@ public class DefaultMultiProcessor implements MultiTaskProcessor<Task> {
 
         private final int order;
 
+        /**
+         * 在 {@link TaskContext} 中记录执行状态的槽位
+         */
+        private final int slot;
+
         @Getter
         private final TaskProcessor<Task> processor;
 
 
-        public NamedTaskProcessor(TaskProcessor<Task> processor) {
+        public NamedTaskProcessor(TaskProcessor<Task> processor, int slot) {
             this.processorName = processor.processorName();
             this.order = processor.order();
+            this.slot = slot;
             this.processor = processor;
         }
 
@@ -6,6 +6,7 @@ import com.dc.tools.common.thread.ServiceThread;
 import com.dc.tools.common.utils.CollectionUtils;
 import com.dc.tools.common.utils.SystemClock;
 import com.dc.tools.task.*;
+import com.dc.tools.task.processor.DefaultMultiProcessor;
 import com.dc.tools.task.processor.MultiTaskProcessor;
 import com.dc.tools.task.retry.BackoffPolicy;
 import com.dc.tools.task.retry.RetryContext;
@@ -13,17 +14,52 @@ import com.dc.tools.task.retry.RetryTask;
 import lombok.extern.slf4j.Slf4j;
 import org.jctools.queues.MpscUnboundedArrayQueue;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 @Slf4j
 public abstract class AbstractTaskWorker<T extends Task> extends ServiceThread implements TaskWorker<T>, Executor {
 
+    /**
+     * 当任务没有对应的处理器时使用, 不包含任何processor
+     */
+    private static final MultiTaskProcessor<Task> EMPTY_PROCESSOR = new DefaultMultiProcessor();
+
     protected final TaskManager taskManager;
 
-    private final AtomicBoolean started = new AtomicBoolean();
+    private final String workerName;
+
+    /**
+     * 当前worker是否已经关闭，关闭后不再接收新的任务
+     */
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * 关闭时处理积压任务的截止时间
+     */
+    private volatile long drainDeadline = Long.MAX_VALUE;
+
+    /**
+     * worker线程退出时触发
+     */
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    /**
+     * 任务队列为单消费者队列, 超过截止时间后由drain线程接管队列中余下的任务
+     */
+    private final AtomicInteger consumer = new AtomicInteger(CONSUMER_FREE);
+
+    private static final int CONSUMER_FREE = 0;
+
+    private static final int CONSUMER_POLLING = 1;
+
+    private static final int CONSUMER_TAKEN_OVER = 2;
 
     protected final MpscUnboundedArrayQueue<ContextTask> tasks = new MpscUnboundedArrayQueue<>(1024);
 
@@ -41,16 +77,18 @@ public abstract class AbstractTaskWorker<T extends Task> extends ServiceThread i
 
     public AbstractTaskWorker(String serviceName, TaskManager taskManager, MetricRegistry registry) {
         super(serviceName);
+        this.workerName = serviceName;
         this.taskManager = taskManager;
         this.registry = registry;
-        this.workerStats = new WorkerStats(registry, serviceName, () -> (long) tasks.size());
+        this.workerStats = new WorkerStats(registry, serviceName, this::backlog);
     }
 
     public AbstractTaskWorker(String serviceName, TaskManager taskManager) {
         super(serviceName);
+        this.workerName = serviceName;
         this.registry = new MetricRegistry();
         this.taskManager = taskManager;
-        this.workerStats = new WorkerStats(registry, serviceName, () -> (long) tasks.size());
+        this.workerStats = new WorkerStats(registry, serviceName, this::backlog);
     }
 
     @Override
@@ -61,8 +99,9 @@ public abstract class AbstractTaskWorker<T extends Task> extends ServiceThread i
     @Override
     public void execute(T task, TaskContext taskContext) {
         //如果当前worker已经关闭了，则不在添加任务
-        if (!started.get()) {
-            taskManager.addTask(task, taskContext);
+        if (closed.get()) {
+            taskManager.rejectTask(task, taskContext);
+            return;
         }
 
         workerStats.incReceivedTask();
@@ -82,6 +121,11 @@ public abstract class AbstractTaskWorker<T extends Task> extends ServiceThread i
         ContextTask contextTask = new ContextTask(task, taskContext);
         taskContext.putIfAbsent(TaskContext.TASK_WORKER, this);
         tasks.offer(contextTask);
+
+        //入队之前worker线程可能已经退出，不会再消费队列, 由提交线程将任务交还给任务管理器
+        if (closed.get() && terminated.getCount() == 0) {
+            rejectRemaining();
+        }
     }
 
     @Override
@@ -95,6 +139,13 @@ public abstract class AbstractTaskWorker<T extends Task> extends ServiceThread i
         return workerStats;
     }
 
+    /**
+     * 当前worker积压的任务数量
+     */
+    protected long backlog() {
+        return tasks.size();
+    }
+
 
     @SuppressWarnings("all")
     protected void processTask(ContextTask contextTask) {
@@ -103,8 +154,11 @@ public abstract class AbstractTaskWorker<T extends Task> extends ServiceThread i
 
         TaskContext taskContext = contextTask.getTaskContext();
         Task targetTask = contextTask.getDelegate();
-        //获取任务的处理器
+        //获取任务的处理器, 没有注册处理器的任务使用空的处理器
         MultiTaskProcessor<? super Task> taskProcessor = taskManager.getProcessor(targetTask.taskName());
+        if (taskProcessor == null) {
+            taskProcessor = EMPTY_PROCESSOR;
+        }
         boolean exceptState = false;
         Exception exception = null;
 
@@ -161,6 +215,8 @@ public abstract class AbstractTaskWorker<T extends Task> extends ServiceThread i
             exception = e;
             //TODO: 打印日志
         } finally {
+            //释放限流器的许可, 重试的任务会从新获取许可
+            taskContext.releaseLimiter();
             //记录完成的任务信息，重试任务算多个任务
             workerStats.incHandledTask();
             //记录任务消耗的时间
@@ -203,6 +259,7 @@ public abstract class AbstractTaskWorker<T extends Task> extends ServiceThread i
                 if (taskContext.isClearAll()) {
                     taskContext.removeAll();
                 } else {
+                    taskContext.clearCompletedProcessors();
                     //清除本次任务执行的上下文信息，保留业务表示
                     taskContext.remove(TaskContext.RETRY, TaskContext.TASK_ID, TaskContext.TASK_LIFE_CYCLE,
                             TaskContext.INTERNAL, TaskContext.TASK_WORKER,
@@ -264,14 +321,169 @@ public abstract class AbstractTaskWorker<T extends Task> extends ServiceThread i
     }
 
 
+    /**
+     * 当前worker是否已经关闭
+     */
+    protected boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * worker线程是否需要退出，关闭后会继续处理积压的任务，直到任务处理完成或者超过截止时间
+     */
+    protected boolean shouldExit() {
+        if (!isRunning()) {
+            return true;
+        }
+
+        if (!closed.get()) {
+            return false;
+        }
+
+        return tasks.isEmpty() || SystemClock.now() >= drainDeadline;
+    }
+
+    /**
+     * 是否已经超过了关闭时处理积压任务的截止时间
+     */
+    protected boolean isDrainExpired() {
+        return closed.get() && SystemClock.now() >= drainDeadline;
+    }
+
+    /**
+     * 从任务队列中获取任务, worker线程只能通过该方法消费任务
+     *
+     * @return 如果队列为空或者队列已经被drain线程接管则返回null
+     */
+    protected ContextTask pollTask() {
+        if (!consumer.compareAndSet(CONSUMER_FREE, CONSUMER_POLLING)) {
+            return null;
+        }
+
+        try {
+            return tasks.poll();
+        } finally {
+            consumer.lazySet(CONSUMER_FREE);
+        }
+    }
+
+    /**
+     * 从任务队列中批量获取任务
+     *
+     * @param taskConsumer 任务消费者
+     * @param limit        最多获取的任务数量
+     */
+    protected void drainTasks(Consumer<ContextTask> taskConsumer, int limit) {
+        if (!consumer.compareAndSet(CONSUMER_FREE, CONSUMER_POLLING)) {
+            return;
+        }
+
+        try {
+            tasks.drain(taskConsumer::accept, limit);
+        } finally {
+            consumer.lazySet(CONSUMER_FREE);
+        }
+    }
+
+    /**
+     * 在worker线程退出前调用, 将未处理完成的任务交还给任务管理器
+     */
+    protected void terminate() {
+        rejectRemaining();
+        terminated.countDown();
+        //在countDown之前入队的任务，提交线程不会处理
+        rejectRemaining();
+    }
+
+    /**
+     * 超过截止时间后worker线程可能仍在执行任务, 由drain线程接管任务队列，将余下的任务交还给任务管理器
+     */
+    private void takeOverTasks() {
+        for (; ; ) {
+            int state = consumer.get();
+            if (state == CONSUMER_TAKEN_OVER) {
+                return;
+            }
+
+            //worker线程只会在获取任务的短暂时间内持有队列
+            if (state == CONSUMER_FREE && consumer.compareAndSet(CONSUMER_FREE, CONSUMER_TAKEN_OVER)) {
+                break;
+            }
+
+            Thread.yield();
+        }
+
+        rejectRemaining();
+    }
+
+    /**
+     * 将队列中余下的任务交还给任务管理器, worker线程、drain线程以及提交线程都可能调用
+     */
+    private void rejectRemaining() {
+        int state;
+        for (; ; ) {
+            state = consumer.get();
+            //保留接管的状态, 接管之后worker线程不再消费队列
+            if (state != CONSUMER_POLLING && consumer.compareAndSet(state, CONSUMER_POLLING)) {
+                break;
+            }
+
+            Thread.yield();
+        }
+
+        List<ContextTask> remaining = new ArrayList<>();
+        try {
+            tasks.drain(remaining::add);
+        } finally {
+            consumer.set(state);
+        }
+
+        //释放队列之后再交还, 任务管理器可能将任务重新路由到当前worker
+        for (ContextTask contextTask : remaining) {
+            taskManager.rejectTask(contextTask.getDelegate(), contextTask.getTaskContext());
+        }
+    }
+
+    /**
+     * 超过截止时间后由drain线程调用, 子类将队列之外尚未执行的任务交还给任务管理器
+     */
+    protected void takeOverPending() {
+    }
+
     @Override
     public void start() {
         super.start();
     }
 
+    @Override
+    public boolean drain(long deadline) {
+        if (closed.compareAndSet(false, true)) {
+            this.drainDeadline = deadline;
+            wakeup();
+        }
+
+        try {
+            long remaining = deadline - SystemClock.now();
+            if (!terminated.await(Math.max(remaining, 0), TimeUnit.MILLISECONDS)) {
+                log.warn("Worker {} is still processing a task after drain deadline", workerName);
+                takeOverTasks();
+                takeOverPending();
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            stop();
+        }
+
+        return true;
+    }
+
     @Override
     public void shutdown() {
-        if (started.compareAndSet(false, true)) {
+        if (closed.compareAndSet(false, true)) {
+            this.drainDeadline = 0;
             stop();
         }
     }
@@ -5,18 +5,32 @@ import com.dc.tools.common.utils.SystemClock;
 import com.dc.tools.task.*;
 import com.dc.tools.timer.DelayWheel;
 import com.dc.tools.timer.TimerMetrics;
+import lombok.extern.slf4j.Slf4j;
 
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
+@Slf4j
 public class DelayTaskWorker extends ServiceThread implements TaskWorker<DelayTask> {
 
     private final TimerMetrics metrics;
 
-    private final Map<Long, ContextTask> taskMap = new ConcurrentHashMap<>(1024);
+    private final Map<Long, DelayedContextTask> taskMap = new ConcurrentHashMap<>(1024);
+
+    /**
+     * 当前worker是否已经关闭，关闭后不再接收新的延迟任务
+     */
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * worker线程退出时触发
+     */
+    private final CountDownLatch terminated = new CountDownLatch(1);
 
 
     private final TaskManager taskManager;
@@ -38,6 +52,12 @@ public class DelayTaskWorker extends ServiceThread implements TaskWorker<DelayTa
 
     @Override
     public void execute(DelayTask task, TaskContext taskContext) {
+        //如果当前worker已经关闭了，则不在添加任务
+        if (closed.get()) {
+            taskManager.rejectTask(task, taskContext);
+            return;
+        }
+
         Task targetTask = task;
         //如果是包装后的延迟任务
         if (targetTask instanceof DelayedTaskWrapper) {
@@ -57,13 +77,20 @@ public class DelayTaskWorker extends ServiceThread implements TaskWorker<DelayTa
 
         taskContext.putIfAbsent(TaskContext.TASK_MANAGER, taskManager);
 
-        ContextTask contextTask = new ContextTask(targetTask, taskContext);
-        taskMap.put(taskId, contextTask);
-        String taskName = targetTask.taskName();
         //获取当前的时间
         long nowTime = SystemClock.now();
-        delayWheel.addTask(taskName, taskId, nowTime + task.delayTime());
+        long expireTime = nowTime + task.delayTime();
+        taskMap.put(taskId, new DelayedContextTask(targetTask, taskContext, expireTime));
+        String taskName = targetTask.taskName();
+        delayWheel.addTask(taskName, taskId, expireTime);
         metrics.record(1);
+
+        //写入之前worker线程可能已经退出，由提交线程将任务交还给任务管理器
+        if (closed.get() && terminated.getCount() == 0) {
+            rejectRemaining();
+            return;
+        }
+
         wakeup();
     }
 
@@ -121,6 +148,11 @@ public class DelayTaskWorker extends ServiceThread implements TaskWorker<DelayTa
                 taskManager.addTask(task, taskContext);
             }
 
+            //关闭后已经到期的任务均已下发，余下未到期的任务交还给taskManager
+            if (closed.get()) {
+                break;
+            }
+
             //查找时间轮中最早的时间
             long earliestTime = delayWheel.findEarliestTime();
 
@@ -138,11 +170,74 @@ public class DelayTaskWorker extends ServiceThread implements TaskWorker<DelayTa
             }
         }
 
+        terminate();
+    }
 
+    /**
+     * 将未到期的延迟任务按照剩余的延迟时间交还给taskManager
+     */
+    private void terminate() {
+        rejectRemaining();
+        terminated.countDown();
+        //在countDown之前写入的任务，提交线程不会处理
+        rejectRemaining();
+    }
+
+    /**
+     * 逐个移除余下的任务并交还给taskManager, worker线程与提交线程同时调用时每个任务只会被交还一次
+     */
+    private void rejectRemaining() {
+        long nowTime = SystemClock.now();
+        for (Long taskId : taskMap.keySet()) {
+            DelayedContextTask contextTask = taskMap.remove(taskId);
+            if (contextTask == null) {
+                continue;
+            }
+
+            long delayTime = Math.max(contextTask.expireTime - nowTime, 0);
+            taskManager.rejectTask(new DelayedTaskWrapper(contextTask.getDelegate(), delayTime), contextTask.getTaskContext());
+        }
+    }
+
+    @Override
+    public boolean drain(long deadline) {
+        if (closed.compareAndSet(false, true)) {
+            wakeup();
+        }
+
+        try {
+            long remaining = deadline - SystemClock.now();
+            if (!terminated.await(Math.max(remaining, 0), TimeUnit.MILLISECONDS)) {
+                log.warn("Delay worker is still flushing expired tasks after drain deadline");
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            stop();
+        }
+
+        return true;
     }
 
     @Override
     public void shutdown() {
+        closed.set(true);
         stop();
     }
+
+
+    /**
+     * 延迟任务以及任务的到期时间
+     */
+    static class DelayedContextTask extends ContextTask {
+
+        private final long expireTime;
+
+        DelayedContextTask(Task delegate, TaskContext taskContext, long expireTime) {
+            super(delegate, taskContext);
+            this.expireTime = expireTime;
+        }
+    }
 }
@@ -0,0 +1,175 @@
+package com.dc.tools.task.worker;
+
+import com.codahale.metrics.MetricRegistry;
+import com.dc.tools.task.Task;
+import com.dc.tools.task.TaskContext;
+import com.dc.tools.task.TaskManager;
+import com.dc.tools.task.TaskType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 用于执行阻塞任务的worker, 任务不会在worker线程中执行，而是交由 {@link Executor} 执行,
+ * 阻塞的任务只会占用 {@link Executor} 中的线程(JDK 21+ 下默认为虚拟线程)
+ *
+ * <p>
+ * 每个任务直接提交到 {@link Executor} 并发执行，不保证执行的顺序.
+ * 当 {@link Executor} 拒绝任务时，会在worker线程中直接执行，从而对任务的添加产生背压
+ * </p>
+ *
+ * @author zy
+ */
+@Slf4j
+public class ExecutorTaskWorker extends AbstractTaskWorker<Task> {
+
+    private static final AtomicLong index = new AtomicLong();
+
+    /**
+     * 关闭时等待正在执行的任务完成的检查间隔
+     */
+    private static final int DRAIN_CHECK_INTERVAL = 10;
+
+    private final Executor executor;
+
+    /**
+     * executor 是否由当前worker创建，如果是则在worker退出时关闭
+     */
+    private final boolean ownsExecutor;
+
+    /**
+     * 已经提交到executor但是还没有开始执行的任务, 超过截止时间后由 {@link #rejectQueued()} 交还给taskManager
+     */
+    private final Set<ContextTask> queued = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 已经下发到executor但是还没有执行完成的任务数量
+     */
+    private final AtomicLong pending = new AtomicLong();
+
+    public ExecutorTaskWorker(TaskManager taskManager, MetricRegistry registry) {
+        this("blocking-worker-" + index.getAndIncrement(), taskManager, registry, null);
+    }
+
+    public ExecutorTaskWorker(TaskManager taskManager, MetricRegistry registry, Executor executor) {
+        this("blocking-worker-" + index.getAndIncrement(), taskManager, registry, executor);
+    }
+
+    private ExecutorTaskWorker(String workerName, TaskManager taskManager, MetricRegistry registry, Executor executor) {
+        super(workerName, taskManager, registry);
+        this.ownsExecutor = executor == null;
+        this.executor = executor == null ? WorkerExecutors.newBlockingExecutor(workerName) : executor;
+    }
+
+    @Override
+    public void execute(Task task, TaskContext taskContext) {
+        super.execute(task, taskContext);
+        wakeup();
+    }
+
+    @Override
+    public TaskType workerType() {
+        return TaskType.BLOCKING;
+    }
+
+    @Override
+    protected long backlog() {
+        return super.backlog() + pending.get();
+    }
+
+    @Override
+    public void run() {
+        while (!shouldExit()) {
+            long version = getVersion();
+            ContextTask contextTask = pollTask();
+
+            if (contextTask == null) {
+                //关闭后不再等待，由shouldExit判断是否还有积压的任务
+                if (!isClosed()) {
+                    await(version);
+                }
+                continue;
+            }
+
+            dispatch(contextTask);
+        }
+
+        //等待已经下发到executor的任务执行完成
+        while (pending.get() > 0 && isRunning() && !isDrainExpired()) {
+            await(getVersion(), DRAIN_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+
+        rejectQueued();
+        terminate();
+
+        if (ownsExecutor && executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    /**
+     * 将任务提交到executor执行，如果executor拒绝则在worker线程中执行
+     */
+    private void dispatch(ContextTask contextTask) {
+        pending.incrementAndGet();
+        queued.add(contextTask);
+        try {
+            executor.execute(() -> runTask(contextTask));
+        } catch (RejectedExecutionException e) {
+            //executor 已满或者已经关闭时在worker线程中执行
+            runTask(contextTask);
+        }
+    }
+
+    private void runTask(ContextTask contextTask) {
+        //已经由 rejectQueued 交还给taskManager
+        if (!queued.remove(contextTask)) {
+            return;
+        }
+
+        try {
+            //超过截止时间后不再执行, 交还给taskManager
+            if (isDrainExpired() || !isRunning()) {
+                taskManager.rejectTask(contextTask.getDelegate(), contextTask.getTaskContext());
+                return;
+            }
+
+            processTask(contextTask);
+        } catch (Exception e) {
+            log.error("Execute blocking task error, taskName is: {}, cause is: ", contextTask.getDelegate().taskName(), e);
+        } finally {
+            if (pending.decrementAndGet() == 0 && isClosed()) {
+                wakeup();
+            }
+        }
+    }
+
+    @Override
+    protected void takeOverPending() {
+        rejectQueued();
+    }
+
+    /**
+     * 将已经提交到executor但是还没有开始执行的任务交还给taskManager.
+     * worker线程与drain线程都可能调用，保证在drain返回之前这部分任务已经进入未处理完成的任务列表
+     */
+    private void rejectQueued() {
+        for (ContextTask contextTask : queued) {
+            if (!queued.remove(contextTask)) {
+                continue;
+            }
+
+            try {
+                taskManager.rejectTask(contextTask.getDelegate(), contextTask.getTaskContext());
+            } finally {
+                pending.decrementAndGet();
+            }
+        }
+    }
+}
@@ -50,14 +50,14 @@ public class NormalTaskWorker extends AbstractTaskWorker<Task> implements TaskWo
 
     @Override
     public void run() {
-        while (isRunning()) {
+        while (!shouldExit()) {
             long nowTime = SystemClock.now();
             //每隔10s 判断下是否需要从新拆分任务
-            if (nowTime - lastRestTime > 10000) {
+            if (!isClosed() && nowTime - lastRestTime > 10000) {
                 double ratio = metrics().handleRatio();
                 //如果处理的速率 < 1/2的时候 从新拆分任务
                 if (ratio < 0.5) {
-                    tasks.drain(task-> {
+                    drainTasks(task -> {
                         //从新路由任务减轻当前worker的压力，路由1/3的任务到其他的worker节点
                         taskManager.addTask(task.getDelegate(), task.getTaskContext());
                     }, tasks.size() / 3);
@@ -66,40 +66,32 @@ public class NormalTaskWorker extends AbstractTaskWorker<Task> implements TaskWo
                 lastRestTime = nowTime;
             }
 
-            ContextTask contextTask = tasks.poll();
+            ContextTask contextTask = pollTask();
 
             //版本号
             long version = getVersion();
             //空闲时间
             long freeTime = metrics().freeTime();
 
-            if (contextTask == null && isRunning() && freeTime >= timeout && taskManager instanceof TaskDispatchCenter) {
+            if (contextTask == null && !isClosed() && freeTime >= timeout && taskManager instanceof TaskDispatchCenter) {
                 //从taskManager中删除当前线程
                 ((TaskDispatchCenter) taskManager).removeWorker(this);
-                //当前线程休眠100ms，保证一定可以接收到余下的任务
                 continue;
             }
 
             if (contextTask == null) {
-                await(version, (int) timeout, TimeUnit.MILLISECONDS);
+                //关闭后不再等待，由shouldExit判断是否还有积压的任务
+                if (!isClosed()) {
+                    await(version, (int) timeout, TimeUnit.MILLISECONDS);
+                }
                 continue;
             }
 
             processTask(contextTask);
         }
 
-        try {
-            //线程休眠100ms，把余下的任务处理完成后在退出
-            Thread.sleep(100);
-        } catch (InterruptedException e) {
-            //TODO: 打印日志
-        }
-
-        //处理余下的任务，如果处理失败会将该部分任务数据从新路由到新的worker
-        while (tasks.peek() != null) {
-            ContextTask contextTask = tasks.poll();
-            taskManager.addTask(contextTask.getDelegate(), contextTask.getTaskContext());
-        }
+        //将余下未处理的任务交还给taskManager，由taskManager决定从新路由或者拒绝
+        terminate();
     }
 
 
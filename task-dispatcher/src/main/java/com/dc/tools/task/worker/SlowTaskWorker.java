@@ -34,23 +34,27 @@ public class SlowTaskWorker extends AbstractTaskWorker<Task> {
 
     @Override
     public void run() {
-        while (isRunning()) {
+        while (!shouldExit()) {
             long version = getVersion();
 
-            try {
-                //获取快照的suze
-                int snapshotSize = tasks.size();
-
-                if (snapshotSize == 0) {
-                    continue;
+            //获取快照的size
+            int snapshotSize = tasks.size();
+            for (int i = 0; i < snapshotSize && !shouldExit(); i++) {
+                ContextTask contextTask = pollTask();
+                if (contextTask == null) {
+                    break;
                 }
 
-                tasks.drain(this::processTask, snapshotSize);
-            } finally {
-                await(version, interval, TimeUnit.MILLISECONDS);
+                processTask(contextTask);
             }
 
+            //关闭后不再等待，由shouldExit判断是否还有积压的任务
+            if (!isClosed()) {
+                await(version, interval, TimeUnit.MILLISECONDS);
+            }
         }
+
+        terminate();
     }
 
 }
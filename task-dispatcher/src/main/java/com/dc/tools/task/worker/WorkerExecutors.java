@@ -0,0 +1,62 @@
+package com.dc.tools.task.worker;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 用于创建执行阻塞任务的线程池.
+ *
+ * <p>
+ * 在 java 8 下为有界的弹性线程池: 线程按需创建，最多为 cpu核数 * 10，空闲60s后回收，等待队列最多为 100000 个任务；
+ * 在 JDK 21+ 下会被 multi-release jar 中的实现替换为每个任务一个虚拟线程
+ * </p>
+ *
+ * @author zy
+ */
+public final class WorkerExecutors {
+
+    private static final int MAX_THREADS = Runtime.getRuntime().availableProcessors() * 10;
+
+    private static final int MAX_QUEUED_TASKS = 100000;
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private WorkerExecutors() {
+    }
+
+    /**
+     * 创建用于执行阻塞任务的线程池
+     *
+     * @param name 线程名称前缀
+     */
+    public static ExecutorService newBlockingExecutor(String name) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(MAX_QUEUED_TASKS), new NamedThreadFactory(name));
+        //核心线程在空闲时同样会被回收，保证线程数可以随负载伸缩
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+
+    static class NamedThreadFactory implements ThreadFactory {
+
+        private final AtomicLong index = new AtomicLong();
+
+        private final String name;
+
+        NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, name + "-" + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
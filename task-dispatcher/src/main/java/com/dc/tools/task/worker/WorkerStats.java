@@ -53,7 +53,7 @@ public class WorkerStats implements TaskWorkerMetrics {
         this.recievedMeter = registry.register(MetricRegistry.name(workerName, "received meter"), new Meter());
         this.received = registry.register(MetricRegistry.name(workerName, "add tasks"), new Counter());
         this.handled = registry.register(MetricRegistry.name(workerName, "handle tasks"), new Counter());
-        this.activeTasks = registry.register("", new Gauge<Long>() {
+        this.activeTasks = registry.register(MetricRegistry.name(workerName, "active tasks"), new Gauge<Long>() {
             @Override
             public Long getValue() {
                 return tasks.get();
@@ -131,7 +131,7 @@ public class WorkerStats implements TaskWorkerMetrics {
         //时间窗口内处理任务的数量
         int handleTasks = handleTaskWindow.sumCount();
         //获取处理的速率
-        return handleTasks / addTasks == 0 ? 1 : addTasks;
+        return addTasks == 0 ? 1 : (double) handleTasks / addTasks;
     }
 
     /**
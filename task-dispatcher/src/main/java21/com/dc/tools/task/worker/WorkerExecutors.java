@@ -0,0 +1,24 @@
+package com.dc.tools.task.worker;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 用于创建执行阻塞任务的线程池, JDK 21+ 下每个任务使用一个虚拟线程执行
+ *
+ * @author zy
+ */
+public final class WorkerExecutors {
+
+    private WorkerExecutors() {
+    }
+
+    /**
+     * 创建用于执行阻塞任务的线程池
+     *
+     * @param name 线程名称前缀
+     */
+    public static ExecutorService newBlockingExecutor(String name) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+}